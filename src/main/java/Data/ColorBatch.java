@@ -0,0 +1,128 @@
+package Data;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * OKLCh → sRGB conversion on primitives, for converting many colors at once
+ * without allocating a ColorData per step. Results use the same chroma
+ * fallback as ColorData.oklchToRgb.
+ */
+public final class ColorBatch {
+    // Alpha of a packed color whose requested chroma had to be reduced
+    public static final int OUT_OF_GAMUT_ALPHA = 0x7F;
+    
+    private ColorBatch() {}
+    
+    /**
+     * Convert one OKLCh color to packed sRGB. In-gamut colors come back
+     * opaque; colors whose chroma had to be reduced to fit come back with
+     * OUT_OF_GAMUT_ALPHA, so callers can mark them.
+     *
+     * @param l lightness
+     * @param c chroma
+     * @param h hue in degrees
+     * @return packed ARGB
+     */
+    public static int oklchToArgb(float l, float c, float h) {
+        float hRad = (float) Math.toRadians(h);
+        float cos = (float) Math.cos(hRad);
+        float sin = (float) Math.sin(hRad);
+        
+        if (ColorData.labInGamut(l, c * cos, c * sin)) {
+            return 0xFF000000 | labToRgb(l, c * cos, c * sin);
+        }
+        
+        float fit = ColorData.maxChroma(l, h, c);
+        
+        return (OUT_OF_GAMUT_ALPHA << 24) | labToRgb(l, fit * cos, fit * sin);
+    }
+    
+    /**
+     * Convert one OKLab color to opaque packed sRGB, without any gamut
+     * fallback.
+     *
+     * @param l lightness
+     * @param a green–red axis
+     * @param b blue–yellow axis
+     * @return opaque ARGB, or 0 if the color is outside sRGB
+     */
+    public static int labToArgb(float l, float a, float b) {
+        if (!ColorData.labInGamut(l, a, b)) return 0;
+        
+        return 0xFF000000 | labToRgb(l, a, b);
+    }
+    
+    /**
+     * Convert packed OKLCh triples to packed sRGB, as oklchToArgb does for
+     * a single color.
+     *
+     * @param lch packed {L, C, H} triples
+     * @param offset index in lch of the first L value
+     * @param count number of colors
+     * @param out destination
+     * @param outOffset index in out of the first result
+     */
+    public static void oklchToArgb(float[] lch, int offset, int count, int[] out, int outOffset) {
+        for (int i = 0; i < count; i++) {
+            int o = offset + i * 3;
+            out[outOffset + i] = oklchToArgb(lch[o], lch[o + 1], lch[o + 2]);
+        }
+    }
+    
+    /**
+     * Fill out with evenly spaced colors along one OKLCh channel while the
+     * other two stay fixed, e.g. the colors a slider would produce.
+     *
+     * @param channel 0 for L, 1 for C, 2 for H
+     * @param l lightness, ignored when channel is 0
+     * @param c chroma, ignored when channel is 1
+     * @param h hue in degrees, ignored when channel is 2
+     * @param min channel value of out[0]
+     * @param max channel value of out[out.length - 1]
+     * @param out destination, one packed ARGB per sample
+     * @param cancelled polled every few samples; returning true stops early
+     * @return false if the ramp was cancelled before it was complete
+     */
+    public static boolean channelRamp(int channel, float l, float c, float h, float min, float max,
+            int[] out, BooleanSupplier cancelled) {
+        int n = out.length;
+        
+        for (int i = 0; i < n; i++) {
+            if ((i & 63) == 0 && cancelled.getAsBoolean()) return false;
+            
+            float t = n > 1 ? min + (max - min) * i / (n - 1) : min;
+            
+            out[i] = switch (channel) {
+                case 0 -> oklchToArgb(t, c, h);
+                case 1 -> oklchToArgb(l, t, h);
+                default -> oklchToArgb(l, c, t);
+            };
+        }
+        
+        return true;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private static int labToRgb(float L, float a, float b) {
+        float l_ = L + 0.3963377774f * a + 0.2158037573f * b;
+        float m_ = L - 0.1055613458f * a - 0.0638541728f * b;
+        float s_ = L - 0.0894841775f * a - 1.2914855480f * b;
+        
+        float Lm = l_ * l_ * l_;
+        float Mm = m_ * m_ * m_;
+        float Sm = s_ * s_ * s_;
+        
+        float r = 4.0767416621f * Lm - 3.3077115901f * Mm + 0.2309699292f * Sm;
+        float g = -1.2684380046f * Lm + 2.6097574011f * Mm - 0.3413193965f * Sm;
+        float bl = -0.0041960863f * Lm - 0.7034186147f * Mm + 1.7076147010f * Sm;
+        
+        return (to255(r) << 16) | (to255(g) << 8) | to255(bl);
+    }
+    
+    private static int to255(float lin) {
+        return ColorTables.linearToSrgb8(lin);
+    }
+}
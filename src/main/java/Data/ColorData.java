@@ -7,6 +7,9 @@ public class ColorData {
     
     private final int maxFallbackIterations = 20;
 
+    // Float error puts exact sRGB primaries a hair outside [0..1]
+    private static final float GAMUT_EPSILON = 1e-5f;
+
     // ────────────────────────────────────────────────────────────────────────────
     // Constructors
     // ────────────────────────────────────────────────────────────────────────────
@@ -137,6 +140,15 @@ public class ColorData {
         float low = 0f, high = originalC, mid;
         ColorData candidate;
         
+        // In-gamut colors are kept as they are; the bisection below is only
+        // for colors that need less chroma, and near the sRGB corners it
+        // would not come back to an exact primary
+        ColorData lab = oklchToOklab();
+        
+        if (inGamut(lab.oklabToRgb(true))) {
+            return lab.oklabToRgb(false);
+        }
+        
         for (int i = 0; i < maxFallbackIterations; i++) {
             mid = (low + high) * 0.5f;
             
@@ -182,14 +194,67 @@ public class ColorData {
         return new ColorData(clamp01(compand(rLin)), clamp01(compand(gLin)), clamp01(compand(bLin)));
     }
 
+    /**
+     * Find the largest chroma, up to limit, that stays inside the sRGB gamut
+     * for the given lightness and hue. Uses the same bisection as oklchToRgb
+     * but works on primitives only.
+     *
+     * @param L OKLab lightness
+     * @param hue hue in degrees
+     * @param limit upper bound for the search
+     * @return maximum in-gamut chroma
+     */
+    public static float maxChroma(float L, float hue, float limit) {
+        float hRad = (float) Math.toRadians(hue);
+        float cos = (float) Math.cos(hRad);
+        float sin = (float) Math.sin(hRad);
+        
+        float low = 0f, high = limit;
+        
+        for (int i = 0; i < 20; i++) {
+            float mid = (low + high) * 0.5f;
+            
+            if (labInGamut(L, mid * cos, mid * sin)) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        
+        return low;
+    }
+    
+    /**
+     * Check whether an OKLab color maps inside linear sRGB [0..1].
+     */
+    public static boolean labInGamut(float L, float a, float b) {
+        float l_ = L + 0.3963377774f * a + 0.2158037573f * b;
+        float m_ = L - 0.1055613458f * a - 0.0638541728f * b;
+        float s_ = L - 0.0894841775f * a - 1.2914855480f * b;
+        
+        float Lm = l_ * l_ * l_;
+        float Mm = m_ * m_ * m_;
+        float Sm = s_ * s_ * s_;
+        
+        float r = 4.0767416621f * Lm - 3.3077115901f * Mm + 0.2309699292f * Sm;
+        float g = -1.2684380046f * Lm + 2.6097574011f * Mm - 0.3413193965f * Sm;
+        float bl = -0.0041960863f * Lm - 0.7034186147f * Mm + 1.7076147010f * Sm;
+        
+        return linearInGamut(r, g, bl);
+    }
+    
     // ────────────────────────────────────────────────────────────────────────────
     // Private Helpers
     // ────────────────────────────────────────────────────────────────────────────
 
     private boolean inGamut(ColorData c) {
-        return c.x >= 0f && c.x <= 1f
-            && c.y >= 0f && c.y <= 1f
-            && c.z >= 0f && c.z <= 1f;
+        return linearInGamut(c.x, c.y, c.z);
+    }
+
+    private static boolean linearInGamut(float r, float g, float b) {
+        return r >= -GAMUT_EPSILON && r <= 1f + GAMUT_EPSILON
+            && g >= -GAMUT_EPSILON && g <= 1f + GAMUT_EPSILON
+            && b >= -GAMUT_EPSILON && b <= 1f + GAMUT_EPSILON;
     }
 
     private static float invCompand(float c) {
@@ -0,0 +1,78 @@
+package Data;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cached sRGB gamut boundary curves in OKLCh: the largest in-gamut chroma
+ * along lightness for one hue, or along hue for one lightness. Curves are
+ * computed once per quantized hue or lightness and sample count, then shared.
+ */
+public final class GamutBoundary {
+    public static final float MAX_CHROMA = 0.47f;
+    
+    private static final int CACHE_SIZE = 256;
+    
+    // Hue is matched to 0.1°, lightness to 0.001
+    private static final float HUE_STEPS = 10f;
+    private static final float LIGHTNESS_STEPS = 1000f;
+    
+    private static final Map<Long, float[]> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, float[]> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+    
+    private GamutBoundary() {}
+    
+    /**
+     * Maximum in-gamut chroma along lightness for one hue.
+     *
+     * @param hue hue in degrees
+     * @param samples number of lightness samples, at least 2
+     * @return entry i is the maximum chroma at L = i / (samples - 1); shared,
+     * do not modify
+     */
+    public static float[] forHue(float hue, int samples) {
+        int q = Math.round((((hue % 360f) + 360f) % 360f) * HUE_STEPS);
+        long key = ((long) samples << 32) | q;
+        
+        return CACHE.computeIfAbsent(key, k -> {
+            float h = q / HUE_STEPS;
+            float[] curve = new float[samples];
+            
+            for (int i = 0; i < samples; i++) {
+                curve[i] = ColorData.maxChroma((float) i / (samples - 1), h, MAX_CHROMA);
+            }
+            
+            return curve;
+        });
+    }
+    
+    /**
+     * Maximum in-gamut chroma around the hue circle for one lightness.
+     *
+     * @param lightness OKLab lightness
+     * @param samples number of hue samples, at least 1
+     * @return entry i is the maximum chroma at H = 360 * i / samples; shared,
+     * do not modify
+     */
+    public static float[] forLightness(float lightness, int samples) {
+        int q = Math.round(Math.max(0f, Math.min(1f, lightness)) * LIGHTNESS_STEPS);
+        long key = ((long) samples << 32) | (1L << 31) | q;
+        
+        return CACHE.computeIfAbsent(key, k -> {
+            float l = q / LIGHTNESS_STEPS;
+            float[] curve = new float[samples];
+            
+            for (int i = 0; i < samples; i++) {
+                curve[i] = ColorData.maxChroma(l, 360f * i / samples, MAX_CHROMA);
+            }
+            
+            return curve;
+        });
+    }
+}
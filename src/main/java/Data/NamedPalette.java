@@ -0,0 +1,122 @@
+package Data;
+
+/**
+ * Immutable, optionally named list of OKLCh colors: the unit palette files
+ * are read and written in. Colors are packed {L, C, H} triples like
+ * PaletteSnapshot, so bulk imports do not allocate a ColorData per color.
+ */
+public final class NamedPalette {
+    private final String name;
+    
+    // Packed {L, C, H} triples, never written after construction
+    private final float[] colors;
+    
+    /**
+     * @param name palette name, or null if the format has none
+     * @param colors packed {L, C, H} triples, owned by the palette from now
+     * on
+     */
+    public NamedPalette(String name, float[] colors) {
+        if (colors.length % 3 != 0) {
+            throw new IllegalArgumentException("Colors must be packed {L, C, H} triples");
+        }
+        
+        this.name = name;
+        this.colors = colors;
+    }
+    
+    /**
+     * @param name palette name, may be null
+     * @param colors OKLCh colors
+     * @return palette holding a copy of the colors
+     */
+    public static NamedPalette of(String name, ColorData[] colors) {
+        float[] packed = new float[colors.length * 3];
+        
+        for (int i = 0; i < colors.length; i++) {
+            packed[i * 3] = colors[i].getX();
+            packed[i * 3 + 1] = colors[i].getY();
+            packed[i * 3 + 2] = colors[i].getZ();
+        }
+        
+        return new NamedPalette(name, packed);
+    }
+    
+    /**
+     * @param name palette name, may be null
+     * @param snapshot palette state to copy
+     * @return palette holding the snapshot's colors
+     */
+    public static NamedPalette of(String name, PaletteSnapshot snapshot) {
+        float[] packed = new float[snapshot.size() * 3];
+        snapshot.copyTo(packed, 0);
+        
+        return new NamedPalette(name, packed);
+    }
+    
+    /**
+     * @param name palette name, may be null
+     * @param rgb packed sRGB colors, alpha is ignored
+     * @param count number of colors to take from rgb
+     * @return palette of the colors converted to OKLCh
+     */
+    public static NamedPalette ofRgb(String name, int[] rgb, int count) {
+        float[] packed = new float[count * 3];
+        
+        for (int i = 0; i < count; i++) {
+            int c = rgb[i];
+            ColorData lch = new ColorData((c >> 16) & 0xFF, (c >> 8) & 0xFF, c & 0xFF).rgbToOklab().oklabToOklch();
+            
+            packed[i * 3] = lch.getX();
+            packed[i * 3 + 1] = lch.getY();
+            packed[i * 3 + 2] = lch.getZ();
+        }
+        
+        return new NamedPalette(name, packed);
+    }
+    
+    /**
+     * @return palette name, or null
+     */
+    public String getName() { return name; }
+    
+    public int size() { return colors.length / 3; }
+    
+    public float getL(int index) { return colors[index * 3]; }
+    public float getC(int index) { return colors[index * 3 + 1]; }
+    public float getH(int index) { return colors[index * 3 + 2]; }
+    
+    /**
+     * @param index index of the color
+     * @return packed opaque sRGB, with the usual chroma fallback. Exact,
+     * like the editor and renderer, so exports match what is on screen
+     */
+    public int getRgb(int index) {
+        int[] rgb = new ColorData(getL(index), getC(index), getH(index)).oklchToRgb().toRgb255();
+        
+        return 0xFF000000 | (rgb[0] << 16) | (rgb[1] << 8) | rgb[2];
+    }
+    
+    /**
+     * @return new array of OKLCh ColorData, one per color
+     */
+    public ColorData[] toColorData() {
+        ColorData[] out = new ColorData[size()];
+        
+        for (int i = 0; i < out.length; i++) {
+            out[i] = new ColorData(getL(i), getC(i), getH(i));
+        }
+        
+        return out;
+    }
+    
+    /**
+     * Copy the packed {L, C, H} triples into a caller-owned buffer.
+     *
+     * @param out destination buffer
+     * @param offset index in out of the first L value
+     */
+    public void copyTo(float[] out, int offset) {
+        System.arraycopy(colors, 0, out, offset, colors.length);
+    }
+}
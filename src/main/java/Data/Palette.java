@@ -1,7 +1,12 @@
 package Data;
 
 import java.awt.Color;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.random.RandomGenerator;
 
 public class Palette {
     private final ColorData[] data;
@@ -12,6 +17,22 @@ public class Palette {
     private final int modeQuantity;
     private final float maxOffset;
     
+    // Every generator call draws its own seed from here, so a call can be
+    // replayed from getLastSeed() alone
+    private final long seed;
+    private final SplittableRandom seeds;
+    private long lastSeed;
+    
+    // Only the editing thread writes; renderers read the published copy
+    private final AtomicReference<PaletteSnapshot> current = new AtomicReference<>();
+    private long version = 0;
+    
+    // Packed state as of the last history step, and the entries touched since
+    private final PaletteHistory history = new PaletteHistory();
+    private final float[] committed;
+    private final BitSet touched;
+    private int editDepth = 0;
+    
     /**
      * Create a new Palette from initial colors, channel ranges, and a maximum
      * hue mode count.
@@ -23,6 +44,22 @@ public class Palette {
      * or modeQuantity less than 1
      */
     public Palette(ColorData[] initial, ChannelRange[] ranges, int modeQuantity) {
+        this(initial, ranges, modeQuantity, ThreadLocalRandom.current().nextLong());
+    }
+    
+    /**
+     * Create a new Palette whose generators are driven by the given seed. Two
+     * palettes built with the same seed produce the same sequence of
+     * generated colors.
+     *
+     * @param initial starting array of OKLCh colors
+     * @param ranges array of three ChannelRange intervals for L, C, and H
+     * @param modeQuantity maximum number of hue segments (must be ≥ 1)
+     * @param seed root seed of the palette's random source
+     * @throws IllegalArgumentException if initial is empty, ranges length ≠ 3,
+     * or modeQuantity less than 1
+     */
+    public Palette(ColorData[] initial, ChannelRange[] ranges, int modeQuantity, long seed) {
         if (initial.length == 0 || ranges.length != 3 || modeQuantity < 1) {
             throw new IllegalArgumentException("Palette requires at least 1 color, exactly 3 rangers and modeQuantity needs to be at least 1");
         }
@@ -38,6 +75,20 @@ public class Palette {
         this.ranges = ranges;
         this.modeQuantity = modeQuantity;
         this.maxOffset = computeMaxOffset(data.length);
+        this.seed = seed;
+        this.seeds = new SplittableRandom(seed);
+        this.lastSeed = seed;
+        
+        this.committed = new float[data.length * 3];
+        this.touched = new BitSet(data.length);
+        
+        for (int i = 0; i < data.length; i++) {
+            committed[i * 3] = data[i].getX();
+            committed[i * 3 + 1] = data[i].getY();
+            committed[i * 3 + 2] = data[i].getZ();
+        }
+        
+        publish();
         System.out.println("MAXOFFSET:"+this.maxOffset);
     }
     
@@ -52,37 +103,97 @@ public class Palette {
      * chroma, then assigning each block of colors to one of the segments.
      */
     public void generate() {
-        resetAll();
-        
-        ThreadLocalRandom rnd = ThreadLocalRandom.current();
-        int n = data.length;
+        generate(seeds.nextLong());
+    }
+    
+    /**
+     * Same as generate(), but driven by an explicit seed. Calling it with a
+     * seed from PaletteBatch.getSeed rebuilds that batch candidate.
+     *
+     * @param seed seed of this call
+     */
+    public void generate(long seed) {
+        lastSeed = seed;
         
-        int maxModes = Math.min(modeQuantity, n);
-        int modes = rnd.nextInt(1, maxModes + 1);
+        float[] buffer = new float[data.length * 3];
+        fillSimple(buffer, 0, data.length, modeQuantity, ranges, new SplittableRandom(seed));
+        load(buffer, 0);
+    }
+    
+    /**
+     * Generate a smoothly interpolated palette by choosing random key hues and
+     * chroma, then linearly interpolating OKLab lightness and hue between keys.
+     */
+    public void generateInterpolated() {
+        generateInterpolated(seeds.nextLong());
+    }
+    
+    /**
+     * Same as generateInterpolated(), but driven by an explicit seed.
+     *
+     * @param seed seed of this call
+     */
+    public void generateInterpolated(long seed) {
+        lastSeed = seed;
         
-        // Pick a single random offset for L, to avoid colors which are fully
-        // black (L=0) or fully white (L=1)
-//        float lOffset = rnd.nextFloat(0f, maxOffset);
-//        float lRange = 1f - 2f * lOffset;
-        float lMin = rnd.nextFloat(0f, 1f);
-        float lMax = rnd.nextFloat(0f, 1f);
+        float[] buffer = new float[data.length * 3];
+        fillInterpolated(buffer, 0, data.length, modeQuantity, ranges, new SplittableRandom(seed));
+        load(buffer, 0);
+    }
+    
+    /**
+     * Overwrite every color with OKLCh triples read from a packed buffer.
+     *
+     * @param colors packed {L, C, H} triples
+     * @param offset index in colors of the first L value
+     */
+    public void load(float[] colors, int offset) {
+        for (int i = 0; i < data.length; i++) {
+            data[i].setX(colors[offset + i * 3]);
+            data[i].setY(colors[offset + i * 3 + 1]);
+            data[i].setZ(colors[offset + i * 3 + 2]);
+        }
         
-        if (lMin > lMax) {
-            float tmp = lMin;
-            
-            lMin = lMax;
-            lMax = tmp;
+        changedAll();
+    }
+    
+    /**
+     * Overwrite every color with a copy of the given OKLCh colors.
+     *
+     * @param colors OKLCh colors, one per palette entry
+     * @throws IllegalArgumentException if the length differs from the palette
+     */
+    public void load(ColorData[] colors) {
+        if (colors.length != data.length) {
+            throw new IllegalArgumentException("Expected " + data.length + " colors, got " + colors.length);
         }
         
-        if (lMax - lMin < 0.25f) {
-            if (lMax + 0.25f <= 1f) {
-                lMax += 0.25f;
-            } else {
-                lMin = Math.max(0f, lMin - 0.25f);
-            }
+        for (int i = 0; i < data.length; i++) {
+            data[i].setX(colors[i].getX());
+            data[i].setY(colors[i].getY());
+            data[i].setZ(colors[i].getZ());
         }
         
-        float lRange = lMax - lMin;
+        changedAll();
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Generation Kernels
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    /**
+     * Write a segmented palette of n OKLCh triples into out, starting at
+     * offset. Used by generate and by batch generation.
+     */
+    static void fillSimple(float[] out, int offset, int n, int modeQuantity, ChannelRange[] ranges, RandomGenerator rnd) {
+        int maxModes = Math.min(modeQuantity, n);
+        int modes = rnd.nextInt(1, maxModes + 1);
+        
+        // Pick a random L range, to avoid colors which are fully black (L=0)
+        // or fully white (L=1)
+        float[] lBounds = randomLightness(rnd);
+        float lMin = lBounds[0];
+        float lRange = lBounds[1] - lBounds[0];
         
         float hueStart = rnd.nextFloat(0f, 360f);
         
@@ -112,63 +223,34 @@ public class Palette {
         float chroma = rnd.nextFloat(ranges[1].getMin(), ranges[1].getMax());
         int index = 0;
         
-        // Fill in each ColorData with Z=Hue, Y=Chroma and X=L interpolated
-        // across the whole array
+        // Fill in each triple with H, C and L interpolated across the whole
+        // array
         for (int m = 0; m < modes; m++) {
             // Distribute the “extra” one-per-mode until remainder is exhausted
             int blockSize = baseSize + (m < remainder ? 1 : 0);
             
             for (int j = 0; j < blockSize; j++, index++) {
-                ColorData cd = data[index];
-                cd.setZ(hues[m]);
-                cd.setY(chroma);
+                float t = n > 1 ? (float) index / (n - 1) : 0f;
+                int o = offset + index * 3;
                 
-                float t = (float) index / (n - 1);
-//                cd.setX(lOffset + t * lRange);
-                cd.setX(lMin + t * lRange);
+                out[o] = lMin + t * lRange;
+                out[o + 1] = chroma;
+                out[o + 2] = hues[m];
             }
         }
     }
     
     /**
-     * Generate a smoothly interpolated palette by choosing random key hues and
-     * chroma, then linearly interpolating OKLab lightness and hue between keys.
+     * Write an interpolated palette of n OKLCh triples into out, starting at
+     * offset. Used by generateInterpolated and by batch generation.
      */
-    public void generateInterpolated() {
-        resetAll();
-
-        ThreadLocalRandom rnd = ThreadLocalRandom.current();
-        int n = data.length;
-        
-        if (n < 1) {
-            return;
-        }
-        
+    static void fillInterpolated(float[] out, int offset, int n, int modeQuantity, ChannelRange[] ranges, RandomGenerator rnd) {
         int maxModes = Math.min(n, modeQuantity);
         int modes = rnd.nextInt(1, maxModes + 1);
         
-//        float dynamicMaxOffset = computeMaxOffset(n);
-//        float lOffset = rnd.nextFloat(0f, dynamicMaxOffset);
-//        float lRange = 1f - 2f * lOffset;
-        float lMin = rnd.nextFloat(0f, 1f);
-        float lMax = rnd.nextFloat(0f, 1f);
-        
-        if (lMin > lMax) {
-            float tmp = lMin;
-            
-            lMin = lMax;
-            lMax = tmp;
-        }
-        
-        if (lMax - lMin < 0.25f) {
-            if (lMax + 0.25f <= 1f) {
-                lMax += 0.25f;
-            } else {
-                lMin = Math.max(0f, lMin - 0.25f);
-            }
-        }
-        
-        float lRange = lMax - lMin;
+        float[] lBounds = randomLightness(rnd);
+        float lMin = lBounds[0];
+        float lRange = lBounds[1] - lBounds[0];
         
         float chroma = rnd.nextFloat(ranges[1].getMin(), ranges[1].getMax());
         
@@ -188,12 +270,12 @@ public class Palette {
         // but keep hue/chroma fixed
         if (modes == 1) {
             for (int i = 0; i < n; i++) {
-                data[i].setY(chroma);
-                data[i].setZ(keyHues[0]);
+                float t = n > 1 ? (float) i / (n - 1) : 0f;
+                int o = offset + i * 3;
                 
-                float t = (float) i / (n - 1);
-//                data[i].setX(lOffset + t * lRange);
-                data[i].setX(lMin + t * lRange);
+                out[o] = lMin + t * lRange;
+                out[o + 1] = chroma;
+                out[o + 2] = keyHues[0];
             }
             
             return;
@@ -203,48 +285,66 @@ public class Palette {
         int[] keyPos = new int[modes];
         
         for (int i = 0; i < modes; i++) {
-            float p = i * (n - 1f) / (modes - 1f);
-            keyPos[i] = Math.round(p);
+            keyPos[i] = Math.round(i * (n - 1f) / (modes - 1f));
             
             // Also assign the L value at each key position
-//            float keyL = lOffset + ((float) i / (modes - 1)) * lRange;
-            float keyL = lMin + ((float) i / (modes - 1)) * lRange;
+            int o = offset + keyPos[i] * 3;
             
-            data[keyPos[i]].setY(chroma);
-            data[keyPos[i]].setZ(keyHues[i]);
-            data[keyPos[i]].setX(keyL);
+            out[o] = lMin + ((float) i / (modes - 1)) * lRange;
+            out[o + 1] = chroma;
+            out[o + 2] = keyHues[i];
         }
         
         // Interpolate between each pair of key points in OKLab space,
-        // then convert back to OKLCh for storing in data[]
+        // then convert back to OKLCh
         for (int seg = 0; seg < modes - 1; seg++) {
-            int start = keyPos[seg], end = keyPos[seg + 1], span = end - start;
+            int start = offset + keyPos[seg] * 3;
+            int end = offset + keyPos[seg + 1] * 3;
+            int span = keyPos[seg + 1] - keyPos[seg];
             
-            ColorData labStart = new ColorData(
-                    data[start].getX(), data[start].getY(), data[start].getZ()
-            ).oklchToOklab();
+            float hStart = (float) Math.toRadians(out[start + 2]);
+            float hEnd = (float) Math.toRadians(out[end + 2]);
             
-            ColorData labEnd = new ColorData(
-                    data[end].getX(), data[end].getY(), data[end].getZ()
-            ).oklchToOklab();
+            float lS = out[start], aS = out[start + 1] * (float) Math.cos(hStart), bS = out[start + 1] * (float) Math.sin(hStart);
+            float lE = out[end], aE = out[end + 1] * (float) Math.cos(hEnd), bE = out[end + 1] * (float) Math.sin(hEnd);
             
             // Interpolate each channel L, a, b in OKLab
             for (int j = 1; j < span; j++) {
                 float t = (float) j / span;
                 
-                float L = labStart.getX() + t * (labEnd.getX() - labStart.getX());
-                float a = labStart.getY() + t * (labEnd.getY() - labStart.getY());
-                float b = labStart.getZ() + t * (labEnd.getZ() - labStart.getZ());
-                
-                ColorData interp = new ColorData(L, a, b).oklabToOklch();
+                float a = aS + t * (aE - aS);
+                float b = bS + t * (bE - bS);
+                float hDeg = (float) Math.toDegrees(Math.atan2(b, a));
                 
-                int idx = start + j;
+                int o = start + j * 3;
                 
-                data[idx].setX(interp.getX());
-                data[idx].setY(interp.getY());
-                data[idx].setZ(interp.getZ());
+                out[o] = lS + t * (lE - lS);
+                out[o + 1] = Math.min((float) Math.hypot(a, b), 0.47f);
+                out[o + 2] = hDeg >= 0f ? hDeg : hDeg + 360f;
+            }
+        }
+    }
+    
+    private static float[] randomLightness(RandomGenerator rnd) {
+        float lMin = rnd.nextFloat(0f, 1f);
+        float lMax = rnd.nextFloat(0f, 1f);
+        
+        if (lMin > lMax) {
+            float tmp = lMin;
+            
+            lMin = lMax;
+            lMax = tmp;
+        }
+        
+        if (lMax - lMin < 0.25f) {
+            if (lMax + 0.25f <= 1f) {
+                lMax += 0.25f;
+            } else {
+                lMin = Math.max(0f, lMin - 0.25f);
             }
         }
+        
+        return new float[]{ lMin, lMax };
     }
     
     /**
@@ -254,7 +354,18 @@ public class Palette {
      * @param index index of the color to randomize
      */
     public void randomSingle(int index) {
-        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        randomSingle(index, seeds.nextLong());
+    }
+    
+    /**
+     * Same as randomSingle(int), but driven by an explicit seed.
+     *
+     * @param index index of the color to randomize
+     * @param seed seed of this call
+     */
+    public void randomSingle(int index, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        lastSeed = seed;
 
         ColorData color = data[index];
         
@@ -265,6 +376,8 @@ public class Palette {
         color.setX(newL);
         color.setY(newA);
         color.setZ(newB);
+        
+        changed(index);
     }
     
     /**
@@ -272,20 +385,37 @@ public class Palette {
      * independently within their configured ranges.
      */
     public void randomAll() {
-        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        randomAll(seeds.nextLong());
+    }
+    
+    /**
+     * Same as randomAll(), but driven by an explicit seed.
+     *
+     * @param seed seed of this call
+     */
+    public void randomAll(long seed) {
+        lastSeed = seed;
         
-        for (ColorData color : data) {
-            float newL = randomInRange(rnd, ranges[0].getMin(), ranges[0].getMax());
-            float newA = randomInRange(rnd, ranges[1].getMin(), ranges[1].getMax());
-            float newB = randomInRange(rnd, ranges[2].getMin(), ranges[2].getMax());
-
-            color.setX(newL);
-            color.setY(newA);
-            color.setZ(newB);
+        float[] buffer = new float[data.length * 3];
+        fillRandom(buffer, 0, data.length, ranges, new SplittableRandom(seed));
+        load(buffer, 0);
+    }
+    
+    /**
+     * Write n independently randomized OKLCh triples into out, starting at
+     * offset. Used by randomAll and by batch generation.
+     */
+    static void fillRandom(float[] out, int offset, int n, ChannelRange[] ranges, RandomGenerator rnd) {
+        for (int i = 0; i < n; i++) {
+            int o = offset + i * 3;
+            
+            out[o] = randomInRange(rnd, ranges[0].getMin(), ranges[0].getMax());
+            out[o + 1] = randomInRange(rnd, ranges[1].getMin(), ranges[1].getMax());
+            out[o + 2] = randomInRange(rnd, ranges[2].getMin(), ranges[2].getMax());
         }
     }
     
-    private float randomInRange(ThreadLocalRandom rnd, float min, float max) {
+    private static float randomInRange(RandomGenerator rnd, float min, float max) {
         return min + rnd.nextFloat() * (max - min);
     }
     
@@ -298,6 +428,8 @@ public class Palette {
             float hue = color.getZ();
             color.setZ((hue + 180f) % 360f);
         }
+        
+        changedAll();
     }
     
     /**
@@ -310,6 +442,8 @@ public class Palette {
         data[index].setX(original[index].getX());
         data[index].setY(original[index].getY());
         data[index].setZ(original[index].getZ());
+        
+        changed(index);
     }
     
     /**
@@ -322,6 +456,8 @@ public class Palette {
             data[i].setY(original[i].getY());
             data[i].setZ(original[i].getZ());
         }
+        
+        changedAll();
     }
     
     /**
@@ -375,21 +511,23 @@ public class Palette {
      * full palette
      */
     public String paletteToHex() {
-        String hexPalette = "[";
+        StringBuilder hexPalette = new StringBuilder(data.length * 8 + 2);
+        hexPalette.append('[');
         
         for (int i = 0; i < data.length; i++) {
             int[] rgb = data[i].oklchToRgb().toRgb255();
+            int packed = (rgb[0] << 16) | (rgb[1] << 8) | rgb[2];
+            
+            if (i > 0) hexPalette.append(',');
             
-            hexPalette += String.format("#%02X%02X%02X", rgb[0], rgb[1], rgb[2]);
+            hexPalette.append('#');
             
-            if (i < data.length - 1) {
-                hexPalette += ",";
+            for (int shift = 20; shift >= 0; shift -= 4) {
+                hexPalette.append(Character.toUpperCase(Character.forDigit((packed >> shift) & 0xF, 16)));
             }
         }
         
-        hexPalette += "]";
-        
-        return hexPalette;
+        return hexPalette.append(']').toString();
     }
     
     /**
@@ -413,8 +551,91 @@ public class Palette {
         int b = Integer.parseInt(h.substring(4, 6), 16);
         
         data[index] = new ColorData(r, g, b).rgbToOklab().oklabToOklch();
+        
+        changed(index);
+    }
+    
+    /**
+     * Overwrite one color with the given OKLCh values.
+     *
+     * @param index index of the color to change
+     * @param l lightness
+     * @param c chroma
+     * @param h hue in degrees
+     */
+    public void set(int index, float l, float c, float h) {
+        data[index].setX(l);
+        data[index].setY(c);
+        data[index].setZ(h);
+        
+        changed(index);
+    }
+    
+    /**
+     * Start grouping edits, such as the ticks of a slider drag, into a single
+     * undo step. Groups may nest; the step is recorded by the outermost
+     * endEdit.
+     */
+    public void beginEdit() {
+        editDepth++;
+    }
+    
+    /**
+     * Close a group opened by beginEdit.
+     */
+    public void endEdit() {
+        if (editDepth > 0 && --editDepth == 0) {
+            record();
+        }
+    }
+    
+    /**
+     * Revert the latest edit step.
+     *
+     * @return true if something was undone
+     */
+    public boolean undo() {
+        // A still-open group becomes its own step first
+        record();
+        
+        return restore(history.undo(committed));
+    }
+    
+    /**
+     * Re-apply the latest undone edit step.
+     *
+     * @return true if something was redone
+     */
+    public boolean redo() {
+        record();
+        
+        return restore(history.redo(committed));
     }
     
+    public boolean canUndo() {
+        return history.canUndo() || !touched.isEmpty();
+    }
+    
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+    
+    /**
+     * Latest published copy of the palette. It never changes once returned,
+     * so it can be handed to background renderers while editing goes on.
+     *
+     * @return current snapshot
+     */
+    public PaletteSnapshot snapshot() {
+        return current.get();
+    }
+    
+    /**
+     * The live colors, for reading on the editing thread. Changes must go
+     * through set or the other mutators, otherwise snapshot() goes stale.
+     *
+     * @return palette colors, not a copy
+     */
     public ColorData[] getData() {
         return data;
     }
@@ -422,4 +643,109 @@ public class Palette {
     public ColorData[] getOriginal() {
         return original;
     }
+    
+    public ChannelRange[] getRanges() {
+        return ranges;
+    }
+    
+    public int getModeQuantity() {
+        return modeQuantity;
+    }
+    
+    /**
+     * @return root seed the palette was constructed with
+     */
+    public long getSeed() {
+        return seed;
+    }
+    
+    /**
+     * @return seed of the most recent generate, generateInterpolated,
+     * randomSingle or randomAll call, or the root seed before any of them
+     */
+    public long getLastSeed() {
+        return lastSeed;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private void changed(int index) {
+        touched.set(index);
+        commit();
+    }
+    
+    private void changedAll() {
+        touched.set(0, data.length);
+        commit();
+    }
+    
+    private void commit() {
+        if (editDepth == 0) {
+            record();
+        }
+        
+        publish();
+    }
+    
+    // Turn the touched entries that really changed into one history step
+    private void record() {
+        int count = touched.cardinality();
+        
+        if (count == 0) return;
+        
+        int[] indices = new int[count];
+        float[] before = new float[count * 3];
+        float[] after = new float[count * 3];
+        int k = 0;
+        
+        for (int i = touched.nextSetBit(0); i >= 0; i = touched.nextSetBit(i + 1)) {
+            int o = i * 3;
+            float l = data[i].getX(), c = data[i].getY(), h = data[i].getZ();
+            
+            if (committed[o] == l && committed[o + 1] == c && committed[o + 2] == h) continue;
+            
+            indices[k] = i;
+            System.arraycopy(committed, o, before, k * 3, 3);
+            
+            after[k * 3] = committed[o] = l;
+            after[k * 3 + 1] = committed[o + 1] = c;
+            after[k * 3 + 2] = committed[o + 2] = h;
+            k++;
+        }
+        
+        touched.clear();
+        
+        if (k > 0) {
+            history.push(Arrays.copyOf(indices, k), Arrays.copyOf(before, k * 3), Arrays.copyOf(after, k * 3));
+        }
+    }
+    
+    private boolean restore(int[] indices) {
+        if (indices == null) return false;
+        
+        for (int i : indices) {
+            data[i].setX(committed[i * 3]);
+            data[i].setY(committed[i * 3 + 1]);
+            data[i].setZ(committed[i * 3 + 2]);
+        }
+        
+        publish();
+        
+        return true;
+    }
+    
+    // Copy on write: every edit replaces the snapshot instead of touching it
+    private void publish() {
+        float[] colors = new float[data.length * 3];
+        
+        for (int i = 0; i < data.length; i++) {
+            colors[i * 3] = data[i].getX();
+            colors[i * 3 + 1] = data[i].getY();
+            colors[i * 3 + 2] = data[i].getZ();
+        }
+        
+        current.set(new PaletteSnapshot(colors, ++version));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+package Data;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public class PaletteBatch {
+    public enum Kind { SIMPLE, INTERPOLATED, RANDOM }
+    
+    private static final int CHUNK = 1024;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    
+    private final int count;
+    private final int size;
+    private final int modeQuantity;
+    private final ChannelRange[] ranges;
+    
+    private final float[] colors;
+    private final float[] scores;
+    private final long[] seeds;
+    private Kind kind;
+    
+    /**
+     * Create a batch with room for count palettes of size colors each. The
+     * buffers are allocated once and reused by every generate call.
+     *
+     * @param count number of candidate palettes
+     * @param size colors per palette
+     * @param ranges array of three ChannelRange intervals for L, C, and H
+     * @param modeQuantity maximum number of hue segments (must be ≥ 1)
+     * @throws IllegalArgumentException if count or size is less than 1,
+     * ranges length ≠ 3 or modeQuantity less than 1
+     */
+    public PaletteBatch(int count, int size, ChannelRange[] ranges, int modeQuantity) {
+        if (count < 1 || size < 1 || ranges.length != 3 || modeQuantity < 1) {
+            throw new IllegalArgumentException("Batch requires at least 1 palette of 1 color, exactly 3 ranges and modeQuantity needs to be at least 1");
+        }
+        
+        this.count = count;
+        this.size = size;
+        this.ranges = ranges;
+        this.modeQuantity = modeQuantity;
+        
+        this.colors = new float[count * size * 3];
+        this.scores = new float[count];
+        this.seeds = new long[count];
+    }
+    
+    /**
+     * Fill the batch with new candidates without scoring them.
+     *
+     * @param kind generator to use for every candidate
+     * @param seed root seed, the same seed always yields the same batch
+     */
+    public void generate(Kind kind, long seed) {
+        generate(kind, seed, null);
+    }
+    
+    /**
+     * Fill the batch with new candidates in parallel and score each one.
+     * Candidate i is generated from its own seed, derived from the root seed
+     * without any shared state, so workers never contend and any single
+     * candidate can be rebuilt later through Palette with getSeed(i).
+     *
+     * @param kind generator to use for every candidate
+     * @param seed root seed, the same seed always yields the same batch
+     * @param fitness score function, or null to leave scores at 0
+     */
+    public void generate(Kind kind, long seed, PaletteFitness fitness) {
+        int chunks = (count + CHUNK - 1) / CHUNK;
+        this.kind = kind;
+        
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int end = Math.min(count, (c + 1) * CHUNK);
+            
+            for (int i = c * CHUNK; i < end; i++) {
+                int offset = offsetOf(i);
+                
+                seeds[i] = candidateSeed(seed, i);
+                SplittableRandom rnd = new SplittableRandom(seeds[i]);
+                
+                switch (kind) {
+                    case SIMPLE -> Palette.fillSimple(colors, offset, size, modeQuantity, ranges, rnd);
+                    case INTERPOLATED -> Palette.fillInterpolated(colors, offset, size, modeQuantity, ranges, rnd);
+                    case RANDOM -> Palette.fillRandom(colors, offset, size, ranges, rnd);
+                }
+                
+                scores[i] = fitness == null ? 0f : fitness.score(colors, offset, size);
+            }
+        });
+    }
+    
+    public int getCount() { return count; }
+    public int getSize() { return size; }
+    
+    /**
+     * @return generator used by the last generate call, or null before it
+     */
+    public Kind getKind() { return kind; }
+    
+    /**
+     * @return packed {L, C, H} triples of every candidate, palette after
+     * palette
+     */
+    public float[] getColors() { return colors; }
+    
+    public float[] getScores() { return scores; }
+    
+    /**
+     * @param index candidate index
+     * @return seed that Palette.generate, generateInterpolated or randomAll
+     * (matching the batch kind) turns into the same colors
+     */
+    public long getSeed(int index) {
+        return seeds[index];
+    }
+    
+    /**
+     * @param index candidate index
+     * @return index in getColors() of the candidate's first L value
+     */
+    public int offsetOf(int index) {
+        return index * size * 3;
+    }
+    
+    /**
+     * Copy one candidate out as OKLCh ColorData.
+     *
+     * @param index candidate index
+     * @return new array of size colors
+     */
+    public ColorData[] toColorData(int index) {
+        ColorData[] out = new ColorData[size];
+        int offset = offsetOf(index);
+        
+        for (int i = 0; i < size; i++) {
+            out[i] = new ColorData(colors[offset + i * 3], colors[offset + i * 3 + 1], colors[offset + i * 3 + 2]);
+        }
+        
+        return out;
+    }
+    
+    /**
+     * Find the k best-scoring candidates.
+     *
+     * @param k number of candidates to return
+     * @return candidate indices, best first
+     */
+    public int[] best(int k) {
+        k = Math.min(k, count);
+        
+        // Partial selection sort is enough for the small k used in practice
+        int[] order = IntStream.range(0, count).toArray();
+        
+        for (int i = 0; i < k; i++) {
+            int top = i;
+            
+            for (int j = i + 1; j < count; j++) {
+                if (scores[order[j]] > scores[order[top]]) top = j;
+            }
+            
+            int tmp = order[i];
+            order[i] = order[top];
+            order[top] = tmp;
+        }
+        
+        int[] result = new int[k];
+        System.arraycopy(order, 0, result, 0, k);
+        
+        return result;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    // The (index + 1)-th value of new SplittableRandom(root).nextLong(),
+    // reached directly: SplitMix64 is a counter run through a fixed mixer
+    private static long candidateSeed(long root, int index) {
+        long z = root + (index + 1L) * GOLDEN_GAMMA;
+        
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,151 @@
+package Data;
+
+import java.util.Arrays;
+
+/**
+ * Distances between whole palettes in OKLab. The exact distance is the
+ * symmetric chamfer distance: every color is matched to its nearest color in
+ * the other palette, and the two mean match distances are averaged. Palettes
+ * of different sizes and orders compare naturally. The signature is a fixed
+ * size summary for pre-filtering large collections before the exact pass.
+ */
+public final class PaletteDistance {
+    // Mean OKLab color of each lightness quartile
+    public static final int SIGNATURE_SIZE = 12;
+    
+    private static final int QUARTILES = 4;
+    
+    private PaletteDistance() {}
+    
+    /**
+     * Convert a palette to packed OKLab triples.
+     *
+     * @param palette OKLCh palette
+     * @return packed {L, a, b} triples, one per color
+     */
+    public static float[] toOklab(NamedPalette palette) {
+        float[] lab = new float[palette.size() * 3];
+        
+        for (int i = 0; i < palette.size(); i++) {
+            double hRad = Math.toRadians(palette.getH(i));
+            
+            lab[i * 3] = palette.getL(i);
+            lab[i * 3 + 1] = (float) (palette.getC(i) * Math.cos(hRad));
+            lab[i * 3 + 2] = (float) (palette.getC(i) * Math.sin(hRad));
+        }
+        
+        return lab;
+    }
+    
+    /**
+     * Symmetric chamfer distance between two OKLab palettes.
+     *
+     * @param a packed {L, a, b} triples
+     * @param b packed {L, a, b} triples
+     * @return mean nearest-color distance, averaged over both directions;
+     * 0 if either palette is empty
+     */
+    public static float chamfer(float[] a, float[] b) {
+        if (a.length == 0 || b.length == 0) return 0f;
+        
+        return 0.5f * (directed(a, b) + directed(b, a));
+    }
+    
+    /**
+     * Summarize an OKLab palette: colors are sorted by lightness, split into
+     * four equal groups and each group is replaced by its mean color. Two
+     * palettes with close signatures have close colors at every lightness.
+     *
+     * @param lab packed {L, a, b} triples
+     * @param out destination, SIGNATURE_SIZE values
+     * @param offset index in out of the first value
+     */
+    public static void signature(float[] lab, float[] out, int offset) {
+        int n = lab.length / 3;
+        
+        if (n == 0) {
+            Arrays.fill(out, offset, offset + SIGNATURE_SIZE, 0f);
+            
+            return;
+        }
+        
+        // Sort indices by lightness through packed (L bits, index) longs;
+        // L is never negative, so its float bits order like the value
+        long[] order = new long[n];
+        
+        for (int i = 0; i < n; i++) {
+            order[i] = ((long) Float.floatToIntBits(Math.max(0f, lab[i * 3])) << 32) | i;
+        }
+        
+        Arrays.sort(order);
+        
+        for (int q = 0; q < QUARTILES; q++) {
+            // Small palettes reuse colors so every quartile has at least one
+            int start = q * n / QUARTILES;
+            int end = Math.max(start + 1, (q + 1) * n / QUARTILES);
+            float l = 0f, aa = 0f, bb = 0f;
+            
+            for (int k = start; k < end; k++) {
+                int i = (int) order[Math.min(k, n - 1)];
+                
+                l += lab[i * 3];
+                aa += lab[i * 3 + 1];
+                bb += lab[i * 3 + 2];
+            }
+            
+            int count = end - start;
+            
+            out[offset + q * 3] = l / count;
+            out[offset + q * 3 + 1] = aa / count;
+            out[offset + q * 3 + 2] = bb / count;
+        }
+    }
+    
+    /**
+     * Distance between two signatures: the mean OKLab distance between
+     * matching quartiles.
+     *
+     * @param a signatures
+     * @param aOffset index in a of the first value
+     * @param b signatures
+     * @param bOffset index in b of the first value
+     * @return signature distance
+     */
+    public static float signatureDistance(float[] a, int aOffset, float[] b, int bOffset) {
+        float sum = 0f;
+        
+        for (int q = 0; q < QUARTILES; q++) {
+            float dl = a[aOffset + q * 3] - b[bOffset + q * 3];
+            float da = a[aOffset + q * 3 + 1] - b[bOffset + q * 3 + 1];
+            float db = a[aOffset + q * 3 + 2] - b[bOffset + q * 3 + 2];
+            
+            sum += (float) Math.sqrt(dl * dl + da * da + db * db);
+        }
+        
+        return sum / QUARTILES;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private static float directed(float[] from, float[] to) {
+        float total = 0f;
+        
+        for (int i = 0; i < from.length; i += 3) {
+            float best = Float.MAX_VALUE;
+            
+            for (int j = 0; j < to.length; j += 3) {
+                float dl = from[i] - to[j];
+                float da = from[i + 1] - to[j + 1];
+                float db = from[i + 2] - to[j + 2];
+                
+                best = Math.min(best, dl * dl + da * da + db * db);
+            }
+            
+            total += (float) Math.sqrt(best);
+        }
+        
+        return total / (from.length / 3);
+    }
+}
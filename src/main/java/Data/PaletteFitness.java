@@ -0,0 +1,107 @@
+package Data;
+
+/**
+ * Scores a palette stored as packed OKLCh triples. Higher is better; the
+ * built-in scores are all in [0..1].
+ */
+@FunctionalInterface
+public interface PaletteFitness {
+    float MAX_CHROMA = 0.47f;
+    
+    /**
+     * @param colors packed {L, C, H} triples
+     * @param offset index in colors of the palette's first L value
+     * @param size number of colors in the palette
+     * @return score of the palette
+     */
+    float score(float[] colors, int offset, int size);
+    
+    /**
+     * Lightness range covered by the palette.
+     */
+    static PaletteFitness contrast() {
+        return (colors, offset, size) -> {
+            float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+            
+            for (int i = 0; i < size; i++) {
+                float l = colors[offset + i * 3];
+                min = Math.min(min, l);
+                max = Math.max(max, l);
+            }
+            
+            return Math.max(0f, Math.min(1f, max - min));
+        };
+    }
+    
+    /**
+     * Circular spread of hues, weighted by chroma: 0 when every chromatic
+     * color shares one hue, 1 when hues cancel out around the circle.
+     */
+    static PaletteFitness hueSpread() {
+        return (colors, offset, size) -> {
+            double sumA = 0, sumB = 0, sumC = 0;
+            
+            for (int i = 0; i < size; i++) {
+                float c = colors[offset + i * 3 + 1];
+                double h = Math.toRadians(colors[offset + i * 3 + 2]);
+                
+                sumA += c * Math.cos(h);
+                sumB += c * Math.sin(h);
+                sumC += c;
+            }
+            
+            if (sumC <= 0) {
+                return 0f;
+            }
+            
+            return (float) (1.0 - Math.hypot(sumA, sumB) / sumC);
+        };
+    }
+    
+    /**
+     * Mean share of the available in-gamut chroma that each color actually
+     * uses after gamut mapping.
+     */
+    static PaletteFitness gamutUtilization() {
+        return (colors, offset, size) -> {
+            float sum = 0f;
+            
+            for (int i = 0; i < size; i++) {
+                float l = colors[offset + i * 3];
+                float c = colors[offset + i * 3 + 1];
+                float h = colors[offset + i * 3 + 2];
+                
+                float available = ColorData.maxChroma(l, h, MAX_CHROMA);
+                
+                // Pure black and white have no chroma to use
+                sum += available <= 0f ? 1f : Math.min(c, available) / available;
+            }
+            
+            return sum / size;
+        };
+    }
+    
+    /**
+     * Weighted sum of several scores.
+     *
+     * @param weights one weight per part
+     * @param parts scores to combine
+     * @return combined score
+     * @throws IllegalArgumentException if the lengths differ
+     */
+    static PaletteFitness weighted(float[] weights, PaletteFitness... parts) {
+        if (weights.length != parts.length) {
+            throw new IllegalArgumentException("Need exactly one weight per fitness");
+        }
+        
+        return (colors, offset, size) -> {
+            float total = 0f;
+            
+            for (int i = 0; i < parts.length; i++) {
+                total += weights[i] * parts[i].score(colors, offset, size);
+            }
+            
+            return total;
+        };
+    }
+}
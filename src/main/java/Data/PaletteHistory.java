@@ -0,0 +1,138 @@
+package Data;
+
+import java.util.ArrayDeque;
+
+/**
+ * Undo/redo stacks of palette edits. Each step only stores the entries it
+ * changed, as their indices plus packed {L, C, H} values before and after, so
+ * memory grows with the number of changed colors rather than palette size.
+ * The oldest steps are dropped once the byte budget is exceeded.
+ */
+public class PaletteHistory {
+    public static final long DEFAULT_MAX_BYTES = 4L << 20;
+    
+    // Rough per-step cost of the step object and its three array headers
+    private static final long STEP_OVERHEAD = 64;
+    
+    private final ArrayDeque<Step> undo = new ArrayDeque<>();
+    private final ArrayDeque<Step> redo = new ArrayDeque<>();
+    
+    private final long maxBytes;
+    private long usedBytes = 0;
+    
+    public PaletteHistory() {
+        this(DEFAULT_MAX_BYTES);
+    }
+    
+    /**
+     * @param maxBytes approximate memory budget for both stacks together
+     * @throws IllegalArgumentException if maxBytes is less than 1
+     */
+    public PaletteHistory(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("History needs a positive memory budget");
+        }
+        
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Record a new step and discard everything that could be redone. The
+     * arrays are owned by the history from now on.
+     *
+     * @param indices changed palette indices
+     * @param before packed {L, C, H} of each index before the edit
+     * @param after packed {L, C, H} of each index after the edit
+     * @throws IllegalArgumentException if the array lengths do not match
+     */
+    public void push(int[] indices, float[] before, float[] after) {
+        if (before.length != indices.length * 3 || after.length != indices.length * 3) {
+            throw new IllegalArgumentException("Need one packed triple per index before and after");
+        }
+        
+        while (!redo.isEmpty()) {
+            usedBytes -= redo.pop().bytes();
+        }
+        
+        Step step = new Step(indices, before, after);
+        
+        undo.push(step);
+        usedBytes += step.bytes();
+        
+        // Always keep the newest step, even if it alone exceeds the budget
+        while (usedBytes > maxBytes && undo.size() > 1) {
+            usedBytes -= undo.removeLast().bytes();
+        }
+    }
+    
+    /**
+     * Undo the latest step by writing its old values into a packed palette.
+     *
+     * @param state packed {L, C, H} triples of the whole palette, updated in
+     * place
+     * @return indices that changed, or null if there is nothing to undo
+     */
+    public int[] undo(float[] state) {
+        if (undo.isEmpty()) return null;
+        
+        Step step = undo.pop();
+        redo.push(step);
+        step.write(state, step.before);
+        
+        return step.indices;
+    }
+    
+    /**
+     * Redo the latest undone step by writing its new values into a packed
+     * palette.
+     *
+     * @param state packed {L, C, H} triples of the whole palette, updated in
+     * place
+     * @return indices that changed, or null if there is nothing to redo
+     */
+    public int[] redo(float[] state) {
+        if (redo.isEmpty()) return null;
+        
+        Step step = redo.pop();
+        undo.push(step);
+        step.write(state, step.after);
+        
+        return step.indices;
+    }
+    
+    public boolean canUndo() { return !undo.isEmpty(); }
+    public boolean canRedo() { return !redo.isEmpty(); }
+    
+    /**
+     * @return approximate memory held by both stacks, in bytes
+     */
+    public long getUsedBytes() { return usedBytes; }
+    
+    public void clear() {
+        undo.clear();
+        redo.clear();
+        usedBytes = 0;
+    }
+    
+    private static final class Step {
+        private final int[] indices;
+        private final float[] before;
+        private final float[] after;
+        
+        Step(int[] indices, float[] before, float[] after) {
+            this.indices = indices;
+            this.before = before;
+            this.after = after;
+        }
+        
+        void write(float[] state, float[] values) {
+            for (int i = 0; i < indices.length; i++) {
+                System.arraycopy(values, i * 3, state, indices[i] * 3, 3);
+            }
+        }
+        
+        long bytes() {
+            return STEP_OVERHEAD + indices.length * (4L + 2 * 3 * 4L);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package Data;
+
+/**
+ * Immutable copy of a palette at one point in time. Snapshots are safe to
+ * read from any thread while the palette keeps being edited; a newer edit
+ * publishes a new snapshot with a higher version instead of changing this one.
+ */
+public final class PaletteSnapshot {
+    // Packed {L, C, H} triples, never written after construction
+    private final float[] colors;
+    private final long version;
+    
+    /**
+     * @param colors packed {L, C, H} triples, owned by the snapshot from now on
+     * @param version version of the palette this copy was taken from
+     */
+    PaletteSnapshot(float[] colors, long version) {
+        this.colors = colors;
+        this.version = version;
+    }
+    
+    /**
+     * @return version of the palette at the time of the copy, increasing
+     * with every edit
+     */
+    public long getVersion() { return version; }
+    
+    public int size() { return colors.length / 3; }
+    
+    public float getL(int index) { return colors[index * 3]; }
+    public float getC(int index) { return colors[index * 3 + 1]; }
+    public float getH(int index) { return colors[index * 3 + 2]; }
+    
+    /**
+     * @param index index of the color
+     * @return new OKLCh ColorData of that color
+     */
+    public ColorData get(int index) {
+        return new ColorData(getL(index), getC(index), getH(index));
+    }
+    
+    /**
+     * @return new array of OKLCh ColorData, one per palette entry
+     */
+    public ColorData[] toColorData() {
+        ColorData[] out = new ColorData[size()];
+        
+        for (int i = 0; i < out.length; i++) {
+            out[i] = get(i);
+        }
+        
+        return out;
+    }
+    
+    /**
+     * Copy the packed {L, C, H} triples into a caller-owned buffer.
+     *
+     * @param out destination buffer
+     * @param offset index in out of the first L value
+     */
+    public void copyTo(float[] out, int offset) {
+        System.arraycopy(colors, 0, out, offset, colors.length);
+    }
+}
@@ -0,0 +1,280 @@
+package FileManager;
+
+import Data.ColorData;
+import Data.ColorTables;
+import Data.NamedPalette;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+Adobe Swatch Exchange .ase files: big-endian blocks after an "ASEF" header.
+Each group block pair becomes one palette; colors outside any group are
+returned as an unnamed palette of their own. RGB, LAB (D50), CMYK and Gray
+colors are read; the writer stores float RGB, so values are not rounded to
+8 bits. The header holds the block count, so the writer collects blocks in
+a pooled buffer and writes everything on close.
+*/
+final class AsePalette {
+    private static final int SIGNATURE = 0x41534546;
+    private static final int GROUP_START = 0xC001;
+    private static final int GROUP_END = 0xC002;
+    private static final int COLOR = 0x0001;
+    private static final int NORMAL_COLOR = 2;
+    
+    private AsePalette() {}
+    
+    static final class Reader implements PaletteReader {
+        private final DataInputStream in;
+        private long remaining;
+        private byte[] block = new byte[256];
+        
+        // Group that started right after loose colors were returned
+        private String pendingGroup;
+        
+        Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(in);
+            
+            if (this.in.readInt() != SIGNATURE) {
+                throw new IOException("Not an Adobe Swatch Exchange file");
+            }
+            
+            int major = this.in.readUnsignedShort();
+            int minor = this.in.readUnsignedShort();
+            
+            if (major != 1) {
+                throw new IOException("Unsupported ASE version " + major + "." + minor);
+            }
+            
+            remaining = this.in.readInt() & 0xFFFFFFFFL;
+        }
+        
+        @Override
+        public NamedPalette read() throws IOException {
+            String name = pendingGroup;
+            boolean inGroup = pendingGroup != null;
+            pendingGroup = null;
+            
+            float[] colors = new float[48];
+            int count = 0;
+            
+            while (remaining > 0) {
+                remaining--;
+                
+                int type = in.readUnsignedShort();
+                int length = in.readInt();
+                
+                if (length < 0) {
+                    throw new IOException("Bad ASE block length " + length);
+                }
+                
+                if (length > block.length) block = new byte[Math.max(length, block.length * 2)];
+                
+                in.readFully(block, 0, length);
+                ByteBuffer b = ByteBuffer.wrap(block, 0, length);
+                
+                try {
+                    if (type == GROUP_START) {
+                        String group = readName(b);
+                        
+                        // Loose colors end where a group begins
+                        if (count > 0 && !inGroup) {
+                            pendingGroup = group;
+                            
+                            return new NamedPalette(null, Arrays.copyOf(colors, count));
+                        }
+                        
+                        name = group;
+                        inGroup = true;
+                    } else if (type == GROUP_END) {
+                        if (inGroup) return new NamedPalette(name, Arrays.copyOf(colors, count));
+                    } else if (type == COLOR) {
+                        readName(b);
+                        
+                        if (count + 3 > colors.length) colors = Arrays.copyOf(colors, colors.length * 2);
+                        
+                        readColor(b, colors, count);
+                        count += 3;
+                    }
+                } catch (BufferUnderflowException e) {
+                    throw new IOException("Truncated ASE block of type " + Integer.toHexString(type));
+                }
+            }
+            
+            if (count == 0 && !inGroup) return null;
+            
+            return new NamedPalette(name, Arrays.copyOf(colors, count));
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+        
+        private static String readName(ByteBuffer b) {
+            int length = b.getShort() & 0xFFFF;
+            StringBuilder sb = new StringBuilder(length);
+            
+            for (int i = 0; i < length; i++) {
+                char ch = b.getChar();
+                
+                if (ch != 0) sb.append(ch);
+            }
+            
+            return sb.toString();
+        }
+        
+        private static void readColor(ByteBuffer b, float[] out, int offset) throws IOException {
+            byte[] model = new byte[4];
+            b.get(model);
+            
+            float r, g, bl;
+            
+            switch (new String(model, StandardCharsets.US_ASCII)) {
+                case "RGB " -> {
+                    r = b.getFloat();
+                    g = b.getFloat();
+                    bl = b.getFloat();
+                }
+                case "Gray" -> {
+                    r = g = bl = b.getFloat();
+                }
+                case "CMYK" -> {
+                    float c = b.getFloat(), m = b.getFloat(), y = b.getFloat(), k = b.getFloat();
+                    
+                    r = (1f - c) * (1f - k);
+                    g = (1f - m) * (1f - k);
+                    bl = (1f - y) * (1f - k);
+                }
+                case "LAB " -> {
+                    float[] rgb = labD50ToSrgb(b.getFloat() * 100f, b.getFloat(), b.getFloat());
+                    
+                    r = rgb[0];
+                    g = rgb[1];
+                    bl = rgb[2];
+                }
+                default -> throw new IOException("Unsupported ASE color model: "
+                        + new String(model, StandardCharsets.US_ASCII));
+            }
+            
+            ColorData lch = new ColorData(clamp01(r), clamp01(g), clamp01(bl)).rgbToOklab().oklabToOklch();
+            
+            out[offset] = lch.getX();
+            out[offset + 1] = lch.getY();
+            out[offset + 2] = lch.getZ();
+        }
+    }
+    
+    static final class Writer implements PaletteWriter {
+        private final OutputStream out;
+        private final BufferPool.ByteStream blocks = BufferPool.shared().borrowStream();
+        private final DataOutputStream data = new DataOutputStream(blocks);
+        private final StringBuilder sb = new StringBuilder(8);
+        
+        private long blockCount;
+        
+        Writer(OutputStream out) {
+            this.out = out;
+        }
+        
+        @Override
+        public void write(NamedPalette palette) throws IOException {
+            String name = palette.getName() != null ? palette.getName() : "Palette";
+            
+            data.writeShort(GROUP_START);
+            data.writeInt(nameLength(name));
+            writeName(name);
+            
+            for (int i = 0; i < palette.size(); i++) {
+                ColorData rgb = new ColorData(palette.getL(i), palette.getC(i), palette.getH(i)).oklchToRgb();
+                int[] rgb255 = rgb.toRgb255();
+                
+                // Named from the same conversion as the float values
+                sb.setLength(0);
+                PaletteText.appendHex(sb, (rgb255[0] << 16) | (rgb255[1] << 8) | rgb255[2]);
+                String colorName = sb.toString();
+                
+                data.writeShort(COLOR);
+                data.writeInt(nameLength(colorName) + 4 + 3 * Float.BYTES + 2);
+                writeName(colorName);
+                data.writeBytes("RGB ");
+                data.writeFloat(clamp01(rgb.getX()));
+                data.writeFloat(clamp01(rgb.getY()));
+                data.writeFloat(clamp01(rgb.getZ()));
+                data.writeShort(NORMAL_COLOR);
+            }
+            
+            data.writeShort(GROUP_END);
+            data.writeInt(0);
+            
+            blockCount += palette.size() + 2;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try (DataOutputStream header = new DataOutputStream(out)) {
+                header.writeInt(SIGNATURE);
+                header.writeShort(1);
+                header.writeShort(0);
+                header.writeInt((int) blockCount);
+                blocks.writeTo(header);
+            } finally {
+                BufferPool.shared().release(blocks);
+            }
+        }
+        
+        // Names are UTF-16 with a terminating zero, prefixed by their length
+        // in characters including that zero
+        private static int nameLength(String name) {
+            return 2 + (Math.min(name.length(), 0xFFFE) + 1) * 2;
+        }
+        
+        private void writeName(String name) throws IOException {
+            int length = Math.min(name.length(), 0xFFFE);
+            
+            data.writeShort(length + 1);
+            data.writeChars(name.substring(0, length));
+            data.writeShort(0);
+        }
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    // CIELAB (D50) → XYZ → linear sRGB with Bradford adaptation → sRGB
+    private static float[] labD50ToSrgb(float l, float a, float b) {
+        double eps = 216.0 / 24389.0, kappa = 24389.0 / 27.0;
+        
+        double fy = (l + 16.0) / 116.0;
+        double fx = fy + a / 500.0;
+        double fz = fy - b / 200.0;
+        
+        double xr = fx * fx * fx > eps ? fx * fx * fx : (116.0 * fx - 16.0) / kappa;
+        double yr = l > kappa * eps ? fy * fy * fy : l / kappa;
+        double zr = fz * fz * fz > eps ? fz * fz * fz : (116.0 * fz - 16.0) / kappa;
+        
+        double x = xr * 0.96422, y = yr, z = zr * 0.82521;
+        
+        double r = 3.1338561 * x - 1.6168667 * y - 0.4906146 * z;
+        double g = -0.9787684 * x + 1.9161415 * y + 0.0334540 * z;
+        double bl = 0.0719453 * x - 0.2289914 * y + 1.4052427 * z;
+        
+        return new float[]{
+                ColorTables.linearToSrgb((float) r),
+                ColorTables.linearToSrgb((float) g),
+                ColorTables.linearToSrgb((float) bl)
+        };
+    }
+    
+    private static float clamp01(float v) {
+        return v < 0f ? 0f : (v > 1f ? 1f : v);
+    }
+}
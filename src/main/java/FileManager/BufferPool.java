@@ -0,0 +1,353 @@
+package FileManager;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import javax.imageio.ImageTypeSpecifier;
+
+/*
+Size-classed pool for the large buffers the pipeline needs once per file:
+int rows and planes, off-heap ImageBuffers, the heap images decoders write
+into and encoder byte streams. Int arrays are handed out at the power-of-two
+size class of the request, so callers must use their own length rather than
+array.length. ImageBuffers are filed by the power of two below their
+capacity and handed out whenever their capacity fits, so same-sized frames
+keep getting the same memory. Decoder images are only handed out again for
+the same size and pixel layout. Each class keeps a bounded number of buffers
+and the pool keeps a bounded number of bytes; anything past that is left to
+the garbage collector, or closed for ImageBuffers. Hit and miss counts tell
+whether the bounds fit the workload.
+*/
+public final class BufferPool {
+    /** System property that logs the pool's stats after each batch. */
+    public static final String STATS_PROPERTY = "palette.poolStats";
+    
+    private static final int CLASSES = 32;
+    private static final long DEFAULT_MAX_BYTES = 256L << 20;
+    
+    private static final BufferPool SHARED = new BufferPool(
+            Math.max(16, Runtime.getRuntime().availableProcessors() * 4), DEFAULT_MAX_BYTES);
+    
+    private final int maxPerClass;
+    private final long maxBytes;
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<int[]>[] ints = new ArrayDeque[CLASSES];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<ImageBuffer>[] images = new ArrayDeque[CLASSES];
+    private final ArrayDeque<BufferedImage> decoded = new ArrayDeque<>();
+    private final ArrayDeque<ByteStream> streams = new ArrayDeque<>();
+    
+    private long retainedBytes;
+    private long hits;
+    private long misses;
+    
+    /**
+     * @param maxPerClass buffers kept per size class and kind
+     * @param maxBytes total bytes kept across all idle buffers
+     */
+    public BufferPool(int maxPerClass, long maxBytes) {
+        if (maxPerClass < 1 || maxBytes < 0) {
+            throw new IllegalArgumentException("Pool bounds must be positive");
+        }
+        
+        this.maxPerClass = maxPerClass;
+        this.maxBytes = maxBytes;
+        
+        for (int i = 0; i < CLASSES; i++) {
+            ints[i] = new ArrayDeque<>();
+            images[i] = new ArrayDeque<>();
+        }
+    }
+    
+    /**
+     * @return the pool shared by the whole pipeline
+     */
+    public static BufferPool shared() {
+        return SHARED;
+    }
+    
+    /**
+     * @return true if batch stats logging is switched on through
+     * STATS_PROPERTY
+     */
+    public static boolean isStatsEnabled() {
+        return Boolean.getBoolean(STATS_PROPERTY);
+    }
+    
+    /**
+     * Borrow an int array of at least the given length. Contents are
+     * undefined.
+     *
+     * @param length minimum length
+     * @return array whose length is the power of two at or above length
+     */
+    public synchronized int[] borrowInts(int length) {
+        int c = ceilClass(length);
+        int[] array = ints[c].poll();
+        
+        if (array != null) {
+            retainedBytes -= (long) array.length * Integer.BYTES;
+            hits++;
+            
+            return array;
+        }
+        
+        misses++;
+        
+        return new int[1 << c];
+    }
+    
+    /**
+     * Return an array from borrowInts. Arrays that are not a power of two
+     * in length are ignored.
+     *
+     * @param array array to return, may be null
+     */
+    public synchronized void release(int[] array) {
+        if (array == null || Integer.bitCount(array.length) != 1) return;
+        
+        long bytes = (long) array.length * Integer.BYTES;
+        ArrayDeque<int[]> free = ints[Integer.numberOfTrailingZeros(array.length)];
+        
+        if (free.size() < maxPerClass && retainedBytes + bytes <= maxBytes) {
+            free.push(array);
+            retainedBytes += bytes;
+        }
+    }
+    
+    /**
+     * Borrow an off-heap image buffer already resized to the given size.
+     * Contents are undefined.
+     *
+     * @param width width in pixels
+     * @param height height in pixels
+     * @return buffer to hand back through release
+     */
+    public ImageBuffer borrowImage(int width, int height) {
+        long needed = (long) width * height * Integer.BYTES;
+        ImageBuffer buffer = null;
+        
+        synchronized (this) {
+            int c = floorClass(needed);
+            
+            // The class below the request holds buffers that may still fit,
+            // e.g. the exact size of the previous frame
+            for (int k = c; k < Math.min(CLASSES, c + 2) && buffer == null; k++) {
+                for (ImageBuffer candidate : images[k]) {
+                    if (candidate.getCapacityBytes() >= needed) {
+                        buffer = candidate;
+                        break;
+                    }
+                }
+                
+                if (buffer != null) images[k].remove(buffer);
+            }
+            
+            if (buffer != null) {
+                retainedBytes -= buffer.getCapacityBytes();
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        
+        if (buffer == null) buffer = new ImageBuffer();
+        
+        buffer.resize(width, height);
+        
+        return buffer;
+    }
+    
+    /**
+     * Return a buffer from borrowImage. Buffers the pool has no room for are
+     * closed.
+     *
+     * @param buffer buffer to return, may be null
+     */
+    public void release(ImageBuffer buffer) {
+        if (buffer == null) return;
+        
+        long bytes = buffer.getCapacityBytes();
+        
+        synchronized (this) {
+            if (bytes > 0) {
+                ArrayDeque<ImageBuffer> free = images[floorClass(bytes)];
+                
+                if (free.size() < maxPerClass && retainedBytes + bytes <= maxBytes) {
+                    free.push(buffer);
+                    retainedBytes += bytes;
+                    
+                    return;
+                }
+            }
+        }
+        
+        buffer.close();
+    }
+    
+    /**
+     * Borrow a heap image of a decoder's type, for an ImageReader to decode
+     * into instead of allocating its own. Contents are undefined.
+     *
+     * @param type image type the reader decodes to
+     * @param width width in pixels
+     * @param height height in pixels
+     * @return image to hand back through release
+     */
+    public BufferedImage borrowImage(ImageTypeSpecifier type, int width, int height) {
+        synchronized (this) {
+            for (BufferedImage image : decoded) {
+                if (image.getWidth() == width && image.getHeight() == height
+                        && image.getColorModel().equals(type.getColorModel())
+                        && image.getSampleModel().equals(type.getSampleModel(width, height))) {
+                    decoded.remove(image);
+                    retainedBytes -= bytes(image);
+                    hits++;
+                    
+                    return image;
+                }
+            }
+            
+            misses++;
+        }
+        
+        return type.createBufferedImage(width, height);
+    }
+    
+    /**
+     * Return an image from borrowImage with a type.
+     *
+     * @param image image to return, may be null
+     */
+    public synchronized void release(BufferedImage image) {
+        if (image == null) return;
+        
+        long bytes = bytes(image);
+        
+        if (decoded.size() < maxPerClass && retainedBytes + bytes <= maxBytes) {
+            decoded.push(image);
+            retainedBytes += bytes;
+        }
+    }
+    
+    /**
+     * Borrow an empty byte stream for encoding. Its internal array keeps
+     * the largest size it has grown to.
+     *
+     * @return reset stream
+     */
+    public synchronized ByteStream borrowStream() {
+        ByteStream stream = streams.poll();
+        
+        if (stream != null) {
+            retainedBytes -= stream.capacity();
+            hits++;
+            
+            return stream;
+        }
+        
+        misses++;
+        
+        return new ByteStream();
+    }
+    
+    /**
+     * Return a stream from borrowStream.
+     *
+     * @param stream stream to return, may be null
+     */
+    public synchronized void release(ByteStream stream) {
+        if (stream == null) return;
+        
+        stream.reset();
+        
+        if (streams.size() < maxPerClass && retainedBytes + stream.capacity() <= maxBytes) {
+            streams.push(stream);
+            retainedBytes += stream.capacity();
+        }
+    }
+    
+    /**
+     * Drop every idle buffer and close the idle ImageBuffers.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < CLASSES; i++) {
+            ints[i].clear();
+            
+            for (ImageBuffer buffer : images[i]) buffer.close();
+            
+            images[i].clear();
+        }
+        
+        decoded.clear();
+        streams.clear();
+        retainedBytes = 0;
+    }
+    
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    
+    /**
+     * @return bytes held by idle buffers, heap and off-heap
+     */
+    public synchronized long getRetainedBytes() { return retainedBytes; }
+    
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses;
+        
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %.1f MB idle",
+                hits, misses, total == 0 ? 0.0 : 100.0 * hits / total, retainedBytes / (1024.0 * 1024.0));
+    }
+    
+    /**
+     * ByteArrayOutputStream that can be read back without copying its array.
+     */
+    public static final class ByteStream extends ByteArrayOutputStream {
+        private ByteStream() {
+            super(64 * 1024);
+        }
+        
+        /**
+         * @return stream over the bytes written so far, sharing the array
+         */
+        public InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+        
+        private int capacity() {
+            return buf.length;
+        }
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private static int ceilClass(int length) {
+        if (length < 0 || length > 1 << 30) {
+            throw new IllegalArgumentException("Length out of range: " + length);
+        }
+        
+        return length <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(length - 1);
+    }
+    
+    private static int floorClass(long bytes) {
+        return Math.min(CLASSES - 1, 63 - Long.numberOfLeadingZeros(Math.max(1, bytes)));
+    }
+    
+    private static long bytes(BufferedImage image) {
+        DataBuffer data = image.getRaster().getDataBuffer();
+        
+        return (long) data.getSize() * data.getNumBanks() * DataBuffer.getDataTypeSize(data.getDataType()) / 8;
+    }
+}
@@ -0,0 +1,421 @@
+package FileManager;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import org.w3c.dom.Node;
+
+/*
+Frames of an animation, read one at a time so a long sequence never has to
+be held in memory. Two sources are supported:
+
+    Animated GIF:        frames are composited onto the logical screen with
+                         their disposal methods, so every frame comes back
+                         whole, and must be read in order.
+    Numbered PNG files:  "shot_0001.png" stands for every file of its folder
+                         with the same prefix and suffix around a number,
+                         sorted by that number. Frames are independent files
+                         and may be read concurrently in any order.
+
+APNG is not available: ImageIO decodes only the default image of an animated
+PNG, so such a file opens as a single frame. Any other image is a sequence of
+one frame as well.
+*/
+public abstract class FrameSequence implements Closeable {
+    // Frame delay used when a source does not store one, in milliseconds
+    public static final int DEFAULT_DELAY = 40;
+    
+    private static final Pattern NUMBERED = Pattern.compile("(.*?)(\\d+)(\\.png)", Pattern.CASE_INSENSITIVE);
+    
+    /**
+     * Open a GIF, a numbered PNG sequence from any of its files, or a
+     * single image.
+     *
+     * @param path file path
+     * @return open sequence, to be closed by the caller
+     * @throws IOException if the file cannot be read
+     */
+    public static FrameSequence open(String path) throws IOException {
+        File file = new File(path);
+        
+        if (!file.isFile()) {
+            throw new IOException("No such file: " + path);
+        }
+        
+        if (path.toLowerCase().endsWith(".gif")) {
+            return new Gif(file);
+        }
+        
+        return new Numbered(numberedSiblings(file));
+    }
+    
+    /**
+     * @param path file path
+     * @return true if the path names an animation or a numbered frame rather
+     * than a still image
+     */
+    public static boolean isSequence(String path) {
+        String name = new File(path).getName();
+        
+        return name.toLowerCase().endsWith(".gif") || NUMBERED.matcher(name).matches();
+    }
+    
+    public abstract int size();
+    
+    public abstract int getWidth();
+    
+    public abstract int getHeight();
+    
+    /**
+     * @return true if frames may be read concurrently and in any order;
+     * otherwise read() must be called by one thread at a time and is fastest
+     * in increasing order
+     */
+    public abstract boolean isRandomAccess();
+    
+    /**
+     * Decode one whole frame.
+     *
+     * @param index frame index, 0 to size() - 1
+     * @return TYPE_INT_ARGB frame owned by the caller
+     * @throws IOException if the frame cannot be decoded
+     */
+    public abstract BufferedImage read(int index) throws IOException;
+    
+    /**
+     * @param index frame index
+     * @return how long the frame is shown, in milliseconds
+     */
+    public int getDelay(int index) {
+        return DEFAULT_DELAY;
+    }
+    
+    /**
+     * @param index frame index
+     * @return file name for the frame when written as a separate PNG
+     */
+    public abstract String frameName(int index);
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private static List<File> numberedSiblings(File file) {
+        Matcher m = NUMBERED.matcher(file.getName());
+        File[] siblings = file.getAbsoluteFile().getParentFile().listFiles();
+        
+        if (!m.matches() || siblings == null) return List.of(file);
+        
+        String prefix = m.group(1);
+        String suffix = m.group(3);
+        List<File> frames = new ArrayList<>();
+        
+        for (File sibling : siblings) {
+            Matcher s = NUMBERED.matcher(sibling.getName());
+            
+            if (s.matches() && s.group(1).equals(prefix) && s.group(3).equalsIgnoreCase(suffix) && sibling.isFile()) {
+                frames.add(sibling);
+            }
+        }
+        
+        frames.sort(Comparator.comparingLong(f -> frameNumber(f.getName())));
+        
+        return frames;
+    }
+    
+    private static long frameNumber(String name) {
+        Matcher m = NUMBERED.matcher(name);
+        m.matches();
+        
+        // Numbers too long for a long sort after every other frame
+        String digits = m.group(2).replaceFirst("^0+(?=\\d)", "");
+        
+        return digits.length() > 18 ? Long.MAX_VALUE : Long.parseLong(digits);
+    }
+    
+    private static BufferedImage toArgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) return image;
+        
+        BufferedImage argb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = argb.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        
+        return argb;
+    }
+    
+    private static final class Numbered extends FrameSequence {
+        private final List<File> frames;
+        private final int width;
+        private final int height;
+        
+        Numbered(List<File> frames) throws IOException {
+            this.frames = frames;
+            
+            // Every frame must match the first; only its header is read here
+            try (ImageInputStream in = ImageIO.createImageInputStream(frames.get(0))) {
+                Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+                
+                if (readers == null || !readers.hasNext()) {
+                    throw new IOException("Unsupported image: " + frames.get(0));
+                }
+                
+                ImageReader reader = readers.next();
+                
+                try {
+                    reader.setInput(in);
+                    width = reader.getWidth(0);
+                    height = reader.getHeight(0);
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+        
+        @Override
+        public int size() { return frames.size(); }
+        
+        @Override
+        public int getWidth() { return width; }
+        
+        @Override
+        public int getHeight() { return height; }
+        
+        @Override
+        public boolean isRandomAccess() { return true; }
+        
+        @Override
+        public BufferedImage read(int index) throws IOException {
+            BufferedImage image = ImageIO.read(frames.get(index));
+            
+            if (image == null) {
+                throw new IOException("Cannot read frame: " + frames.get(index));
+            }
+            
+            if (image.getWidth() != width || image.getHeight() != height) {
+                throw new IOException("Frame " + frames.get(index).getName() + " is " + image.getWidth() + "x"
+                        + image.getHeight() + ", the sequence is " + width + "x" + height);
+            }
+            
+            return toArgb(image);
+        }
+        
+        @Override
+        public String frameName(int index) {
+            String name = frames.get(index).getName();
+            
+            return name.substring(0, name.lastIndexOf('.')) + ".png";
+        }
+        
+        @Override
+        public void close() {}
+    }
+    
+    private static final class Gif extends FrameSequence {
+        private static final String IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+        private static final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+        
+        private final String baseName;
+        private final ImageInputStream in;
+        private final ImageReader reader;
+        private final int count;
+        private final int[] delays;
+        private final int[] lefts;
+        private final int[] tops;
+        private final String[] disposals;
+        
+        private final BufferedImage canvas;
+        private BufferedImage previous;
+        private int next = 0;
+        
+        // Disposal of the last drawn frame, applied before the next one
+        private String lastDisposal = "none";
+        private int lastX, lastY, lastW, lastH;
+        
+        Gif(File file) throws IOException {
+            String name = file.getName();
+            baseName = name.substring(0, name.lastIndexOf('.'));
+            
+            in = ImageIO.createImageInputStream(file);
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("gif");
+            
+            if (in == null || !readers.hasNext()) {
+                if (in != null) in.close();
+                
+                throw new IOException("No GIF decoder available");
+            }
+            
+            reader = readers.next();
+            reader.setInput(in, false);
+            
+            try {
+                count = reader.getNumImages(true);
+                delays = new int[count];
+                lefts = new int[count];
+                tops = new int[count];
+                disposals = new String[count];
+                
+                int screenW = 0, screenH = 0;
+                Node screen = child(reader.getStreamMetadata(), STREAM_FORMAT, "LogicalScreenDescriptor");
+                
+                if (screen != null) {
+                    screenW = intAttribute(screen, "logicalScreenWidth", 0);
+                    screenH = intAttribute(screen, "logicalScreenHeight", 0);
+                }
+                
+                for (int i = 0; i < count; i++) {
+                    IIOMetadata meta = reader.getImageMetadata(i);
+                    Node image = child(meta, IMAGE_FORMAT, "ImageDescriptor");
+                    Node control = child(meta, IMAGE_FORMAT, "GraphicControlExtension");
+                    
+                    if (image != null) {
+                        lefts[i] = intAttribute(image, "imageLeftPosition", 0);
+                        tops[i] = intAttribute(image, "imageTopPosition", 0);
+                        screenW = Math.max(screenW, lefts[i] + intAttribute(image, "imageWidth", 0));
+                        screenH = Math.max(screenH, tops[i] + intAttribute(image, "imageHeight", 0));
+                    }
+                    
+                    disposals[i] = control == null ? "none" : attribute(control, "disposalMethod", "none");
+                    
+                    // Browsers treat tiny delays as 100 ms; so do we
+                    int centiseconds = control == null ? 0 : intAttribute(control, "delayTime", 0);
+                    delays[i] = centiseconds <= 1 ? 100 : centiseconds * 10;
+                }
+                
+                if (count == 0 || screenW <= 0 || screenH <= 0) {
+                    throw new IOException("GIF has no frames: " + file);
+                }
+                
+                canvas = new BufferedImage(screenW, screenH, BufferedImage.TYPE_INT_ARGB);
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+        
+        @Override
+        public int size() { return count; }
+        
+        @Override
+        public int getWidth() { return canvas.getWidth(); }
+        
+        @Override
+        public int getHeight() { return canvas.getHeight(); }
+        
+        @Override
+        public boolean isRandomAccess() { return false; }
+        
+        @Override
+        public int getDelay(int index) { return delays[index]; }
+        
+        @Override
+        public BufferedImage read(int index) throws IOException {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("Frame " + index + " of " + count);
+            }
+            
+            // Frames depend on the ones before, so going back replays from
+            // the start
+            if (index < next) {
+                clear(0, 0, canvas.getWidth(), canvas.getHeight());
+                previous = null;
+                lastDisposal = "none";
+                next = 0;
+            }
+            
+            while (next <= index) {
+                drawFrame(next++);
+            }
+            
+            BufferedImage copy = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            canvas.copyData(copy.getRaster());
+            
+            return copy;
+        }
+        
+        @Override
+        public String frameName(int index) {
+            return String.format("%s_%04d.png", baseName, index);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            reader.dispose();
+            in.close();
+        }
+        
+        private void drawFrame(int index) throws IOException {
+            switch (lastDisposal) {
+                case "restoreToBackgroundColor" -> clear(lastX, lastY, lastW, lastH);
+                case "restoreToPrevious" -> {
+                    if (previous != null) previous.copyData(canvas.getRaster());
+                }
+                default -> {}
+            }
+            
+            BufferedImage frame = reader.read(index);
+            
+            lastX = lefts[index];
+            lastY = tops[index];
+            lastW = frame.getWidth();
+            lastH = frame.getHeight();
+            lastDisposal = disposals[index];
+            
+            if (lastDisposal.equals("restoreToPrevious")) {
+                if (previous == null) {
+                    previous = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_ARGB);
+                }
+                
+                canvas.copyData(previous.getRaster());
+            }
+            
+            Graphics2D g = canvas.createGraphics();
+            g.drawImage(frame, lastX, lastY, null);
+            g.dispose();
+        }
+        
+        private void clear(int x, int y, int w, int h) {
+            Graphics2D g = canvas.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(x, y, w, h);
+            g.dispose();
+        }
+        
+        private static Node child(IIOMetadata meta, String format, String name) {
+            if (meta == null) return null;
+            
+            for (Node n = meta.getAsTree(format).getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (n.getNodeName().equals(name)) return n;
+            }
+            
+            return null;
+        }
+        
+        private static String attribute(Node node, String name, String fallback) {
+            Node attr = node.getAttributes().getNamedItem(name);
+            
+            return attr == null ? fallback : attr.getNodeValue();
+        }
+        
+        private static int intAttribute(Node node, String name, int fallback) {
+            try {
+                return Integer.parseInt(attribute(node, name, String.valueOf(fallback)));
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package FileManager;
+
+import Data.NamedPalette;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/*
+GIMP .gpl palettes: a "GIMP Palette" header, optional Name / Columns lines,
+# comments and one "R G B name" line per color. Several palettes may follow
+each other in one stream; each header starts a new one.
+*/
+final class GplPalette {
+    private static final String HEADER = "GIMP Palette";
+    
+    private GplPalette() {}
+    
+    static final class Reader implements PaletteReader {
+        private final BufferedReader in;
+        
+        // Header of the next palette, read while finishing the previous one
+        private String pending;
+        private int lineNumber;
+        
+        Reader(InputStream in) {
+            this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+        
+        @Override
+        public NamedPalette read() throws IOException {
+            String line = pending != null ? pending : nextNonBlank();
+            pending = null;
+            
+            if (line == null) return null;
+            
+            if (!line.equals(HEADER)) {
+                throw new IOException("Not a GIMP palette, line " + lineNumber + ": " + line);
+            }
+            
+            String name = null;
+            int[] rgb = new int[64];
+            int count = 0;
+            
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                
+                if (line.isEmpty() || line.startsWith("#") || line.startsWith("Columns:")) continue;
+                
+                if (line.equals(HEADER)) {
+                    pending = line;
+                    break;
+                }
+                
+                if (line.startsWith("Name:")) {
+                    name = line.substring(5).strip();
+                    continue;
+                }
+                
+                rgb = PaletteText.append(rgb, count++, PaletteText.parseRgb(line, lineNumber));
+            }
+            
+            return NamedPalette.ofRgb(name, rgb, count);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+        
+        private String nextNonBlank() throws IOException {
+            String line;
+            
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                
+                if (!line.isEmpty()) return line;
+            }
+            
+            return null;
+        }
+    }
+    
+    static final class Writer implements PaletteWriter {
+        private final BufferedWriter out;
+        private final StringBuilder sb = new StringBuilder(1024);
+        
+        Writer(OutputStream out) {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+        
+        @Override
+        public void write(NamedPalette palette) throws IOException {
+            String name = palette.getName() != null ? palette.getName() : "Palette";
+            
+            sb.setLength(0);
+            sb.append(HEADER).append('\n');
+            sb.append("Name: ").append(name.replace('\n', ' ').replace('\r', ' ')).append('\n');
+            sb.append("Columns: 0\n#\n");
+            
+            for (int i = 0; i < palette.size(); i++) {
+                int rgb = palette.getRgb(i);
+                
+                PaletteText.appendRgb(sb, rgb);
+                sb.append('\t');
+                PaletteText.appendHex(sb, rgb);
+                sb.append('\n');
+            }
+            
+            out.append(sb);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
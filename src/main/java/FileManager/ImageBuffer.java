@@ -0,0 +1,272 @@
+package FileManager;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/*
+Packed ARGB pixel plane held off-heap in a MemorySegment, so full-size
+working images of a batch never land on the Java heap as humongous arrays.
+The memory has an explicit lifetime: it is reused by resize() while it is
+large enough, and freed by close(). Stages that only need rows use getRow /
+setRow; asBufferedImage() wraps the same memory for code that still expects
+a BufferedImage, and toBufferedImage() copies to the heap when Swing has to
+paint it quickly.
+*/
+public final class ImageBuffer implements AutoCloseable {
+    private static final long ALIGNMENT = 64;
+    
+    private Arena arena;
+    private MemorySegment pixels = MemorySegment.NULL;
+    private long capacity;
+    
+    private int width;
+    private int height;
+    
+    /**
+     * Create an empty buffer; the first resize or load allocates.
+     */
+    public ImageBuffer() {}
+    
+    /**
+     * @param width width in pixels
+     * @param height height in pixels
+     */
+    public ImageBuffer(int width, int height) {
+        resize(width, height);
+    }
+    
+    /**
+     * Copy an image into a new buffer.
+     *
+     * @param image source image, any type
+     * @return buffer holding the image as ARGB
+     */
+    public static ImageBuffer of(BufferedImage image) {
+        ImageBuffer buffer = new ImageBuffer();
+        buffer.load(image);
+        
+        return buffer;
+    }
+    
+    /**
+     * Change the dimensions, keeping the current memory if it is large
+     * enough. Pixel contents are undefined afterwards, and views from
+     * asBufferedImage must be taken again.
+     *
+     * @param width width in pixels
+     * @param height height in pixels
+     */
+    public void resize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size must be positive: " + width + "x" + height);
+        }
+        
+        long needed = (long) width * height;
+        
+        if (needed > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Image too large: " + width + "x" + height);
+        }
+        
+        if (needed > capacity) {
+            if (arena != null) arena.close();
+            
+            arena = Arena.ofShared();
+            pixels = arena.allocate(needed * Integer.BYTES, ALIGNMENT);
+            capacity = needed;
+        }
+        
+        this.width = width;
+        this.height = height;
+    }
+    
+    /**
+     * Resize to an image and copy its pixels in as ARGB.
+     *
+     * @param image source image, any type
+     */
+    public void load(BufferedImage image) {
+        resize(image.getWidth(), image.getHeight());
+        
+        // Packed ARGB sources are copied in one call
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB && isWholeRaster(image)) {
+            int[] src = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            MemorySegment.copy(src, 0, pixels, ValueLayout.JAVA_INT, 0, width * height);
+            
+            return;
+        }
+        
+        int[] row = new int[width];
+        
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            setRow(y, row);
+        }
+    }
+    
+    /**
+     * Resize to another buffer and copy its pixels.
+     *
+     * @param other source buffer
+     */
+    public void load(ImageBuffer other) {
+        resize(other.width, other.height);
+        
+        MemorySegment.copy(other.pixels, 0, pixels, 0, (long) width * height * Integer.BYTES);
+    }
+    
+    /**
+     * @param x column
+     * @param y row
+     * @return packed ARGB
+     */
+    public int get(int x, int y) {
+        return pixels.getAtIndex(ValueLayout.JAVA_INT, (long) y * width + x);
+    }
+    
+    /**
+     * @param x column
+     * @param y row
+     * @param argb packed ARGB
+     */
+    public void set(int x, int y, int argb) {
+        pixels.setAtIndex(ValueLayout.JAVA_INT, (long) y * width + x, argb);
+    }
+    
+    /**
+     * Copy one row out. Different rows may be read and written from
+     * different threads at once.
+     *
+     * @param y row
+     * @param row destination, at least width entries
+     */
+    public void getRow(int y, int[] row) {
+        MemorySegment.copy(pixels, ValueLayout.JAVA_INT, (long) y * width * Integer.BYTES, row, 0, width);
+    }
+    
+    /**
+     * Copy one row in.
+     *
+     * @param y row
+     * @param row source, at least width entries
+     */
+    public void setRow(int y, int[] row) {
+        MemorySegment.copy(row, 0, pixels, ValueLayout.JAVA_INT, (long) y * width * Integer.BYTES, width);
+    }
+    
+    /**
+     * @param argb packed ARGB written to every pixel
+     */
+    public void fill(int argb) {
+        if (argb == 0) {
+            pixels.asSlice(0, (long) width * height * Integer.BYTES).fill((byte) 0);
+            
+            return;
+        }
+        
+        for (long i = 0, n = (long) width * height; i < n; i++) {
+            pixels.setAtIndex(ValueLayout.JAVA_INT, i, argb);
+        }
+    }
+    
+    /**
+     * Wrap the buffer as a BufferedImage without copying. Reads and writes
+     * go straight to the off-heap memory, which suits ImageIO and row-based
+     * stages; painting it is slower than painting a heap image. The view is
+     * invalid once the buffer is resized past its capacity or closed.
+     *
+     * @return TYPE_CUSTOM ARGB image sharing this buffer's memory
+     */
+    public BufferedImage asBufferedImage() {
+        MemorySegment segment = pixels;
+        int size = width * height;
+        
+        DataBuffer data = new DataBuffer(DataBuffer.TYPE_INT, size) {
+            @Override
+            public int getElem(int bank, int i) {
+                return segment.getAtIndex(ValueLayout.JAVA_INT, i);
+            }
+            
+            @Override
+            public void setElem(int bank, int i, int val) {
+                segment.setAtIndex(ValueLayout.JAVA_INT, i, val);
+            }
+        };
+        
+        DirectColorModel model = (DirectColorModel) ColorModel.getRGBdefault();
+        SinglePixelPackedSampleModel sample = new SinglePixelPackedSampleModel(
+                DataBuffer.TYPE_INT, width, height, model.getMasks());
+        WritableRaster raster = Raster.createWritableRaster(sample, data, null);
+        
+        return new BufferedImage(model, raster, false, null);
+    }
+    
+    /**
+     * Copy the pixels into a new heap image, for display.
+     *
+     * @return TYPE_INT_ARGB copy
+     */
+    public BufferedImage toBufferedImage() {
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        copyTo(out);
+        
+        return out;
+    }
+    
+    /**
+     * Copy the pixels into an existing TYPE_INT_ARGB image of the same size.
+     *
+     * @param out destination image
+     */
+    public void copyTo(BufferedImage out) {
+        if (out.getType() != BufferedImage.TYPE_INT_ARGB || out.getWidth() != width || out.getHeight() != height) {
+            throw new IllegalArgumentException("Output must be a " + width + "x" + height + " TYPE_INT_ARGB image");
+        }
+        
+        int[] dst = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        MemorySegment.copy(pixels, ValueLayout.JAVA_INT, 0, dst, 0, width * height);
+    }
+    
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    
+    /**
+     * @return allocated off-heap size in bytes
+     */
+    public long getCapacityBytes() { return capacity * Integer.BYTES; }
+    
+    /**
+     * Free the off-heap memory. The buffer can be reused after another
+     * resize or load.
+     */
+    @Override
+    public void close() {
+        if (arena != null) arena.close();
+        
+        arena = null;
+        pixels = MemorySegment.NULL;
+        capacity = 0;
+        width = 0;
+        height = 0;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    // Sub-images share a larger DataBufferInt and cannot be copied in one go
+    private static boolean isWholeRaster(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        
+        return raster.getParent() == null
+                && raster.getDataBuffer().getSize() == image.getWidth() * image.getHeight();
+    }
+}
@@ -0,0 +1,171 @@
+package FileManager;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/*
+Minimal encoder for 8-bit palette PNGs. ImageIO's encoder tries every row
+filter on every row and compresses at the default level, which makes it the
+slowest stage of a sequence render. Quantized frames are long runs of a few
+indices that deflate well unfiltered, so this writes every row with filter 0
+at the fastest level: several times quicker for files about twice the size.
+*/
+final class IndexedPng {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    
+    private IndexedPng() {}
+    
+    /**
+     * @param image image to test
+     * @return true if write() can encode the image
+     */
+    static boolean supports(BufferedImage image) {
+        return image.getType() == BufferedImage.TYPE_BYTE_INDEXED
+                && image.getSampleModel() instanceof PixelInterleavedSampleModel sm
+                && sm.getPixelStride() == 1
+                && image.getRaster().getDataBuffer() instanceof DataBufferByte;
+    }
+    
+    /**
+     * Encode a TYPE_BYTE_INDEXED image.
+     *
+     * @param image image accepted by supports()
+     * @param file destination, overwritten
+     * @throws IOException if the file cannot be written
+     */
+    static void write(BufferedImage image, File file) throws IOException {
+        write(image, deflate(image), file);
+    }
+    
+    /**
+     * Encode a TYPE_BYTE_INDEXED image whose pixels were already compressed,
+     * so images that share pixels and differ only in colors cost one
+     * deflate between them.
+     *
+     * @param image image accepted by supports()
+     * @param pixels result of deflate() on an image with the same indices
+     * @param file destination, overwritten
+     * @throws IOException if the file cannot be written
+     */
+    static void write(BufferedImage image, byte[] pixels, File file) throws IOException {
+        if (!supports(image)) {
+            throw new IllegalArgumentException("Image must be an 8-bit TYPE_BYTE_INDEXED image");
+        }
+        
+        IndexColorModel colors = (IndexColorModel) image.getColorModel();
+        BufferPool.ByteStream chunk = BufferPool.shared().borrowStream();
+        
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.write(SIGNATURE);
+            
+            DataOutputStream data = new DataOutputStream(chunk);
+            data.writeInt(image.getWidth());
+            data.writeInt(image.getHeight());
+            data.writeByte(8);
+            data.writeByte(3);
+            data.writeByte(0);
+            data.writeByte(0);
+            data.writeByte(0);
+            writeChunk(out, "IHDR", chunk);
+            
+            int n = colors.getMapSize();
+            int lastTranslucent = -1;
+            
+            for (int i = 0; i < n; i++) {
+                int argb = colors.getRGB(i);
+                
+                data.writeByte(argb >> 16);
+                data.writeByte(argb >> 8);
+                data.writeByte(argb);
+                
+                if ((argb >>> 24) != 0xFF) lastTranslucent = i;
+            }
+            
+            writeChunk(out, "PLTE", chunk);
+            
+            // Alpha only up to the last entry that needs it
+            if (lastTranslucent >= 0) {
+                for (int i = 0; i <= lastTranslucent; i++) {
+                    data.writeByte(colors.getRGB(i) >>> 24);
+                }
+                
+                writeChunk(out, "tRNS", chunk);
+            }
+            
+            writeChunk(out, "IDAT", pixels);
+            writeChunk(out, "IEND", new byte[0]);
+        } finally {
+            BufferPool.shared().release(chunk);
+        }
+    }
+            
+    /**
+     * Compress the index plane of an image into the body of its IDAT chunk.
+     *
+     * @param image image accepted by supports()
+     * @return zlib stream of the filtered rows
+     * @throws IOException if compression fails
+     */
+    static byte[] deflate(BufferedImage image) throws IOException {
+        if (!supports(image)) {
+            throw new IllegalArgumentException("Image must be an 8-bit TYPE_BYTE_INDEXED image");
+        }
+        
+        int width = image.getWidth();
+        int height = image.getHeight();
+        PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel) image.getSampleModel();
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int stride = sm.getScanlineStride();
+        int origin = image.getRaster().getDataBuffer().getOffset() + sm.getBandOffsets()[0]
+                - image.getRaster().getSampleModelTranslateY() * stride
+                - image.getRaster().getSampleModelTranslateX();
+        
+        BufferPool.ByteStream chunk = BufferPool.shared().borrowStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        
+        try {
+            try (DeflaterOutputStream z = new DeflaterOutputStream(chunk, deflater, 1 << 16)) {
+                for (int y = 0; y < height; y++) {
+                    z.write(0);
+                    z.write(pixels, origin + y * stride, width);
+                }
+            }
+            
+            return chunk.toByteArray();
+        } finally {
+            deflater.end();
+            BufferPool.shared().release(chunk);
+        }
+    }
+    
+    // Writes the bytes collected in chunk as one chunk, then empties it for
+    // the next one
+    private static void writeChunk(DataOutputStream out, String type, BufferPool.ByteStream chunk) throws IOException {
+        writeChunk(out, type, chunk.toByteArray());
+        chunk.reset();
+    }
+    
+    private static void writeChunk(DataOutputStream out, String type, byte[] body) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(body);
+        
+        out.writeInt(body.length);
+        out.write(typeBytes);
+        out.write(body);
+        out.writeInt((int) crc.getValue());
+    }
+}
@@ -0,0 +1,127 @@
+package FileManager;
+
+import Data.NamedPalette;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/*
+JASC / Paint Shop Pro .pal palettes: "JASC-PAL", a version line, the color
+count and one "R G B" line per color, with CRLF line ends. Several palettes
+may follow each other in one stream.
+*/
+final class JascPalette {
+    private static final String HEADER = "JASC-PAL";
+    private static final String VERSION = "0100";
+    
+    private JascPalette() {}
+    
+    static final class Reader implements PaletteReader {
+        private final BufferedReader in;
+        private int lineNumber;
+        
+        Reader(InputStream in) {
+            this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        }
+        
+        @Override
+        public NamedPalette read() throws IOException {
+            String line;
+            
+            do {
+                line = nextLine();
+                
+                if (line == null) return null;
+            } while (line.isEmpty());
+            
+            if (!line.equals(HEADER)) {
+                throw new IOException("Not a JASC palette, line " + lineNumber + ": " + line);
+            }
+            
+            requireLine();
+            
+            int count;
+            
+            try {
+                count = Integer.parseInt(requireLine());
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad color count on line " + lineNumber);
+            }
+            
+            if (count < 0) {
+                throw new IOException("Bad color count on line " + lineNumber);
+            }
+            
+            int[] rgb = new int[Math.min(count, 1 << 16)];
+            int n = 0;
+            
+            for (int i = 0; i < count; i++) {
+                rgb = PaletteText.append(rgb, n++, PaletteText.parseRgb(requireLine(), lineNumber));
+            }
+            
+            return NamedPalette.ofRgb(null, rgb, n);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+        
+        private String nextLine() throws IOException {
+            String line = in.readLine();
+            
+            if (line == null) return null;
+            
+            lineNumber++;
+            
+            return line.strip();
+        }
+        
+        private String requireLine() throws IOException {
+            String line = nextLine();
+            
+            if (line == null) {
+                throw new IOException("Unexpected end of JASC palette after line " + lineNumber);
+            }
+            
+            return line;
+        }
+    }
+    
+    static final class Writer implements PaletteWriter {
+        private final BufferedWriter out;
+        private final StringBuilder sb = new StringBuilder(1024);
+        
+        Writer(OutputStream out) {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII));
+        }
+        
+        @Override
+        public void write(NamedPalette palette) throws IOException {
+            sb.setLength(0);
+            sb.append(HEADER).append("\r\n").append(VERSION).append("\r\n");
+            sb.append(palette.size()).append("\r\n");
+            
+            for (int i = 0; i < palette.size(); i++) {
+                int rgb = palette.getRgb(i);
+                
+                sb.append((rgb >> 16) & 0xFF).append(' ')
+                        .append((rgb >> 8) & 0xFF).append(' ')
+                        .append(rgb & 0xFF).append("\r\n");
+            }
+            
+            out.append(sb);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package FileManager;
+
+import Data.NamedPalette;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+OKLCh palettes as JSON, the only format that keeps exact values:
+
+    [
+      {"name": "Dusk", "colors": [[0.62, 0.11, 254.3], ...]},
+      ...
+    ]
+
+A single object without the surrounding array is also accepted. The reader
+is a small pull parser that returns one palette per read() and skips keys it
+does not know, so the file never has to be held in memory.
+*/
+final class JsonPalette {
+    private JsonPalette() {}
+    
+    static final class Reader implements PaletteReader {
+        private static final int START = 0, IN_ARRAY = 1, DONE = 2;
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+        };
+        
+        private final InputStreamReader in;
+        private final StringBuilder token = new StringBuilder(32);
+        
+        // Characters are pulled from a local buffer; Reader.read() per
+        // character would take a lock each time
+        private final char[] buffer = new char[64 * 1024];
+        private int bufferPos;
+        private int bufferEnd;
+        
+        private int state = START;
+        private long position;
+        
+        Reader(InputStream in) {
+            this.in = new InputStreamReader(in, StandardCharsets.UTF_8);
+        }
+        
+        @Override
+        public NamedPalette read() throws IOException {
+            if (state == DONE) return null;
+            
+            if (state == START) {
+                int c = skipWhitespace();
+                
+                if (c == -1) {
+                    state = DONE;
+                    
+                    return null;
+                }
+                
+                if (c == '{') {
+                    state = DONE;
+                    
+                    return readPalette();
+                }
+                
+                expect('[');
+                state = IN_ARRAY;
+                
+                if (skipWhitespace() == ']') {
+                    next();
+                    state = DONE;
+                    
+                    return null;
+                }
+            }
+            
+            NamedPalette palette = readPalette();
+            int c = skipWhitespace();
+            next();
+            
+            if (c == ']') {
+                state = DONE;
+            } else if (c != ',') {
+                throw error("Expected ',' or ']'");
+            }
+            
+            return palette;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+        
+        private NamedPalette readPalette() throws IOException {
+            expect('{');
+            
+            String name = null;
+            float[] colors = new float[48];
+            int count = 0;
+            
+            if (skipWhitespace() == '}') {
+                next();
+                
+                return new NamedPalette(null, new float[0]);
+            }
+            
+            while (true) {
+                String key = readString();
+                expect(':');
+                
+                if (key.equals("name")) {
+                    name = skipWhitespace() == 'n' ? readLiteral(null) : readString();
+                } else if (key.equals("colors")) {
+                    expect('[');
+                    
+                    if (skipWhitespace() == ']') {
+                        next();
+                    } else {
+                        while (true) {
+                            if (count + 3 > colors.length) colors = Arrays.copyOf(colors, colors.length * 2);
+                            
+                            expect('[');
+                            colors[count++] = readNumber();
+                            expect(',');
+                            colors[count++] = readNumber();
+                            expect(',');
+                            colors[count++] = readNumber();
+                            expect(']');
+                            
+                            if (separator(']')) break;
+                        }
+                    }
+                } else {
+                    skipValue();
+                }
+                
+                if (separator('}')) break;
+            }
+            
+            return new NamedPalette(name, Arrays.copyOf(colors, count));
+        }
+        
+        // Consumes ',' (returns false) or the closing character (returns true)
+        private boolean separator(char close) throws IOException {
+            int c = skipWhitespace();
+            next();
+            
+            if (c == close) return true;
+            if (c == ',') return false;
+            
+            throw error("Expected ',' or '" + close + "'");
+        }
+        
+        private String readString() throws IOException {
+            expect('"');
+            token.setLength(0);
+            
+            while (true) {
+                int c = next();
+                
+                if (c == -1) throw error("Unterminated string");
+                if (c == '"') return token.toString();
+                
+                if (c != '\\') {
+                    token.append((char) c);
+                    continue;
+                }
+                
+                int e = next();
+                
+                switch (e) {
+                    case '"', '\\', '/' -> token.append((char) e);
+                    case 'b' -> token.append('\b');
+                    case 'f' -> token.append('\f');
+                    case 'n' -> token.append('\n');
+                    case 'r' -> token.append('\r');
+                    case 't' -> token.append('\t');
+                    case 'u' -> {
+                        int code = 0;
+                        
+                        for (int i = 0; i < 4; i++) {
+                            int d = Character.digit(next(), 16);
+                            
+                            if (d < 0) throw error("Bad \\u escape");
+                            
+                            code = code * 16 + d;
+                        }
+                        
+                        token.append((char) code);
+                    }
+                    default -> throw error("Bad escape");
+                }
+            }
+        }
+        
+        private float readNumber() throws IOException {
+            skipWhitespace();
+            token.setLength(0);
+            
+            int c;
+            
+            while ((c = peek()) != -1 && (c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E'
+                    || (c >= '0' && c <= '9'))) {
+                token.append((char) next());
+            }
+            
+            float fast = parseShortDecimal(token);
+            
+            if (!Float.isNaN(fast)) return fast;
+            
+            try {
+                return Float.parseFloat(token.toString());
+            } catch (NumberFormatException e) {
+                throw error("Expected a number");
+            }
+        }
+        
+        // Plain decimals of up to 15 digits, as written by Float.toString,
+        // are exact in a double and need a single rounding to float. Returns
+        // NaN for anything else, which goes through Float.parseFloat instead.
+        private static float parseShortDecimal(CharSequence s) {
+            int n = s.length(), i = 0;
+            boolean negative = n > 0 && s.charAt(0) == '-';
+            
+            if (negative) i++;
+            
+            long mantissa = 0;
+            int digits = 0, scale = 0;
+            boolean dot = false;
+            
+            for (; i < n; i++) {
+                char ch = s.charAt(i);
+                
+                if (ch >= '0' && ch <= '9') {
+                    if (++digits > 15) return Float.NaN;
+                    
+                    mantissa = mantissa * 10 + (ch - '0');
+                    
+                    if (dot) scale++;
+                } else if (ch == '.' && !dot) {
+                    dot = true;
+                } else {
+                    return Float.NaN;
+                }
+            }
+            
+            if (digits == 0) return Float.NaN;
+            
+            double value = mantissa / POWERS_OF_TEN[scale];
+            
+            return (float) (negative ? -value : value);
+        }
+        
+        private <T> T readLiteral(T value) throws IOException {
+            skipWhitespace();
+            token.setLength(0);
+            
+            while (peek() >= 'a' && peek() <= 'z') {
+                token.append((char) next());
+            }
+            
+            String word = token.toString();
+            
+            if (!word.equals("null") && !word.equals("true") && !word.equals("false")) {
+                throw error("Unexpected '" + word + "'");
+            }
+            
+            return value;
+        }
+        
+        private void skipValue() throws IOException {
+            int c = skipWhitespace();
+            
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                char close = c == '{' ? '}' : ']';
+                next();
+                
+                if (skipWhitespace() == close) {
+                    next();
+                    
+                    return;
+                }
+                
+                do {
+                    if (close == '}') {
+                        readString();
+                        expect(':');
+                    }
+                    
+                    skipValue();
+                } while (!separator(close));
+            } else if (c >= 'a' && c <= 'z') {
+                readLiteral(null);
+            } else {
+                readNumber();
+            }
+        }
+        
+        private void expect(char expected) throws IOException {
+            if (skipWhitespace() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+            
+            next();
+        }
+        
+        private int skipWhitespace() throws IOException {
+            int c;
+            
+            while ((c = peek()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                next();
+            }
+            
+            return c;
+        }
+        
+        private int peek() throws IOException {
+            if (bufferPos == bufferEnd) {
+                int n = in.read(buffer, 0, buffer.length);
+                
+                if (n <= 0) return -1;
+                
+                bufferPos = 0;
+                bufferEnd = n;
+            }
+            
+            return buffer[bufferPos];
+        }
+        
+        private int next() throws IOException {
+            int c = peek();
+            
+            if (c != -1) {
+                bufferPos++;
+                position++;
+            }
+            
+            return c;
+        }
+        
+        private IOException error(String message) {
+            return new IOException(message + " at character " + position + " of palette JSON");
+        }
+    }
+    
+    static final class Writer implements PaletteWriter {
+        private final BufferedWriter out;
+        private final StringBuilder sb = new StringBuilder(1024);
+        
+        private boolean first = true;
+        
+        Writer(OutputStream out) {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+        
+        @Override
+        public void write(NamedPalette palette) throws IOException {
+            sb.setLength(0);
+            sb.append(first ? "[\n  {\"name\": " : ",\n  {\"name\": ");
+            first = false;
+            
+            if (palette.getName() == null) {
+                sb.append("null");
+            } else {
+                appendString(palette.getName());
+            }
+            
+            sb.append(", \"colors\": [");
+            
+            for (int i = 0; i < palette.size(); i++) {
+                if (i > 0) sb.append(", ");
+                
+                sb.append('[').append(palette.getL(i))
+                        .append(", ").append(palette.getC(i))
+                        .append(", ").append(palette.getH(i)).append(']');
+            }
+            
+            sb.append("]}");
+            out.append(sb);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.write(first ? "[]\n" : "\n]\n");
+            out.close();
+        }
+        
+        private void appendString(String s) {
+            sb.append('"');
+            
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            
+            sb.append('"');
+        }
+    }
+}
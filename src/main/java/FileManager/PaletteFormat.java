@@ -0,0 +1,87 @@
+package FileManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+public enum PaletteFormat {
+    GPL("GIMP Palette", "gpl"),
+    ASE("Adobe Swatch Exchange", "ase"),
+    PAL("JASC Palette", "pal"),
+    JSON("OKLCh JSON", "json"),
+    PNG("PNG Strip", "png");
+    
+    private final String label;
+    private final String extension;
+    
+    PaletteFormat(String label, String extension) {
+        this.label = label;
+        this.extension = extension;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+    
+    /**
+     * @return file extension without the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+    
+    /**
+     * @return true if the format stores exact OKLCh values rather than
+     * 8-bit or float sRGB
+     */
+    public boolean isLossless() {
+        return this == JSON;
+    }
+    
+    /**
+     * @param path file name or path
+     * @return format matching the file extension
+     * @throws IllegalArgumentException if the extension is not a known
+     * palette format
+     */
+    public static PaletteFormat forFile(String path) {
+        String ext = path.substring(path.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        
+        for (PaletteFormat format : values()) {
+            if (format.extension.equals(ext)) return format;
+        }
+        
+        throw new IllegalArgumentException("Unknown palette format: " + path);
+    }
+    
+    /**
+     * @param in stream positioned at the start of a file in this format;
+     * closed by the reader
+     * @return reader returning the palettes in file order
+     * @throws IOException if the header cannot be read or is malformed
+     */
+    public PaletteReader reader(InputStream in) throws IOException {
+        return switch (this) {
+            case GPL -> new GplPalette.Reader(in);
+            case ASE -> new AsePalette.Reader(in);
+            case PAL -> new JascPalette.Reader(in);
+            case JSON -> new JsonPalette.Reader(in);
+            case PNG -> new PngStripPalette.Reader(in);
+        };
+    }
+    
+    /**
+     * @param out destination stream; closed by the writer
+     * @return writer producing a file in this format
+     */
+    public PaletteWriter writer(OutputStream out) {
+        return switch (this) {
+            case GPL -> new GplPalette.Writer(out);
+            case ASE -> new AsePalette.Writer(out);
+            case PAL -> new JascPalette.Writer(out);
+            case JSON -> new JsonPalette.Writer(out);
+            case PNG -> new PngStripPalette.Writer(out);
+        };
+    }
+}
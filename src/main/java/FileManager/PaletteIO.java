@@ -0,0 +1,87 @@
+package FileManager;
+
+import Data.NamedPalette;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * File entry points for palette I/O. The format is picked from the file
+ * extension; readers and writers stream, so large libraries are processed
+ * one palette at a time.
+ */
+public final class PaletteIO {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private PaletteIO() {}
+    
+    /**
+     * @param path palette file
+     * @return reader over the file, to be closed by the caller
+     * @throws IOException if the file cannot be opened or has a bad header
+     * @throws IllegalArgumentException if the extension is unknown
+     */
+    public static PaletteReader openReader(String path) throws IOException {
+        PaletteFormat format = PaletteFormat.forFile(path);
+        
+        return format.reader(new BufferedInputStream(new FileInputStream(path), BUFFER_SIZE));
+    }
+    
+    /**
+     * @param path palette file, created or overwritten
+     * @return writer to the file, to be closed by the caller
+     * @throws IOException if the file cannot be created
+     * @throws IllegalArgumentException if the extension is unknown
+     */
+    public static PaletteWriter openWriter(String path) throws IOException {
+        PaletteFormat format = PaletteFormat.forFile(path);
+        
+        return format.writer(new BufferedOutputStream(new FileOutputStream(path), BUFFER_SIZE));
+    }
+    
+    /**
+     * @param path palette file
+     * @return every palette in the file
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static List<NamedPalette> readAll(String path) throws IOException {
+        try (PaletteReader reader = openReader(path)) {
+            return reader.readAll();
+        }
+    }
+    
+    /**
+     * @param path palette file
+     * @return the first palette in the file
+     * @throws IOException if the file cannot be read, is malformed or holds
+     * no palette
+     */
+    public static NamedPalette readFirst(String path) throws IOException {
+        try (PaletteReader reader = openReader(path)) {
+            NamedPalette palette = reader.read();
+            
+            if (palette == null) {
+                throw new IOException("No palette in " + path);
+            }
+            
+            return palette;
+        }
+    }
+    
+    /**
+     * @param path palette file, created or overwritten
+     * @param palettes palettes to write, in order
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String path, List<NamedPalette> palettes) throws IOException {
+        try (PaletteWriter writer = openWriter(path)) {
+            for (NamedPalette palette : palettes) {
+                writer.write(palette);
+            }
+        }
+    }
+}
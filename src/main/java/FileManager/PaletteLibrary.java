@@ -0,0 +1,469 @@
+package FileManager;
+
+import Data.NamedPalette;
+import Data.PaletteDistance;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+On-disk palette library: an append-only data file of palette records, read
+through a memory mapping, and an append-only index file with one fixed-size
+entry per palette (record offset and PaletteDistance signature). The index is
+loaded into two flat arrays when the library opens, so a similarity search
+first ranks every palette by signature without touching the data file, then
+computes the exact chamfer distance only for the best couple of thousand.
+If the index does not match the data file, e.g. after a crash between the
+two writes, it is rebuilt from the records, and a torn last record is cut
+off.
+
+All values are little-endian.
+
+Data file:  "CPLB" magic, version, 8 reserved bytes, then records of
+            color count, name byte length (-1 for no name), UTF-8 name padded
+            to 4 bytes, and color count × {L, C, H} floats.
+Index file: "CPLI" magic, version, 8 reserved bytes, then entries of the
+            record offset (long) and SIGNATURE_SIZE floats.
+*/
+public final class PaletteLibrary implements AutoCloseable {
+    private static final int DATA_MAGIC = 0x43504C42;
+    private static final int INDEX_MAGIC = 0x43504C49;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int SIGNATURE = PaletteDistance.SIGNATURE_SIZE;
+    private static final int ENTRY_BYTES = Long.BYTES + SIGNATURE * Float.BYTES;
+    
+    // Exact distances are computed for this many signature matches per result
+    private static final int CANDIDATES_PER_RESULT = 128;
+    private static final int MIN_CANDIDATES = 2048;
+    
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    
+    private final FileChannel data;
+    private final FileChannel index;
+    
+    private long[] offsets = new long[1024];
+    private float[] signatures = new float[1024 * SIGNATURE];
+    private int count;
+    private long dataEnd;
+    
+    // Read-only mapping of the data file, remapped when appends outgrow it
+    private Arena mapArena;
+    private MemorySegment mapped = MemorySegment.NULL;
+    
+    private PaletteLibrary(Path dataPath, Path indexPath) throws IOException {
+        data = FileChannel.open(dataPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        try {
+            if (data.size() == 0) {
+                writeHeader(data, DATA_MAGIC);
+            } else if (!hasHeader(data, DATA_MAGIC)) {
+                throw new IOException("Not a palette library: " + dataPath);
+            }
+            
+            dataEnd = data.size();
+            
+            if (!loadIndex()) rebuildIndex();
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            index.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Open a library, creating it and its parent directories if needed. The
+     * index is kept next to it with an ".idx" suffix.
+     *
+     * @param path library data file
+     * @return open library, to be closed by the caller
+     * @throws IOException if the files cannot be opened or are not a library
+     */
+    public static PaletteLibrary open(String path) throws IOException {
+        Path dataPath = Paths.get(path).toAbsolutePath();
+        
+        if (dataPath.getParent() != null) Files.createDirectories(dataPath.getParent());
+        
+        return new PaletteLibrary(dataPath, Paths.get(dataPath + ".idx"));
+    }
+    
+    /**
+     * @return library in the user's home directory
+     */
+    public static String defaultPath() {
+        return Paths.get(System.getProperty("user.home"), ".colorpalette", "palettes.cpl").toString();
+    }
+    
+    /**
+     * Append a palette to the data file and the index.
+     *
+     * @param palette palette to store
+     * @return id of the stored palette, its position in the library
+     * @throws IOException if the files cannot be written
+     */
+    public synchronized int append(NamedPalette palette) throws IOException {
+        float[] colors = new float[palette.size() * 3];
+        palette.copyTo(colors, 0);
+        
+        byte[] name = palette.getName() == null ? null : palette.getName().getBytes(StandardCharsets.UTF_8);
+        int nameBytes = name == null ? -1 : name.length;
+        
+        int length = Math.toIntExact(recordLength(palette.size(), nameBytes));
+        ByteBuffer record = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(palette.size()).putInt(nameBytes);
+        
+        if (name != null) record.put(name).position(8 + pad4(name.length));
+        
+        record.asFloatBuffer().put(colors);
+        record.position(record.capacity()).flip();
+        
+        long offset = dataEnd;
+        writeFully(data, record, offset);
+        dataEnd += record.capacity();
+        
+        float[] signature = new float[SIGNATURE];
+        PaletteDistance.signature(PaletteDistance.toOklab(palette), signature, 0);
+        
+        addEntry(offset, signature, 0);
+        writeEntries(count - 1, 1);
+        
+        return count - 1;
+    }
+    
+    /**
+     * @return number of stored palettes
+     */
+    public synchronized int size() {
+        return count;
+    }
+    
+    /**
+     * @param id palette id, 0 to size() - 1
+     * @return the stored palette
+     */
+    public synchronized NamedPalette get(int id) {
+        if (id < 0 || id >= count) {
+            throw new IllegalArgumentException("No palette with id " + id);
+        }
+        
+        MemorySegment map = mapping();
+        long offset = offsets[id];
+        
+        int colors = map.get(INT, offset);
+        int nameBytes = map.get(INT, offset + 4);
+        String name = null;
+        
+        if (nameBytes >= 0) {
+            byte[] bytes = new byte[nameBytes];
+            MemorySegment.copy(map, ValueLayout.JAVA_BYTE, offset + 8, bytes, 0, nameBytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        float[] lch = new float[colors * 3];
+        MemorySegment.copy(map, FLOAT, offset + 8 + pad4(Math.max(0, nameBytes)), lch, 0, lch.length);
+        
+        return new NamedPalette(name, lch);
+    }
+    
+    /**
+     * Find the stored palettes closest to a query, ranked by chamfer
+     * distance among the best signature matches.
+     *
+     * @param query palette to match
+     * @param k number of results
+     * @return up to k matches, closest first
+     */
+    public List<Match> nearest(NamedPalette query, int k) {
+        return nearest(query, k, Math.max(MIN_CANDIDATES, k * CANDIDATES_PER_RESULT));
+    }
+    
+    /**
+     * Same as nearest(query, k), with an explicit number of signature
+     * matches to compute exact distances for. A value of size() or more
+     * makes the search exhaustive.
+     *
+     * @param query palette to match
+     * @param k number of results
+     * @param candidates number of exact distances to compute
+     * @return up to k matches, closest first
+     */
+    public synchronized List<Match> nearest(NamedPalette query, int k, int candidates) {
+        float[] queryLab = PaletteDistance.toOklab(query);
+        float[] querySignature = new float[SIGNATURE];
+        PaletteDistance.signature(queryLab, querySignature, 0);
+        
+        // Distances are never negative, so their float bits sort like the
+        // values; the id rides in the low half
+        int m = Math.min(count, Math.max(k, candidates));
+        long[] ranked = new long[count];
+        
+        for (int id = 0; id < count; id++) {
+            float d = PaletteDistance.signatureDistance(querySignature, 0, signatures, id * SIGNATURE);
+            ranked[id] = ((long) Float.floatToIntBits(d) << 32) | id;
+        }
+        
+        if (m < count) Arrays.sort(ranked);
+        
+        long[] exact = new long[m];
+        
+        for (int i = 0; i < m; i++) {
+            int id = (int) ranked[i];
+            float d = PaletteDistance.chamfer(queryLab, PaletteDistance.toOklab(get(id)));
+            exact[i] = ((long) Float.floatToIntBits(d) << 32) | id;
+        }
+        
+        Arrays.sort(exact);
+        
+        List<Match> matches = new ArrayList<>(Math.min(k, m));
+        
+        for (int i = 0; i < Math.min(k, m); i++) {
+            matches.add(new Match((int) exact[i], Float.intBitsToFloat((int) (exact[i] >>> 32))));
+        }
+        
+        return matches;
+    }
+    
+    /**
+     * Write pending data to disk.
+     *
+     * @throws IOException if the files cannot be synced
+     */
+    public synchronized void flush() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (mapArena != null) mapArena.close();
+        
+        mapArena = null;
+        mapped = MemorySegment.NULL;
+        
+        try (data; index) {
+            flush();
+        }
+    }
+    
+    /**
+     * One search result.
+     */
+    public static final class Match {
+        private final int id;
+        private final float distance;
+        
+        Match(int id, float distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+        
+        public int getId() { return id; }
+        
+        /**
+         * @return chamfer distance in OKLab units
+         */
+        public float getDistance() { return distance; }
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private MemorySegment mapping() {
+        if (mapped.byteSize() < dataEnd) {
+            if (mapArena != null) mapArena.close();
+            
+            mapArena = Arena.ofShared();
+            
+            try {
+                mapped = data.map(FileChannel.MapMode.READ_ONLY, 0, dataEnd, mapArena);
+            } catch (IOException e) {
+                mapArena.close();
+                mapArena = null;
+                mapped = MemorySegment.NULL;
+                
+                throw new IllegalStateException("Cannot map palette library", e);
+            }
+        }
+        
+        return mapped;
+    }
+    
+    private boolean loadIndex() throws IOException {
+        long size = index.size();
+        
+        if (size < HEADER_BYTES || (size - HEADER_BYTES) % ENTRY_BYTES != 0 || !hasHeader(index, INDEX_MAGIC)) {
+            return false;
+        }
+        
+        int entries = Math.toIntExact((size - HEADER_BYTES) / ENTRY_BYTES);
+        ByteBuffer buffer = ByteBuffer.allocate(entries * ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(index, buffer, HEADER_BYTES);
+        buffer.flip();
+        
+        float[] signature = new float[SIGNATURE];
+        long previous = HEADER_BYTES - 1;
+        
+        for (int i = 0; i < entries; i++) {
+            long offset = buffer.getLong();
+            
+            // Neither file is forced, so the index may have reached the disk
+            // ahead of the records it points to
+            if (offset <= previous || offset + 8 > dataEnd) {
+                count = 0;
+                
+                return false;
+            }
+            
+            for (int s = 0; s < SIGNATURE; s++) signature[s] = buffer.getFloat();
+            
+            addEntry(offset, signature, 0);
+            previous = offset;
+        }
+        
+        // The last entry must end exactly where the data file ends
+        long expectedEnd = count == 0 ? HEADER_BYTES : recordEnd(offsets[count - 1]);
+        
+        if (expectedEnd != dataEnd) {
+            count = 0;
+            
+            return false;
+        }
+        
+        return true;
+    }
+    
+    private void rebuildIndex() throws IOException {
+        System.out.println("Rebuilding palette library index");
+        long startTime = System.currentTimeMillis();
+        
+        count = 0;
+        index.truncate(0);
+        writeHeader(index, INDEX_MAGIC);
+        
+        long offset = HEADER_BYTES;
+        ByteBuffer head = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        float[] signature = new float[SIGNATURE];
+        
+        while (offset + 8 <= dataEnd) {
+            head.clear();
+            readFully(data, head, offset);
+            head.flip();
+            
+            int colors = head.getInt();
+            int nameBytes = head.getInt();
+            
+            if (colors < 0 || nameBytes < -1 || offset + recordLength(colors, nameBytes) > dataEnd) break;
+            
+            addEntry(offset, signature, 0);
+            offset += recordLength(colors, nameBytes);
+        }
+        
+        // Anything after the last whole record is a torn append
+        if (offset != dataEnd) {
+            data.truncate(offset);
+            dataEnd = offset;
+        }
+        
+        for (int id = 0; id < count; id++) {
+            PaletteDistance.signature(PaletteDistance.toOklab(get(id)), signatures, id * SIGNATURE);
+        }
+        
+        writeEntries(0, count);
+        
+        long endTime = System.currentTimeMillis();
+        System.out.println("TIME: " + (endTime - startTime) + "ms");
+    }
+    
+    private void addEntry(long offset, float[] signature, int signatureOffset) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            signatures = Arrays.copyOf(signatures, count * 2 * SIGNATURE);
+        }
+        
+        offsets[count] = offset;
+        System.arraycopy(signature, signatureOffset, signatures, count * SIGNATURE, SIGNATURE);
+        count++;
+    }
+    
+    private void writeEntries(int first, int n) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(n * ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        
+        for (int id = first; id < first + n; id++) {
+            buffer.putLong(offsets[id]);
+            
+            for (int s = 0; s < SIGNATURE; s++) buffer.putFloat(signatures[id * SIGNATURE + s]);
+        }
+        
+        buffer.flip();
+        writeFully(index, buffer, HEADER_BYTES + (long) first * ENTRY_BYTES);
+    }
+    
+    private long recordEnd(long offset) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(data, head, offset);
+        head.flip();
+        
+        int colors = head.getInt();
+        int nameBytes = head.getInt();
+        
+        // A torn or foreign header ends nowhere
+        return colors < 0 || nameBytes < -1 ? -1 : offset + recordLength(colors, nameBytes);
+    }
+    
+    private static long recordLength(int colors, int nameBytes) {
+        return 8L + pad4(Math.max(0, nameBytes)) + (long) colors * 3 * Float.BYTES;
+    }
+    
+    private static int pad4(int n) {
+        return (n + 3) & ~3;
+    }
+    
+    private static void writeHeader(FileChannel channel, int magic) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(magic).putInt(VERSION).putLong(0).flip();
+        
+        writeFully(channel, header, 0);
+    }
+    
+    private static boolean hasHeader(FileChannel channel, int magic) throws IOException {
+        if (channel.size() < HEADER_BYTES) return false;
+        
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        header.flip();
+        
+        return header.getInt() == magic && header.getInt() == VERSION;
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+    
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            
+            if (n < 0) throw new IOException("Unexpected end of palette library");
+            
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package FileManager;
+
+import Data.NamedPalette;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads palettes one at a time from a stream, so files holding thousands of
+ * palettes never have to be loaded at once.
+ */
+public interface PaletteReader extends Closeable {
+    /**
+     * @return the next palette, or null at the end of the stream
+     * @throws IOException if the stream cannot be read or is malformed
+     */
+    NamedPalette read() throws IOException;
+    
+    /**
+     * @return every remaining palette, in file order
+     * @throws IOException if the stream cannot be read or is malformed
+     */
+    default List<NamedPalette> readAll() throws IOException {
+        List<NamedPalette> all = new ArrayList<>();
+        
+        for (NamedPalette p = read(); p != null; p = read()) {
+            all.add(p);
+        }
+        
+        return all;
+    }
+}
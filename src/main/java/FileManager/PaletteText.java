@@ -0,0 +1,91 @@
+package FileManager;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+Helpers shared by the text palette formats. Numbers are parsed and written by
+hand instead of through split / String.format, which dominate the cost of
+reading or writing large libraries.
+*/
+final class PaletteText {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    
+    private PaletteText() {}
+    
+    /**
+     * Parse a line starting with three whitespace-separated integers 0–255;
+     * anything after them, such as a GIMP color name, is ignored.
+     *
+     * @param line text line
+     * @param lineNumber 1-based line number for error messages
+     * @return packed sRGB
+     * @throws IOException if the line does not start with three channels
+     */
+    static int parseRgb(String line, int lineNumber) throws IOException {
+        int rgb = 0;
+        int pos = 0;
+        int n = line.length();
+        
+        for (int channel = 0; channel < 3; channel++) {
+            while (pos < n && Character.isWhitespace(line.charAt(pos))) pos++;
+            
+            int start = pos, value = 0;
+            
+            while (pos < n && line.charAt(pos) >= '0' && line.charAt(pos) <= '9' && pos - start < 4) {
+                value = value * 10 + (line.charAt(pos) - '0');
+                pos++;
+            }
+            
+            boolean ended = pos == n || Character.isWhitespace(line.charAt(pos));
+            
+            if (pos == start || !ended || value > 255) {
+                throw new IOException("Expected three channels 0-255 on line " + lineNumber + ": " + line);
+            }
+            
+            rgb = (rgb << 8) | value;
+        }
+        
+        return rgb;
+    }
+    
+    /**
+     * Append "R G B" with each channel right-aligned in three characters.
+     */
+    static void appendRgb(StringBuilder sb, int rgb) {
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int v = (rgb >> shift) & 0xFF;
+            
+            if (v < 100) sb.append(' ');
+            if (v < 10) sb.append(' ');
+            
+            sb.append(v);
+            
+            if (shift > 0) sb.append(' ');
+        }
+    }
+    
+    /**
+     * Append "#RRGGBB".
+     */
+    static void appendHex(StringBuilder sb, int rgb) {
+        sb.append('#');
+        
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            sb.append(HEX[(rgb >> shift) & 0xF]);
+        }
+    }
+    
+    /**
+     * @return array holding value at index count, grown if needed
+     */
+    static int[] append(int[] array, int count, int value) {
+        if (count == array.length) {
+            array = Arrays.copyOf(array, Math.max(16, count * 2));
+        }
+        
+        array[count] = value;
+        
+        return array;
+    }
+}
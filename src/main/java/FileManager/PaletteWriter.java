@@ -0,0 +1,18 @@
+package FileManager;
+
+import Data.NamedPalette;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes palettes one at a time to a stream. Closing finishes the file, e.g.
+ * the closing bracket of a JSON array, and closes the stream.
+ */
+public interface PaletteWriter extends Closeable {
+    /**
+     * @param palette palette to append
+     * @throws IOException if the stream cannot be written
+     */
+    void write(NamedPalette palette) throws IOException;
+}
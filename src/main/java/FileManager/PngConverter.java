@@ -3,26 +3,24 @@ package FileManager;
 import java.awt.Graphics2D;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 public class PngConverter {
     public BufferedImage convertToPng(BufferedImage inputImage) {
         BufferedImage pngImage = null;
+        BufferPool.ByteStream byteArrayOut = BufferPool.shared().borrowStream();
         try {
             //Convert to a byte array in png format
-            ByteArrayOutputStream byteArrayOut = new ByteArrayOutputStream();
             ImageIO.write(inputImage, "PNG", byteArrayOut);
-            byte[] bytes = byteArrayOut.toByteArray();
             
-            InputStream byteArrayIn = new ByteArrayInputStream(bytes);
-            
-            //Read from byte array
+            //Read back from the same array, without copying it
+            InputStream byteArrayIn = byteArrayOut.toInputStream();
             pngImage = ImageIO.read(byteArrayIn);
         } catch (IOException e) {
             System.out.println("Error when converting image format: " + e.getMessage());
+        } finally {
+            BufferPool.shared().release(byteArrayOut);
         }
         
         return pngImage;
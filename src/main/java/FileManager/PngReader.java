@@ -3,7 +3,13 @@ package FileManager;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.Function;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 
 public class PngReader {
     public BufferedImage readPNG(String fileLocation, boolean grayscale) {
@@ -32,29 +38,144 @@ public class PngReader {
         return null;
     }
     
-    private BufferedImage convertToGrayscale(BufferedImage image) {
-        Grayscale gs = new Grayscale();
-        
-        BufferedImage out = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+    /**
+     * Read an image into an off-heap buffer, resizing it as needed, so a
+     * batch can decode every file into the same memory. The decoder writes
+     * into a heap image borrowed from the shared BufferPool, which same-sized
+     * files of the same type keep reusing.
+     *
+     * @param fileLocation path of a PNG or JPEG file
+     * @param grayscale convert to BT.709 grayscale while copying
+     * @param out destination buffer
+     * @return false if the file could not be read
+     */
+    public boolean readInto(String fileLocation, boolean grayscale, ImageBuffer out) {
+        return read(fileLocation, grayscale, image -> out) != null;
+    }
+    
+    /**
+     * Same as readInto, into a buffer borrowed from the shared BufferPool
+     * once the image size is known.
+     *
+     * @param fileLocation path of a PNG or JPEG file
+     * @param grayscale convert to BT.709 grayscale while copying
+     * @return buffer to hand back through BufferPool.release, or null if the
+     * file could not be read
+     */
+    public ImageBuffer readPooled(String fileLocation, boolean grayscale) {
+        ImageBuffer[] borrowed = new ImageBuffer[1];
         
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                int currentPixel = image.getRGB(x, y);
+        try {
+            return read(fileLocation, grayscale,
+                    image -> borrowed[0] = BufferPool.shared().borrowImage(image.getWidth(), image.getHeight()));
+        } catch (RuntimeException | Error e) {
+            // Off-heap memory is not reclaimed by the garbage collector
+            BufferPool.shared().release(borrowed[0]);
+            
+            throw e;
+        }
+    }
+    
+    private ImageBuffer read(String fileLocation, boolean grayscale, Function<BufferedImage, ImageBuffer> target) {
+        try {
+            BufferedImage image = decode(new File(fileLocation));
+            
+            if (image == null) {
+                System.err.println("Error when reading image: " + fileLocation);
                 
+                return null;
+            }
+            
+            ImageBuffer out;
+            
+            // Loading already normalizes JPEG and indexed sources to ARGB
+            try {
+                out = target.apply(image);
+                out.load(image);
+            } finally {
+                BufferPool.shared().release(image);
+            }
+            
+            if (grayscale) {
+                Grayscale gs = new Grayscale();
+                int[] row = BufferPool.shared().borrowInts(out.getWidth());
                 int[] rgba = new int[4];
-                rgba[0] = (currentPixel >> 24) & 0xff; // Alpha
-                rgba[1] = (currentPixel >> 16) & 0xff; // Red
-                rgba[2] = (currentPixel >> 8) & 0xff;  // Green
-                rgba[3] = currentPixel & 0xff;         // Blue
                 
-                int[] grayRGBA = gs.bt709(rgba);
+                for (int y = 0; y < out.getHeight(); y++) {
+                    out.getRow(y, row);
+                    grayRow(gs, row, out.getWidth(), rgba);
+                    out.setRow(y, row);
+                }
                 
-                int newPixel = (grayRGBA[0] << 24) | (grayRGBA[1] << 16) | (grayRGBA[2] << 8) | grayRGBA[3];
+                BufferPool.shared().release(row);
+            }
+            
+            return out;
+        } catch (IOException e) {
+            System.err.println("Error when reading image: " + fileLocation);
+        }
+        
+        return null;
+    }
+    
+    // Null if no reader knows the format
+    private static BufferedImage decode(File file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            
+            if (readers == null || !readers.hasNext()) return null;
+            
+            ImageReader reader = readers.next();
+            
+            try {
+                reader.setInput(in, true, true);
                 
-                out.setRGB(x, y, newPixel);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                ImageTypeSpecifier type = reader.getImageTypes(0).next();
+                
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setDestination(BufferPool.shared().borrowImage(type, width, height));
+                
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
             }
         }
+    }
+    
+    private BufferedImage convertToGrayscale(BufferedImage image) {
+        Grayscale gs = new Grayscale();
+        
+        int width = image.getWidth();
+        BufferedImage out = new BufferedImage(width, image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        
+        int[] row = BufferPool.shared().borrowInts(width);
+        int[] rgba = new int[4];
+        
+        for (int y = 0; y < image.getHeight(); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            grayRow(gs, row, width, rgba);
+            out.setRGB(0, y, width, 1, row, 0, width);
+        }
+        
+        BufferPool.shared().release(row);
         
         return out;
     }
+    
+    private static void grayRow(Grayscale gs, int[] row, int width, int[] rgba) {
+        for (int x = 0; x < width; x++) {
+            int currentPixel = row[x];
+            
+            rgba[0] = (currentPixel >> 24) & 0xff; // Alpha
+            rgba[1] = (currentPixel >> 16) & 0xff; // Red
+            rgba[2] = (currentPixel >> 8) & 0xff;  // Green
+            rgba[3] = currentPixel & 0xff;         // Blue
+            
+            int[] grayRGBA = gs.bt709(rgba);
+            
+            row[x] = (grayRGBA[0] << 24) | (grayRGBA[1] << 16) | (grayRGBA[2] << 8) | grayRGBA[3];
+        }
+    }
 }
\ No newline at end of file
@@ -13,6 +13,19 @@ public class PngSaver {
         saveImageToFile(image, newFilePath);
     }
     
+    /**
+     * Save to an exact path, overwriting any existing file.
+     *
+     * @param image image to encode
+     * @param filePath destination PNG path
+     * @throws IOException if the file cannot be written
+     */
+    public void saveTo(BufferedImage image, String filePath) throws IOException {
+        if (!ImageIO.write(image, "png", new File(filePath))) {
+            throw new IOException("No PNG writer for image type " + image.getType());
+        }
+    }
+    
     private String generateNewFileName(String fileName, String imagePathWithoutExtension) {
         String newFileName = imagePathWithoutExtension + "_" + fileName;
         String newFilePath = newFileName + ".png";
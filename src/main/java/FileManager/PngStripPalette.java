@@ -0,0 +1,179 @@
+package FileManager;
+
+import Data.NamedPalette;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import org.w3c.dom.Node;
+
+/*
+Palettes as PNG swatch strips, one palette per row of swatches. Fully
+transparent pixels pad rows shorter than the image. The swatch size in
+pixels is stored in a tEXt chunk, and strips without one are read as 1 px
+swatches. Runs of equal pixels are never taken as one swatch, since
+neighbouring colors of a palette, or whole palettes, may repeat. The writer
+emits 1 px swatches; PNG needs the whole image up front, so rows are
+collected and encoded on close.
+*/
+final class PngStripPalette {
+    private static final String PNG_FORMAT = "javax_imageio_png_1.0";
+    private static final String SWATCH_KEYWORD = "Swatch Size";
+    
+    private PngStripPalette() {}
+    
+    static final class Reader implements PaletteReader {
+        private final BufferedImage image;
+        private final int swatch;
+        private final int[] row;
+        
+        private int y;
+        
+        Reader(InputStream in) throws IOException {
+            try (in; ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+                Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+                
+                if (readers == null || !readers.hasNext()) {
+                    throw new IOException("Not a readable image");
+                }
+                
+                ImageReader reader = readers.next();
+                
+                try {
+                    reader.setInput(stream, true, false);
+                    image = reader.read(0);
+                    swatch = swatchSize(reader.getImageMetadata(0));
+                } finally {
+                    reader.dispose();
+                }
+            }
+            
+            row = new int[image.getWidth()];
+        }
+        
+        @Override
+        public NamedPalette read() {
+            int w = image.getWidth();
+            
+            while (y < image.getHeight()) {
+                image.getRGB(0, y, w, 1, row, 0, w);
+                y += swatch;
+                
+                int[] rgb = new int[(w + swatch - 1) / swatch];
+                int count = 0;
+                
+                for (int x = 0; x < w && (row[x] >>> 24) != 0; x += swatch) {
+                    rgb[count++] = row[x];
+                }
+                
+                if (count > 0) return NamedPalette.ofRgb(null, rgb, count);
+            }
+            
+            return null;
+        }
+        
+        @Override
+        public void close() {}
+        
+        // 1 px unless the strip says otherwise
+        private static int swatchSize(IIOMetadata meta) throws IOException {
+            if (meta == null || !PNG_FORMAT.equals(meta.getNativeMetadataFormatName())) return 1;
+            
+            Node root = meta.getAsTree(PNG_FORMAT);
+            
+            for (Node chunk = root.getFirstChild(); chunk != null; chunk = chunk.getNextSibling()) {
+                if (!chunk.getNodeName().equals("tEXt")) continue;
+                
+                for (Node entry = chunk.getFirstChild(); entry != null; entry = entry.getNextSibling()) {
+                    IIOMetadataNode text = (IIOMetadataNode) entry;
+                    
+                    if (!text.getAttribute("keyword").equals(SWATCH_KEYWORD)) continue;
+                    
+                    try {
+                        int size = Integer.parseInt(text.getAttribute("value").strip());
+                        
+                        if (size >= 1) return size;
+                    } catch (NumberFormatException e) {
+                        // Reported below
+                    }
+                    
+                    throw new IOException("Bad swatch size: " + text.getAttribute("value"));
+                }
+            }
+            
+            return 1;
+        }
+    }
+    
+    static final class Writer implements PaletteWriter {
+        private final OutputStream out;
+        private final List<int[]> rows = new ArrayList<>();
+        
+        private int width = 1;
+        
+        Writer(OutputStream out) {
+            this.out = out;
+        }
+        
+        @Override
+        public void write(NamedPalette palette) {
+            int[] rgb = new int[palette.size()];
+            
+            for (int i = 0; i < rgb.length; i++) {
+                rgb[i] = palette.getRgb(i);
+            }
+            
+            rows.add(rgb);
+            width = Math.max(width, rgb.length);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try (out) {
+                BufferedImage image = new BufferedImage(width, Math.max(1, rows.size()), BufferedImage.TYPE_INT_ARGB);
+                
+                for (int y = 0; y < rows.size(); y++) {
+                    int[] rgb = rows.get(y);
+                    
+                    if (rgb.length > 0) image.setRGB(0, y, rgb.length, 1, rgb, 0, rgb.length);
+                }
+                
+                ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                IIOMetadata meta = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+                
+                IIOMetadataNode entry = new IIOMetadataNode("tEXtEntry");
+                entry.setAttribute("keyword", SWATCH_KEYWORD);
+                entry.setAttribute("value", "1");
+                
+                IIOMetadataNode text = new IIOMetadataNode("tEXt");
+                text.appendChild(entry);
+                
+                IIOMetadataNode root = new IIOMetadataNode(PNG_FORMAT);
+                root.appendChild(text);
+                meta.mergeTree(PNG_FORMAT, root);
+                
+                try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+                    writer.setOutput(stream);
+                    writer.write(null, new IIOImage(image, null, meta), param);
+                } finally {
+                    writer.dispose();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package FileManager;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.IntFunction;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import org.w3c.dom.Node;
+
+/**
+ * Destination of a recolored sequence: one looping animated GIF, or one PNG
+ * per frame in a folder, named after the source frames. GIF frames form a
+ * single stream and must be written in order; PNG frames are independent
+ * files and may be written concurrently.
+ */
+public abstract class SequenceWriter implements Closeable {
+    /**
+     * @param outputPath a path ending in ".gif" for an animation; anything
+     * else is a folder for PNG frames, created if needed
+     * @param input sequence whose frames will be written, for frame names
+     * @return open writer, to be closed by the caller
+     * @throws IOException if the destination cannot be created
+     */
+    public static SequenceWriter open(String outputPath, FrameSequence input) throws IOException {
+        return open(outputPath, input::frameName);
+    }
+    
+    /**
+     * @param outputPath a path ending in ".gif" for an animation; anything
+     * else is a folder for PNG frames, created if needed
+     * @param names file name of every PNG frame, by index
+     * @return open writer, to be closed by the caller
+     * @throws IOException if the destination cannot be created
+     */
+    public static SequenceWriter open(String outputPath, IntFunction<String> names) throws IOException {
+        if (outputPath.toLowerCase().endsWith(".gif")) {
+            return new Gif(new File(outputPath));
+        }
+        
+        File folder = new File(outputPath);
+        
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Cannot create folder: " + outputPath);
+        }
+        
+        return new Pngs(folder, names);
+    }
+    
+    /**
+     * @return true if write() must be called with increasing indices from
+     * one thread at a time
+     */
+    public abstract boolean isOrdered();
+    
+    /**
+     * Write one frame. Indexed frames are written as palette images, which
+     * encode several times faster than ARGB, and GIF requires them anyway.
+     * Consecutive indexed frames that share one raster must hold the same
+     * indices, as in a palette sweep: PNG output compresses them once.
+     *
+     * @param index frame index
+     * @param frame frame pixels; TYPE_BYTE_INDEXED for GIF output
+     * @param delay how long the frame is shown, in milliseconds
+     * @throws IOException if the frame cannot be written
+     */
+    public abstract void write(int index, BufferedImage frame, int delay) throws IOException;
+    
+    private static final class Pngs extends SequenceWriter {
+        private final File folder;
+        private final IntFunction<String> names;
+        
+        // Compressed pixels of the last indexed raster written
+        private Raster lastRaster;
+        private byte[] lastPixels;
+        
+        Pngs(File folder, IntFunction<String> names) {
+            this.folder = folder;
+            this.names = names;
+        }
+        
+        @Override
+        public boolean isOrdered() { return false; }
+        
+        @Override
+        public void write(int index, BufferedImage frame, int delay) throws IOException {
+            File file = new File(folder, names.apply(index));
+            
+            if (IndexedPng.supports(frame)) {
+                IndexedPng.write(frame, pixels(frame), file);
+            } else if (!ImageIO.write(frame, "png", file)) {
+                throw new IOException("No PNG writer for image type " + frame.getType());
+            }
+        }
+        
+        @Override
+        public void close() {}
+        
+        private byte[] pixels(BufferedImage frame) throws IOException {
+            Raster raster = frame.getRaster();
+            
+            synchronized (this) {
+                if (raster == lastRaster) return lastPixels;
+            }
+            
+            byte[] pixels = IndexedPng.deflate(frame);
+            
+            synchronized (this) {
+                lastRaster = raster;
+                lastPixels = pixels;
+            }
+            
+            return pixels;
+        }
+    }
+    
+    private static final class Gif extends SequenceWriter {
+        private static final String IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+        
+        private final ImageOutputStream out;
+        private final ImageWriter writer;
+        private boolean first = true;
+        
+        Gif(File file) throws IOException {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("gif");
+            
+            if (!writers.hasNext()) {
+                throw new IOException("No GIF encoder available");
+            }
+            
+            if (file.exists() && !file.delete()) {
+                throw new IOException("Cannot replace " + file);
+            }
+            
+            writer = writers.next();
+            out = ImageIO.createImageOutputStream(file);
+            
+            if (out == null) {
+                writer.dispose();
+                
+                throw new IOException("Cannot write " + file);
+            }
+            
+            writer.setOutput(out);
+            writer.prepareWriteSequence(null);
+        }
+        
+        @Override
+        public boolean isOrdered() { return true; }
+        
+        @Override
+        public void write(int index, BufferedImage frame, int delay) throws IOException {
+            if (frame.getType() != BufferedImage.TYPE_BYTE_INDEXED) {
+                throw new IllegalArgumentException("GIF frames must be TYPE_BYTE_INDEXED");
+            }
+            
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            IIOMetadata meta = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), param);
+            IIOMetadataNode root = (IIOMetadataNode) meta.getAsTree(IMAGE_FORMAT);
+            
+            IndexColorModel colors = (IndexColorModel) frame.getColorModel();
+            int transparent = colors.getTransparentPixel();
+            
+            // Without a local table the frame would use the writer's default
+            // global one, a web-safe palette
+            IIOMetadataNode table = node(root, "LocalColorTable");
+            int tableSize = Math.max(2, Integer.highestOneBit(Math.max(1, colors.getMapSize() - 1)) << 1);
+            table.setAttribute("sizeOfLocalColorTable", String.valueOf(tableSize));
+            table.setAttribute("sortFlag", "FALSE");
+            
+            while (table.hasChildNodes()) {
+                table.removeChild(table.getFirstChild());
+            }
+            
+            for (int i = 0; i < tableSize; i++) {
+                int rgb = i < colors.getMapSize() ? colors.getRGB(i) : 0;
+                IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+                entry.setAttribute("index", String.valueOf(i));
+                entry.setAttribute("red", String.valueOf((rgb >> 16) & 0xFF));
+                entry.setAttribute("green", String.valueOf((rgb >> 8) & 0xFF));
+                entry.setAttribute("blue", String.valueOf(rgb & 0xFF));
+                table.appendChild(entry);
+            }
+            
+            // Interlacing only helps progressive display and slows encoding
+            node(root, "ImageDescriptor").setAttribute("interlaceFlag", "FALSE");
+            
+            // Frames cover the whole canvas, but a frame left in place shows
+            // through the next one's transparent pixels, so those are cleared
+            IIOMetadataNode control = node(root, "GraphicControlExtension");
+            
+            control.setAttribute("disposalMethod", transparent >= 0 ? "restoreToBackgroundColor" : "none");
+            control.setAttribute("userInputFlag", "FALSE");
+            control.setAttribute("transparentColorFlag", transparent >= 0 ? "TRUE" : "FALSE");
+            control.setAttribute("transparentColorIndex", String.valueOf(Math.max(0, transparent)));
+            control.setAttribute("delayTime", String.valueOf(Math.max(1, Math.round(delay / 10f))));
+            
+            if (first) {
+                // NETSCAPE2.0 extension: loop forever
+                IIOMetadataNode apps = node(root, "ApplicationExtensions");
+                IIOMetadataNode app = new IIOMetadataNode("ApplicationExtension");
+                app.setAttribute("applicationID", "NETSCAPE");
+                app.setAttribute("authenticationCode", "2.0");
+                app.setUserObject(new byte[]{1, 0, 0});
+                apps.appendChild(app);
+                
+                first = false;
+            }
+            
+            try {
+                meta.setFromTree(IMAGE_FORMAT, root);
+            } catch (IIOInvalidTreeException e) {
+                throw new IOException("Cannot build GIF frame metadata", e);
+            }
+            
+            writer.writeToSequence(new IIOImage(frame, null, meta), param);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                writer.endWriteSequence();
+            } finally {
+                writer.dispose();
+                out.close();
+            }
+        }
+        
+        private static IIOMetadataNode node(IIOMetadataNode root, String name) {
+            for (Node n = root.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (n.getNodeName().equals(name)) return (IIOMetadataNode) n;
+            }
+            
+            IIOMetadataNode node = new IIOMetadataNode(name);
+            root.appendChild(node);
+            
+            return node;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package Palette;
+
+/**
+ * How a recolored image is laid over its source, in OKLab. Every mode is
+ * then mixed with the source by an opacity.
+ */
+public enum BlendMode {
+    /** The recolored pixel itself. */
+    MIX("Mix"),
+    
+    /** The recolored pixel's hue and chroma at the source's lightness. */
+    LUMINOSITY("Luminosity"),
+    
+    /** Only the recolored pixel's hue; lightness and chroma stay. */
+    COLOR("Color");
+    
+    private final String label;
+    
+    BlendMode(String label) {
+        this.label = label;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,145 @@
+package Palette;
+
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+
+public class ImageHistogram {
+    public static final int LEVELS = 256;
+    public static final int RGB_BINS = 1 << 15;
+    
+    private final int[] luminance = new int[LEVELS];
+    private final int[] red = new int[LEVELS];
+    private final int[] green = new int[LEVELS];
+    private final int[] blue = new int[LEVELS];
+    private final int[] rgb = new int[RGB_BINS];
+    
+    private long total;
+    
+    /**
+     * Build luminance, per-channel and packed 15-bit RGB histograms of every
+     * pixel in a single pass. Fully transparent pixels are skipped.
+     *
+     * @param image source image
+     * @return the histogram
+     */
+    public static ImageHistogram compute(BufferedImage image) {
+        return compute(image, 1);
+    }
+    
+    /**
+     * Build the histograms from every step-th pixel of every step-th row.
+     * Row bands are counted in parallel into separate partial histograms that
+     * are merged once at the end, so the hot loop never touches shared state.
+     *
+     * @param image source image
+     * @param step sampling stride in both directions (1 = every pixel)
+     * @return the histogram
+     * @throws IllegalArgumentException if step is less than 1
+     */
+    public static ImageHistogram compute(BufferedImage image, int step) {
+        if (step < 1) {
+            throw new IllegalArgumentException("Step must be at least 1");
+        }
+        
+        int width = image.getWidth();
+        int rows = (image.getHeight() + step - 1) / step;
+        int bands = Math.max(1, Math.min(rows, Runtime.getRuntime().availableProcessors()));
+        
+        return IntStream.range(0, bands).parallel().mapToObj(band -> {
+            ImageHistogram partial = new ImageHistogram();
+            int[] row = new int[width];
+            
+            for (int ri = rows * band / bands; ri < rows * (band + 1) / bands; ri++) {
+                image.getRGB(0, ri * step, width, 1, row, 0, width);
+                
+                for (int x = 0; x < width; x += step) {
+                    partial.add(row[x]);
+                }
+            }
+            
+            return partial;
+        }).reduce(ImageHistogram::merge).orElseGet(ImageHistogram::new);
+    }
+    
+    /**
+     * Luminance uses the same BT.709 weights as the grayscale conversion in
+     * PngReader, as integers that sum to exactly 1 and rounded, so any gray
+     * pixel (r = g = b) maps to its own value.
+     */
+    public static int luminanceOf(int r, int g, int b) {
+        return (r * 2126 + g * 7152 + b * 722 + 5000) / 10000;
+    }
+    
+    public static int rgbBin(int r, int g, int b) {
+        return ((r >> 3) << 10) | ((g >> 3) << 5) | (b >> 3);
+    }
+    
+    public int[] getLuminance() { return luminance; }
+    public int[] getRed() { return red; }
+    public int[] getGreen() { return green; }
+    public int[] getBlue() { return blue; }
+    public int[] getRgb() { return rgb; }
+    
+    /**
+     * @return number of pixels counted
+     */
+    public long getTotal() { return total; }
+    
+    /**
+     * Find the luminance level below which the given fraction of pixels lie,
+     * e.g. 0.01 and 0.99 for auto-levels clipping.
+     *
+     * @param fraction value in [0..1]
+     * @return luminance level 0–255
+     */
+    public int luminancePercentile(double fraction) {
+        long target = (long) Math.ceil(fraction * total);
+        long acc = 0;
+        
+        for (int i = 0; i < LEVELS; i++) {
+            acc += luminance[i];
+            
+            if (acc >= target && acc > 0) {
+                return i;
+            }
+        }
+        
+        return LEVELS - 1;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private void add(int px) {
+        if ((px >>> 24) == 0) return;
+        
+        int r = (px >> 16) & 0xff;
+        int g = (px >> 8) & 0xff;
+        int b = px & 0xff;
+        
+        luminance[luminanceOf(r, g, b)]++;
+        red[r]++;
+        green[g]++;
+        blue[b]++;
+        rgb[rgbBin(r, g, b)]++;
+        total++;
+    }
+    
+    private ImageHistogram merge(ImageHistogram other) {
+        for (int i = 0; i < LEVELS; i++) {
+            luminance[i] += other.luminance[i];
+            red[i] += other.red[i];
+            green[i] += other.green[i];
+            blue[i] += other.blue[i];
+        }
+        
+        for (int i = 0; i < RGB_BINS; i++) {
+            rgb[i] += other.rgb[i];
+        }
+        
+        total += other.total;
+        
+        return this;
+    }
+}
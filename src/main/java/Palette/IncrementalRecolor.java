@@ -0,0 +1,228 @@
+package Palette;
+
+import Data.ColorData;
+import Data.PaletteSnapshot;
+import FileManager.BufferPool;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/*
+Recolors one image over and over as its palette is edited, rewriting only
+the pixels whose color changed.
+
+The first apply maps every pixel to its nearest original color, as
+PatternToImage does, and on the way records where each level lies: a list
+of runs of consecutive pixels, in row-major offsets, per level. Quantized
+images are long stretches of one level, so the runs are few. Later applies
+compare the new color table with the one already in the output and refill
+the runs of the levels that differ, leaving every other pixel alone. Editing
+one swatch of a 256-level palette touches about 1/256 of the image and no
+nearest-color lookup at all.
+*/
+public class IncrementalRecolor {
+    private final BufferedImage image;
+    private final ColorData[] originalPattern;
+    
+    private BufferedImage output;
+    private int[] pixels;
+    
+    // Per level: start and end (exclusive) pairs of pixel offsets
+    private int[][] runs;
+    
+    // Colors currently in the output, one per level, and the packed OKLCh
+    // values they were converted from
+    private int[] lut;
+    private float[] pattern;
+    private int lastChanged;
+    
+    /**
+     * @param image quantized source image, not modified
+     * @param originalPattern original OKLCh palette
+     */
+    public IncrementalRecolor(BufferedImage image, ColorData[] originalPattern) {
+        this.image = image;
+        this.originalPattern = originalPattern.clone();
+    }
+    
+    /**
+     * Bring the output up to date with the snapshot's colors.
+     *
+     * @param snapshot new colors, one per original color
+     * @return the output image; the same instance on every call, rewritten
+     * in place
+     */
+    public BufferedImage apply(PaletteSnapshot snapshot) {
+        return apply(snapshot.toColorData());
+    }
+    
+    /**
+     * Bring the output up to date with new colors. The first call recolors
+     * every pixel; later calls rewrite only the levels whose color changed.
+     *
+     * @param newPattern new OKLCh colors, one per original color
+     * @return the output image; the same instance on every call, rewritten
+     * in place
+     */
+    public synchronized BufferedImage apply(ColorData[] newPattern) {
+        if (newPattern.length != originalPattern.length) {
+            throw new IllegalArgumentException("Expected " + originalPattern.length + " colors, got " + newPattern.length);
+        }
+        
+        int[] next = lut(newPattern);
+        
+        if (output == null) {
+            remapAll(next);
+            lastChanged = next.length;
+        } else {
+            int[] changed = IntStream.range(0, next.length).filter(i -> next[i] != lut[i]).toArray();
+            
+            // Levels are disjoint, so they can be refilled side by side
+            IntStream.of(changed).parallel().forEach(level -> fill(runs[level], next[level]));
+            lastChanged = changed.length;
+        }
+        
+        lut = next;
+        pattern = packed(newPattern);
+        
+        return output;
+    }
+    
+    /**
+     * @return number of levels rewritten by the last apply
+     */
+    public int getLastChanged() {
+        return lastChanged;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    // Gamut mapping is the costly part of a table, so entries whose OKLCh
+    // value is unchanged keep their converted color
+    private int[] lut(ColorData[] newPattern) {
+        if (lut == null) return IndexedImage.lut(newPattern);
+        
+        int[] next = lut.clone();
+        
+        for (int i = 0; i < next.length; i++) {
+            ColorData c = newPattern[i];
+            
+            if (c.getX() != pattern[i * 3] || c.getY() != pattern[i * 3 + 1] || c.getZ() != pattern[i * 3 + 2]) {
+                int[] rgb = c.oklchToRgb().toRgb255();
+                next[i] = 0xFF000000 | (rgb[0] << 16) | (rgb[1] << 8) | rgb[2];
+            }
+        }
+        
+        return next;
+    }
+    
+    private static float[] packed(ColorData[] colors) {
+        float[] packed = new float[colors.length * 3];
+        
+        for (int i = 0; i < colors.length; i++) {
+            packed[i * 3] = colors[i].getX();
+            packed[i * 3 + 1] = colors[i].getY();
+            packed[i * 3 + 2] = colors[i].getZ();
+        }
+        
+        return packed;
+    }
+    
+    private void remapAll(int[] nw) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int n = originalPattern.length;
+        NearestColorIndex index = PatternToImage.index(originalPattern);
+        
+        output = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        pixels = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
+        
+        int bands = Math.max(1, Math.min(height, Runtime.getRuntime().availableProcessors() * 4));
+        RunList[][] bandRuns = new RunList[bands][];
+        
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int yStart = (int) ((long) height * band / bands);
+            int yEnd = (int) ((long) height * (band + 1) / bands);
+            int[] row = BufferPool.shared().borrowInts(width);
+            RunList[] levels = new RunList[n];
+            
+            for (int i = 0; i < n; i++) {
+                levels[i] = new RunList();
+            }
+            
+            // A run may continue from the end of one row into the next
+            int runLevel = -1, runStart = yStart * width;
+            
+            for (int y = yStart; y < yEnd; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                
+                int offset = y * width;
+                
+                for (int x = 0; x < width; x++) {
+                    int argb = row[x];
+                    int level = index.nearestRgb(argb);
+                    
+                    pixels[offset + x] = (argb & 0xFF000000) | (nw[level] & 0x00FFFFFF);
+                    
+                    if (level != runLevel) {
+                        if (runLevel >= 0) levels[runLevel].add(runStart, offset + x);
+                        
+                        runLevel = level;
+                        runStart = offset + x;
+                    }
+                }
+            }
+            
+            if (runLevel >= 0) levels[runLevel].add(runStart, yEnd * width);
+            
+            BufferPool.shared().release(row);
+            bandRuns[band] = levels;
+        });
+        
+        // Bands cover increasing offsets, so joining them keeps runs sorted
+        runs = new int[n][];
+        
+        for (int level = 0; level < n; level++) {
+            int size = 0;
+            
+            for (RunList[] band : bandRuns) size += band[level].size;
+            
+            int[] joined = new int[size];
+            int at = 0;
+            
+            for (RunList[] band : bandRuns) {
+                System.arraycopy(band[level].bounds, 0, joined, at, band[level].size);
+                at += band[level].size;
+            }
+            
+            runs[level] = joined;
+        }
+    }
+    
+    // The output already holds the source alpha; only the color changes
+    private void fill(int[] bounds, int argb) {
+        int rgb = argb & 0x00FFFFFF;
+        
+        for (int r = 0; r < bounds.length; r += 2) {
+            for (int i = bounds[r]; i < bounds[r + 1]; i++) {
+                pixels[i] = (pixels[i] & 0xFF000000) | rgb;
+            }
+        }
+    }
+    
+    private static final class RunList {
+        private int[] bounds = new int[16];
+        private int size = 0;
+        
+        void add(int start, int end) {
+            if (size + 2 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            
+            bounds[size++] = start;
+            bounds[size++] = end;
+        }
+    }
+}
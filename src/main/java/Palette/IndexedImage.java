@@ -0,0 +1,174 @@
+package Palette;
+
+import Data.ColorData;
+import FileManager.BufferPool;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.stream.IntStream;
+
+public class IndexedImage {
+    private final int width;
+    private final int height;
+    private final int paletteSize;
+    
+    // Palette index per pixel, row-major, read as unsigned
+    private final short[] indices;
+    
+    public IndexedImage(int width, int height, short[] indices, int paletteSize) {
+        if (indices.length != width * height) {
+            throw new IllegalArgumentException("Indices must have width * height entries");
+        }
+        
+        if (paletteSize < 1 || paletteSize > 1 << 16) {
+            throw new IllegalArgumentException("Palette size must be between 1 and 65536");
+        }
+        
+        this.width = width;
+        this.height = height;
+        this.indices = indices;
+        this.paletteSize = paletteSize;
+    }
+    
+    /**
+     * Map every pixel of a quantized image to the index of its nearest
+     * original palette color.
+     *
+     * @param image quantized source image
+     * @param originalPattern original OKLCh palette
+     * @return full-resolution index plane
+     */
+    public static IndexedImage fromImage(BufferedImage image, ColorData[] originalPattern) {
+        return fromImage(image, originalPattern, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Build a downsampled index plane, keeping every step-th pixel so that
+     * neither side exceeds maxSide. Indices are never blended, so the proxy
+     * holds exactly the levels of the source.
+     *
+     * @param image quantized source image
+     * @param originalPattern original OKLCh palette
+     * @param maxSide maximum width or height of the result
+     * @return index plane of at most maxSide × maxSide pixels
+     */
+    public static IndexedImage fromImage(BufferedImage image, ColorData[] originalPattern, int maxSide) {
+        int srcW = image.getWidth();
+        int srcH = image.getHeight();
+        
+        int step = Math.max(1, (Math.max(srcW, srcH) + maxSide - 1) / maxSide);
+        int w = (srcW + step - 1) / step;
+        int h = (srcH + step - 1) / step;
+        
+        ColorData[] og = new ColorData[originalPattern.length];
+        
+        for (int i = 0; i < og.length; i++) {
+            og[i] = originalPattern[i].oklchToOklab();
+        }
+        
+        NearestColorIndex index = new NearestColorIndex(og);
+        short[] indices = new short[w * h];
+        
+        int bands = Math.max(1, Math.min(h, Runtime.getRuntime().availableProcessors() * 4));
+        
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int[] row = BufferPool.shared().borrowInts(srcW);
+            
+            for (int y = h * band / bands; y < h * (band + 1) / bands; y++) {
+                image.getRGB(0, y * step, srcW, 1, row, 0, srcW);
+                
+                for (int x = 0; x < w; x++) {
+                    indices[y * w + x] = (short) index.nearestRgb(row[x * step]);
+                }
+            }
+            
+            BufferPool.shared().release(row);
+        });
+        
+        return new IndexedImage(w, h, indices, originalPattern.length);
+    }
+    
+    /**
+     * Convert OKLCh colors to a packed opaque ARGB lookup table, with the
+     * same gamut fallback as PatternToImage.
+     *
+     * @param colors OKLCh palette
+     * @return one ARGB value per color
+     */
+    public static int[] lut(ColorData[] colors) {
+        int[] lut = new int[colors.length];
+        
+        for (int i = 0; i < colors.length; i++) {
+            int[] rgb = colors[i].oklchToRgb().toRgb255();
+            lut[i] = 0xFF000000 | (rgb[0] << 16) | (rgb[1] << 8) | rgb[2];
+        }
+        
+        return lut;
+    }
+    
+    /**
+     * Convert packed OKLCh triples, as stored by PaletteBatch, to a packed
+     * opaque ARGB lookup table.
+     *
+     * @param colors packed {L, C, H} triples
+     * @param offset index in colors of the first L value
+     * @param size number of colors
+     * @return one ARGB value per color
+     */
+    public static int[] lut(float[] colors, int offset, int size) {
+        int[] lut = new int[size];
+        
+        for (int i = 0; i < size; i++) {
+            int o = offset + i * 3;
+            int[] rgb = new ColorData(colors[o], colors[o + 1], colors[o + 2]).oklchToRgb().toRgb255();
+            lut[i] = 0xFF000000 | (rgb[0] << 16) | (rgb[1] << 8) | rgb[2];
+        }
+        
+        return lut;
+    }
+    
+    public BufferedImage render(int[] lut) {
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        render(lut, out);
+        
+        return out;
+    }
+    
+    /**
+     * Write lut[index] for every pixel into an existing TYPE_INT_ARGB image
+     * of the same size.
+     *
+     * @param lut one ARGB value per palette entry
+     * @param out destination image
+     */
+    public void render(int[] lut, BufferedImage out) {
+        if (lut.length < paletteSize) {
+            throw new IllegalArgumentException("Lookup table needs " + paletteSize + " entries");
+        }
+        
+        if (out.getType() != BufferedImage.TYPE_INT_ARGB || out.getWidth() != width || out.getHeight() != height) {
+            throw new IllegalArgumentException("Output must be a " + width + "x" + height + " TYPE_INT_ARGB image");
+        }
+        
+        int[] pixels = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        int bands = Math.max(1, Math.min(height, Runtime.getRuntime().availableProcessors() * 4));
+        
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int start = (int) ((long) indices.length * band / bands);
+            int end = (int) ((long) indices.length * (band + 1) / bands);
+            
+            for (int i = start; i < end; i++) {
+                pixels[i] = lut[indices[i] & 0xFFFF];
+            }
+        });
+    }
+    
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getPaletteSize() { return paletteSize; }
+    
+    /**
+     * @return the index plane itself, row-major, read with & 0xFFFF
+     */
+    public short[] getIndices() { return indices; }
+}
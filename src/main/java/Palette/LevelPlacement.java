@@ -0,0 +1,244 @@
+package Palette;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/*
+Level bounds are int[levels + 1], with bounds[0] = 0 and bounds[levels] = 256.
+Gray value v belongs to level k when bounds[k] <= v < bounds[k + 1]. Every
+level covers at least one gray value, so representatives are always distinct.
+*/
+public class LevelPlacement {
+    private static final int LEVELS = 256;
+    private static final int LLOYD_MAX_ITERATIONS = 100;
+    
+    /**
+     * Place bounds so that every level holds roughly the same number of
+     * pixels.
+     *
+     * @param histogram 256-entry luminance histogram
+     * @param levels number of output levels, 2–256
+     * @return level bounds
+     */
+    public static int[] equalPopulation(int[] histogram, int levels) {
+        checkLevels(levels);
+        
+        long total = 0;
+        
+        for (int h : histogram) total += h;
+        
+        int[] bounds = new int[levels + 1];
+        bounds[levels] = LEVELS;
+        
+        long acc = 0;
+        int v = 0;
+        
+        for (int k = 1; k < levels; k++) {
+            long target = total * k / levels;
+            
+            while (v < LEVELS && acc + histogram[v] <= target) {
+                acc += histogram[v];
+                v++;
+            }
+            
+            bounds[k] = v;
+        }
+        
+        return enforceIncreasing(bounds);
+    }
+    
+    /**
+     * Multi-level Otsu: choose bounds maximizing the between-class variance,
+     * solved exactly by dynamic programming over the histogram.
+     *
+     * @param histogram 256-entry luminance histogram
+     * @param levels number of output levels, 2–256
+     * @return level bounds
+     */
+    public static int[] otsu(int[] histogram, int levels) {
+        checkLevels(levels);
+        
+        // Prefix sums of weight and first moment
+        double[] w = new double[LEVELS + 1];
+        double[] s = new double[LEVELS + 1];
+        
+        for (int v = 0; v < LEVELS; v++) {
+            w[v + 1] = w[v] + histogram[v];
+            s[v + 1] = s[v] + (double) histogram[v] * v;
+        }
+        
+        // best[k][j]: best score splitting [0, j) into k levels
+        double[][] best = new double[levels + 1][LEVELS + 1];
+        int[][] from = new int[levels + 1][LEVELS + 1];
+        
+        for (double[] row : best) Arrays.fill(row, Double.NEGATIVE_INFINITY);
+        
+        best[0][0] = 0;
+        
+        for (int k = 1; k <= levels; k++) {
+            // Leave room for one gray value per remaining level
+            int jMax = LEVELS - (levels - k);
+            
+            for (int j = k; j <= jMax; j++) {
+                double bestScore = Double.NEGATIVE_INFINITY;
+                int bestI = k - 1;
+                
+                for (int i = k - 1; i < j; i++) {
+                    if (best[k - 1][i] == Double.NEGATIVE_INFINITY) continue;
+                    
+                    double cw = w[j] - w[i];
+                    double cs = s[j] - s[i];
+                    double score = best[k - 1][i] + (cw > 0 ? cs * cs / cw : 0);
+                    
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestI = i;
+                    }
+                }
+                
+                best[k][j] = bestScore;
+                from[k][j] = bestI;
+            }
+        }
+        
+        int[] bounds = new int[levels + 1];
+        bounds[levels] = LEVELS;
+        
+        for (int k = levels; k > 0; k--) {
+            bounds[k - 1] = from[k][bounds[k]];
+        }
+        
+        return bounds;
+    }
+    
+    /**
+     * Lloyd-Max: alternate between placing each representative at its class
+     * mean and each bound halfway between neighbouring representatives, until
+     * the bounds stop moving. Starts from equal-population bounds.
+     *
+     * @param histogram 256-entry luminance histogram
+     * @param levels number of output levels, 2–256
+     * @return level bounds
+     */
+    public static int[] lloydMax(int[] histogram, int levels) {
+        int[] bounds = equalPopulation(histogram, levels);
+        
+        for (int iter = 0; iter < LLOYD_MAX_ITERATIONS; iter++) {
+            int[] reps = representatives(histogram, bounds);
+            int[] next = new int[levels + 1];
+            next[levels] = LEVELS;
+            
+            for (int k = 1; k < levels; k++) {
+                next[k] = (reps[k - 1] + reps[k] + 1) / 2;
+            }
+            
+            next = enforceIncreasing(next);
+            
+            if (Arrays.equals(next, bounds)) break;
+            
+            bounds = next;
+        }
+        
+        return bounds;
+    }
+    
+    /**
+     * Representative gray of each level: the pixel-weighted mean of the level,
+     * or its midpoint when no pixels fall inside it.
+     *
+     * @param histogram 256-entry luminance histogram
+     * @param bounds level bounds
+     * @return one gray value 0–255 per level, strictly increasing
+     */
+    public static int[] representatives(int[] histogram, int[] bounds) {
+        int levels = bounds.length - 1;
+        int[] reps = new int[levels];
+        
+        for (int k = 0; k < levels; k++) {
+            long w = 0, s = 0;
+            
+            for (int v = bounds[k]; v < bounds[k + 1]; v++) {
+                w += histogram[v];
+                s += (long) histogram[v] * v;
+            }
+            
+            int rep = w > 0
+                    ? (int) Math.round((double) s / w)
+                    : (bounds[k] + bounds[k + 1] - 1) / 2;
+            
+            reps[k] = Math.max(bounds[k], Math.min(bounds[k + 1] - 1, rep));
+        }
+        
+        return reps;
+    }
+    
+    /**
+     * Build the gray → representative gray lookup table.
+     *
+     * @param bounds level bounds
+     * @param reps representative gray per level
+     * @return 256-entry table
+     */
+    public static int[] lookupTable(int[] bounds, int[] reps) {
+        int[] lut = new int[LEVELS];
+        
+        for (int k = 0; k < reps.length; k++) {
+            for (int v = bounds[k]; v < bounds[k + 1]; v++) {
+                lut[v] = reps[k];
+            }
+        }
+        
+        return lut;
+    }
+    
+    /**
+     * Quantize a grayscale image in place through the lookup table, keeping
+     * alpha. The red channel is used as the gray value.
+     *
+     * @param image grayscale image
+     * @param lut 256-entry table from lookupTable
+     */
+    public static void applyLevels(BufferedImage image, int[] lut) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int bands = Math.max(1, Math.min(height, Runtime.getRuntime().availableProcessors() * 4));
+        
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int[] row = new int[width];
+            
+            for (int y = height * band / bands; y < height * (band + 1) / bands; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                
+                for (int x = 0; x < width; x++) {
+                    int g = lut[(row[x] >> 16) & 0xff];
+                    row[x] = (row[x] & 0xFF000000) | (g << 16) | (g << 8) | g;
+                }
+                
+                image.setRGB(0, y, width, 1, row, 0, width);
+            }
+        });
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private static void checkLevels(int levels) {
+        if (levels < 2 || levels > LEVELS) {
+            throw new IllegalArgumentException("Levels must be between 2 and 256");
+        }
+    }
+    
+    // Also used by callers that place their own bounds
+    static int[] enforceIncreasing(int[] bounds) {
+        int levels = bounds.length - 1;
+        
+        for (int k = 1; k < levels; k++) {
+            // At least one gray value for this level and for each after it
+            bounds[k] = Math.max(bounds[k - 1] + 1, Math.min(LEVELS - (levels - k), bounds[k]));
+        }
+        
+        return bounds;
+    }
+}
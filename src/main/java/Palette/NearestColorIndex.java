@@ -0,0 +1,204 @@
+package Palette;
+
+import Data.ColorData;
+import Data.ColorTables;
+
+public class NearestColorIndex {
+    private static final int CACHE_BITS = 18;
+    private static final int CACHE_SHIFT = 32 - CACHE_BITS;
+    private static final long TAG_PRESENT = 1L << 24;
+    
+    // k-d tree stored implicitly: each subrange [lo, hi) has its splitting
+    // node at the middle position, split along axis[mid]
+    private final float[] treeL;
+    private final float[] treeA;
+    private final float[] treeB;
+    private final int[] treeIndex;
+    private final byte[] axis;
+    
+    // Direct-mapped memo of 24-bit RGB → palette index, tagged with the full
+    // RGB value so collisions on the 18-bit slot never return a wrong entry
+    private final long[] cache = new long[1 << CACHE_BITS];
+    
+    /**
+     * Build a nearest-neighbor index over the given OKLab colors.
+     *
+     * @param labColors palette colors in OKLab (L, a, b)
+     * @throws IllegalArgumentException if labColors is empty
+     */
+    public NearestColorIndex(ColorData[] labColors) {
+        if (labColors.length == 0) {
+            throw new IllegalArgumentException("Index requires at least 1 color");
+        }
+        
+        int n = labColors.length;
+        
+        this.treeL = new float[n];
+        this.treeA = new float[n];
+        this.treeB = new float[n];
+        this.treeIndex = new int[n];
+        this.axis = new byte[n];
+        
+        for (int i = 0; i < n; i++) {
+            treeL[i] = labColors[i].getX();
+            treeA[i] = labColors[i].getY();
+            treeB[i] = labColors[i].getZ();
+            treeIndex[i] = i;
+        }
+        
+        build(0, n);
+    }
+    
+    /**
+     * Find the palette entry closest to the given OKLab color, using squared
+     * Euclidean distance. Ties resolve to the lowest palette index.
+     *
+     * @param L OKLab lightness
+     * @param a OKLab a
+     * @param b OKLab b
+     * @return index of the nearest palette color
+     */
+    public int nearest(float L, float a, float b) {
+        float[] best = { Float.POSITIVE_INFINITY, -1f };
+        
+        search(0, treeIndex.length, L, a, b, best);
+        
+        return (int) best[1];
+    }
+    
+    /**
+     * Find the palette entry closest to a packed sRGB pixel. Results are
+     * memoized per RGB value, so repeated colors cost a single array lookup.
+     * Safe to call from multiple threads.
+     *
+     * @param rgb packed pixel, alpha is ignored
+     * @return index of the nearest palette color
+     */
+    public int nearestRgb(int rgb) {
+        int key = rgb & 0xFFFFFF;
+        int slot = (key * 0x9E3779B1) >>> CACHE_SHIFT;
+        long entry = cache[slot];
+        
+        if ((entry >>> 32) == (key | TAG_PRESENT)) {
+            return (int) entry;
+        }
+        
+        float[] lab = new float[3];
+        ColorTables.rgbToOklab(key, lab);
+        int idx = nearest(lab[0], lab[1], lab[2]);
+        
+        cache[slot] = ((key | TAG_PRESENT) << 32) | idx;
+        
+        return idx;
+    }
+    
+    public int size() {
+        return treeIndex.length;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private void build(int lo, int hi) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        
+        // Split along the channel with the widest spread in this subrange
+        float minL = Float.MAX_VALUE, maxL = -Float.MAX_VALUE;
+        float minA = Float.MAX_VALUE, maxA = -Float.MAX_VALUE;
+        float minB = Float.MAX_VALUE, maxB = -Float.MAX_VALUE;
+        
+        for (int i = lo; i < hi; i++) {
+            minL = Math.min(minL, treeL[i]); maxL = Math.max(maxL, treeL[i]);
+            minA = Math.min(minA, treeA[i]); maxA = Math.max(maxA, treeA[i]);
+            minB = Math.min(minB, treeB[i]); maxB = Math.max(maxB, treeB[i]);
+        }
+        
+        float sL = maxL - minL, sA = maxA - minA, sB = maxB - minB;
+        byte ax = (byte) (sL >= sA && sL >= sB ? 0 : (sA >= sB ? 1 : 2));
+        
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, ax);
+        axis[mid] = ax;
+        
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+    
+    private void select(int lo, int hi, int k, byte ax) {
+        // Quickselect so that position k holds the median along ax
+        while (hi > lo) {
+            float pivot = coord((lo + hi) >>> 1, ax);
+            int i = lo, j = hi;
+            
+            while (i <= j) {
+                while (coord(i, ax) < pivot) i++;
+                while (coord(j, ax) > pivot) j--;
+                
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+    
+    private void search(int lo, int hi, float L, float a, float b, float[] best) {
+        if (lo >= hi) {
+            return;
+        }
+        
+        int mid = (lo + hi) >>> 1;
+        
+        float dL = treeL[mid] - L;
+        float da = treeA[mid] - a;
+        float db = treeB[mid] - b;
+        float d = dL * dL + da * da + db * db;
+        
+        if (d < best[0] || (d == best[0] && treeIndex[mid] < best[1])) {
+            best[0] = d;
+            best[1] = treeIndex[mid];
+        }
+        
+        if (hi - lo == 1) {
+            return;
+        }
+        
+        float diff = coord(mid, axis[mid]) - (axis[mid] == 0 ? L : axis[mid] == 1 ? a : b);
+        
+        // Visit the side containing the query first, the other only if the
+        // splitting plane is closer than the current best
+        if (diff > 0f) {
+            search(lo, mid, L, a, b, best);
+            
+            if (diff * diff <= best[0]) search(mid + 1, hi, L, a, b, best);
+        } else {
+            search(mid + 1, hi, L, a, b, best);
+            
+            if (diff * diff <= best[0]) search(lo, mid, L, a, b, best);
+        }
+    }
+    
+    private float coord(int i, byte ax) {
+        return ax == 0 ? treeL[i] : ax == 1 ? treeA[i] : treeB[i];
+    }
+    
+    private void swap(int i, int j) {
+        float t = treeL[i]; treeL[i] = treeL[j]; treeL[j] = t;
+        t = treeA[i]; treeA[i] = treeA[j]; treeA[j] = t;
+        t = treeB[i]; treeB[i] = treeB[j]; treeB[j] = t;
+        
+        int ti = treeIndex[i]; treeIndex[i] = treeIndex[j]; treeIndex[j] = ti;
+    }
+}
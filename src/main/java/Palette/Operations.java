@@ -3,49 +3,330 @@ package Palette;
 import Data.ColorData;
 import Dither.RgbQuantization;
 
+import FileManager.BufferPool;
+import FileManager.FrameSequence;
+import FileManager.ImageBuffer;
 import FileManager.PngReader;
 import FileManager.PngSaver;
+import FileManager.SequenceWriter;
 
 import Windows.PaletteChangerWindow;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Operations {
+    // Mask pixels at least half on are selected
+    private static final int MASK_THRESHOLD = 128;
+    
     public static int colorLevels;
     
     public void processFile(String filePath, int colorLevels, boolean rangeQ) {
+        processFile(filePath, colorLevels, rangeQ, QuantizationMode.GRAYSCALE);
+    }
+    
+    public void processFile(String filePath, int colorLevels, boolean rangeQ, QuantizationMode mode) {
         Operations.colorLevels = colorLevels;
         
         PngReader pr = new PngReader();
         
-        // Get 2D matrix of pixels
-        BufferedImage image = pr.readPNG(filePath, true);
+        // Decode and quantize in a pooled buffer; only the window's copy of
+        // the result is allocated per file
+        ImageBuffer pixels = pr.readPooled(filePath, !mode.isFullColor());
+        
+        if (pixels == null) return;
         
+        ColorData[] palette;
+        BufferedImage image;
+        
+        try {
+            palette = quantize(pixels, colorLevels, rangeQ, mode);
+            image = pixels.toBufferedImage();
+        } finally {
+            BufferPool.shared().release(pixels);
+        }
+        
+        // Move to palette window
+        PaletteChangerWindow pcf = new PaletteChangerWindow(palette, image, filePath);
+    }
+    
+    /**
+     * Quantize an image and build the OKLCh palette of its levels, without
+     * any UI. Grayscale and adaptive modes quantize the image in place;
+     * full-color modes return a new image.
+     *
+     * @param image source image, already grayscale unless the mode is
+     * full-color
+     * @param colorLevels number of levels
+     * @param rangeQ stretch the levels over the image's own range
+     * @param mode quantization mode
+     * @return quantized image and its palette
+     */
+    public QuantizedImage quantize(BufferedImage image, int colorLevels, boolean rangeQ, QuantizationMode mode) {
         long startTime = System.currentTimeMillis();
         
-        // Quantize image
-        System.out.println("Quantization Grayscale Image");
-        RgbQuantization band = new RgbQuantization();
-        band.applyQuantization(image, colorLevels, rangeQ);
+        ColorData[] palette;
+        
+        if (mode.isFullColor()) {
+            palette = extractPalette(image, colorLevels, mode, startTime);
+            
+            // Quantize image to the extracted palette
+            System.out.println("Quantization Full Color Image");
+            image = new PatternToImage().applyPattern(image, palette, palette);
+            
+            long endTime = System.currentTimeMillis();
+            System.out.println("TIME: " + (endTime - startTime) + "ms");
+        } else if (mode.isAdaptive()) {
+            // Place the levels from the luminance histogram
+            System.out.println("Adaptive Quantization Grayscale Image (" + mode.getLabel() + ")");
+            // The image is already gray and the lookup table is indexed by
+            // its red channel, so the levels are placed on that channel
+            int[] histogram = ImageHistogram.compute(image).getRed();
+            
+            int[] bounds = switch (mode) {
+                case EQUAL_POPULATION -> LevelPlacement.equalPopulation(histogram, colorLevels);
+                case OTSU -> LevelPlacement.otsu(histogram, colorLevels);
+                default -> LevelPlacement.lloydMax(histogram, colorLevels);
+            };
+            
+            int[] levels = LevelPlacement.representatives(histogram, bounds);
+            LevelPlacement.applyLevels(image, LevelPlacement.lookupTable(bounds, levels));
+            
+            long endTime = System.currentTimeMillis();
+            System.out.println("TIME: " + (endTime - startTime) + "ms");
+            
+            // Palette matches the placed levels
+            palette = new ColorData[colorLevels];
+            
+            for (int i = 0; i < colorLevels; i++) {
+                palette[i] = new ColorData(levels[i], levels[i], levels[i]).rgbToOklab().oklabToOklch();
+            }
+        } else {
+            // Quantize image
+            System.out.println("Quantization Grayscale Image");
+            RgbQuantization band = new RgbQuantization();
+            band.applyQuantization(image, colorLevels, rangeQ);
+            
+            long endTime = System.currentTimeMillis();
+            System.out.println("TIME: " + (endTime - startTime) + "ms");
+            
+            // Generating default grayscale palette
+            System.out.println("Generating Default Grayscale Palette");
+            palette = new ColorData[colorLevels];
+            
+            float delta = 255f / (colorLevels - 1);
+            
+            for (int i = 0; i < colorLevels; i++) {
+                int c = Math.round(i * delta);
+                palette[i] = new ColorData(c, c, c).rgbToOklab().oklabToOklch();
+            }
+            
+            endTime = System.currentTimeMillis();
+            System.out.println("TIME: " + (endTime - startTime) + "ms");
+        }
+        
+        return new QuantizedImage(image, palette);
+    }
+    
+    /**
+     * Same as quantize, in place for every mode: the buffer is already
+     * ARGB, so full-color output needs no image of its own.
+     *
+     * @param image source pixels, already grayscale unless the mode is
+     * full-color; replaced by the quantized pixels
+     * @param colorLevels number of levels
+     * @param rangeQ stretch the levels over the image's own range
+     * @param mode quantization mode
+     * @return palette of the levels
+     */
+    public ColorData[] quantize(ImageBuffer image, int colorLevels, boolean rangeQ, QuantizationMode mode) {
+        if (!mode.isFullColor()) {
+            return quantize(image.asBufferedImage(), colorLevels, rangeQ, mode).getPalette();
+        }
+        
+        long startTime = System.currentTimeMillis();
+        
+        ColorData[] palette = extractPalette(image.asBufferedImage(), colorLevels, mode, startTime);
+        
+        System.out.println("Quantization Full Color Image");
+        new PatternToImage().applyPattern(image, palette, palette, image);
         
         long endTime = System.currentTimeMillis();
         System.out.println("TIME: " + (endTime - startTime) + "ms");
         
-        // Generating default grayscale palette
-        System.out.println("Generating Default Grayscale Palette");
-        ColorData[] palette = new ColorData[colorLevels];
+        return palette;
+    }
+    
+    /**
+     * Headless render of one file: read, quantize, recolor and save. Calls
+     * share nothing but the thread-safe BufferPool, so renders may run
+     * concurrently.
+     *
+     * @param inputPath PNG or JPEG source
+     * @param outputPath PNG destination
+     * @param colorLevels number of levels
+     * @param rangeQ stretch the levels over the image's own range
+     * @param mode quantization mode
+     * @param colors new OKLCh colors for the first levels, the rest keep
+     * their quantized color; null or empty saves the quantized image
+     * @throws IOException if the source cannot be read or the output written
+     */
+    public void renderFile(String inputPath, String outputPath, int colorLevels, boolean rangeQ,
+                           QuantizationMode mode, ColorData[] colors) throws IOException {
+        renderFile(inputPath, outputPath, colorLevels, rangeQ, mode, colors, null, null, null, 1f);
+    }
+    
+    /**
+     * Same as renderFile, but recolors only a region of the image, the rest
+     * being saved quantized, and may blend the new colors over the source
+     * as a grade instead of replacing it.
+     *
+     * @param inputPath PNG or JPEG source
+     * @param outputPath PNG destination
+     * @param colorLevels number of levels
+     * @param rangeQ stretch the levels over the image's own range
+     * @param mode quantization mode
+     * @param colors new OKLCh colors for the first levels, the rest keep
+     * their quantized color; null or empty saves the quantized image
+     * @param regions rectangles to recolor, or null for the whole image
+     * @param maskPath image whose light pixels are recolored, "alpha" for
+     * the visible pixels of the source, or null for no mask; combined with
+     * the regions
+     * @param blend how the new colors are laid over the source, or null to
+     * replace it
+     * @param opacity strength of the blend, 0 to 1
+     * @throws IOException if the source or mask cannot be read or the output
+     * written
+     */
+    public void renderFile(String inputPath, String outputPath, int colorLevels, boolean rangeQ,
+                           QuantizationMode mode, ColorData[] colors, List<Rectangle> regions,
+                           String maskPath, BlendMode blend, float opacity) throws IOException {
+        // Every stage works in place on pooled buffers, so a batch of
+        // same-sized files allocates its full-size planes once
+        PngReader reader = new PngReader();
+        ImageBuffer pixels = reader.readPooled(inputPath, !mode.isFullColor());
+        ImageBuffer source = null;
+        
+        if (pixels == null) {
+            throw new IOException("Cannot read image: " + inputPath);
+        }
+        
+        try {
+            boolean recolor = colors != null && colors.length > 0;
+            
+            // The blend needs the colors from before quantization: grayscale
+            // modes read them again, full-color modes copy them
+            if (recolor && blend != null) {
+                if (mode.isFullColor()) {
+                    source = BufferPool.shared().borrowImage(pixels.getWidth(), pixels.getHeight());
+                    source.load(pixels);
+                } else {
+                    source = reader.readPooled(inputPath, false);
+                    
+                    if (source == null) {
+                        throw new IOException("Cannot read image: " + inputPath);
+                    }
+                }
+            }
+            
+            ColorData[] original = quantize(pixels, colorLevels, rangeQ, mode);
+            BufferedImage result = pixels.asBufferedImage();
+            
+            if (recolor) {
+                ColorData[] pattern = overlay(original, colors);
+                RegionMask mask = null;
+                
+                if (regions == null && maskPath == null) {
+                    new PatternToImage().applyPattern(pixels, original, pattern, pixels);
+                } else {
+                    mask = regionMask(result, regions, maskPath);
+                    new PatternToImage().applyPattern(result, original, pattern, mask, result);
+                }
+                
+                if (blend != null) {
+                    if (mask == null) mask = RegionMask.all(result.getWidth(), result.getHeight());
+                    
+                    PaletteBlend.blend(source.asBufferedImage(), result, blend, opacity, mask, result);
+                }
+            }
+            
+            new PngSaver().saveTo(result, outputPath);
+        } finally {
+            BufferPool.shared().release(pixels);
+            BufferPool.shared().release(source);
+        }
+    }
+    
+    /**
+     * Headless render of an animated GIF or numbered PNG sequence with one
+     * palette and quantization fixed for the whole sequence.
+     *
+     * @param inputPath GIF, or any file of a numbered PNG sequence
+     * @param outputPath ".gif" file, or a folder for PNG frames
+     * @param colorLevels number of levels
+     * @param rangeQ stretch the levels over the sequence's range
+     * @param mode quantization mode
+     * @param colors new OKLCh colors for the first levels, the rest keep
+     * their quantized color; null or empty saves the quantized frames
+     * @return number of frames written
+     * @throws IOException if a frame cannot be read or written
+     */
+    public int renderSequence(String inputPath, String outputPath, int colorLevels, boolean rangeQ,
+                              QuantizationMode mode, ColorData[] colors) throws IOException {
+        try (FrameSequence sequence = FrameSequence.open(inputPath)) {
+            SequenceRecolor recolor = new SequenceRecolor(colorLevels, rangeQ, mode);
+            ColorData[] original = recolor.calibrate(sequence);
+            
+            try (SequenceWriter writer = SequenceWriter.open(outputPath, sequence)) {
+                return recolor.recolor(sequence, overlay(original, colors), writer);
+            }
+        }
+    }
+    
+    /**
+     * Headless palette animation: quantize one image, then write frames that
+     * sweep its levels from each keyframe palette to the next.
+     *
+     * @param inputPath PNG or JPEG source
+     * @param outputPath ".gif" file, or a folder for PNG frames
+     * @param colorLevels number of levels
+     * @param rangeQ stretch the levels over the image's own range
+     * @param mode quantization mode
+     * @param keyframes OKLCh palettes, at least two; each recolors the first
+     * levels and the rest keep their quantized color
+     * @param frames number of frames, at least 2
+     * @param delay how long each frame is shown, in milliseconds
+     * @return number of frames written
+     * @throws IOException if the source cannot be read or a frame written
+     */
+    public int renderSweep(String inputPath, String outputPath, int colorLevels, boolean rangeQ,
+                           QuantizationMode mode, List<ColorData[]> keyframes, int frames, int delay) throws IOException {
+        BufferedImage image = new PngReader().readPNG(inputPath, !mode.isFullColor());
+        
+        if (image == null) {
+            throw new IOException("Cannot read image: " + inputPath);
+        }
         
-        float delta = 255f / (colorLevels - 1);
+        QuantizedImage quantized = quantize(image, colorLevels, rangeQ, mode);
+        ColorData[] original = quantized.getPalette();
+        List<ColorData[]> palettes = new ArrayList<>(keyframes.size());
         
-        for (int i = 0; i < colorLevels; i++) {
-            int c = Math.round(i * delta);
-            palette[i] = new ColorData(c, c, c).rgbToOklab().oklabToOklch();
+        for (ColorData[] colors : keyframes) {
+            palettes.add(overlay(original, colors));
         }
         
-        endTime = System.currentTimeMillis();
-        System.out.println("TIME: " + (endTime - startTime) + "ms");
+        PaletteSweep sweep = new PaletteSweep(palettes);
+        IndexedImage levels = IndexedImage.fromImage(quantized.getImage(), original);
         
-        // Move to palette window
-        PaletteChangerWindow pcf = new PaletteChangerWindow(palette, image, filePath);
+        String name = new File(inputPath).getName();
+        String baseName = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+        
+        try (SequenceWriter writer = SequenceWriter.open(outputPath, i -> String.format("%s_%04d.png", baseName, i))) {
+            return sweep.render(levels, image, frames, delay, writer);
+        }
     }
     
     //Save files
@@ -54,4 +335,52 @@ public class Operations {
         
         listToImage.saveToFile("Palette[" + colorLevels + "color]", filePath, image);
     }
+    
+    private static RegionMask regionMask(BufferedImage image, List<Rectangle> regions, String maskPath)
+            throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        RegionMask mask = regions != null
+                ? RegionMask.rectangles(width, height, regions)
+                : RegionMask.all(width, height);
+        
+        if (maskPath == null) return mask;
+        
+        if (maskPath.equals("alpha")) return mask.intersect(RegionMask.fromAlpha(image, MASK_THRESHOLD));
+        
+        BufferedImage maskImage = new PngReader().readPNG(maskPath, false);
+        
+        if (maskImage == null) {
+            throw new IOException("Cannot read mask: " + maskPath);
+        }
+        
+        if (maskImage.getWidth() != width || maskImage.getHeight() != height) {
+            throw new IllegalArgumentException("Mask must be " + width + "x" + height + ": " + maskPath);
+        }
+        
+        return mask.intersect(RegionMask.fromImage(maskImage, MASK_THRESHOLD));
+    }
+    
+    private static ColorData[] extractPalette(BufferedImage image, int colorLevels, QuantizationMode mode,
+            long startTime) {
+        // Extract palette from the image colors
+        System.out.println("Extracting Palette (" + mode.getLabel() + ")");
+        ColorData[] palette = new PaletteExtractor().extract(image, colorLevels, mode);
+        
+        long endTime = System.currentTimeMillis();
+        System.out.println("TIME: " + (endTime - startTime) + "ms");
+        
+        return palette;
+    }
+    
+    // New colors replace the first levels; the rest keep their color
+    private static ColorData[] overlay(ColorData[] original, ColorData[] colors) {
+        ColorData[] pattern = original.clone();
+        
+        if (colors != null) {
+            System.arraycopy(colors, 0, pattern, 0, Math.min(colors.length, pattern.length));
+        }
+        
+        return pattern;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,237 @@
+package Palette;
+
+import Data.ColorTables;
+import FileManager.BufferPool;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/*
+Blends a recolored image back over its source, so a palette can be applied
+as a grade instead of a hard replacement.
+
+Both images are converted to OKLab, blended, mixed by the opacity and
+converted back, which touches both images at every pixel. Rows are split
+into structure-of-arrays form, one float array per channel, and each step is
+its own loop over those arrays. The mix, luminosity and color loops and the
+OKLab to linear matrix loop of toArgb are plain arithmetic with no calls or
+allocation (Math.sqrt is an intrinsic), which HotSpot's auto-vectorizer can
+compile to SIMD code. The sRGB table lookups at either end are calls, so
+they get loops of their own and stay scalar, as does the matrix loop of
+toLab, which calls ColorTables.cbrt. The Vector API would make the SIMD code
+explicit but is still an incubator module. A recolored image holds only its
+palette's colors, so its conversions are memoized in a small table per band
+and only the source pays for cube roots. Rows are walked as the runs of a
+RegionMask, in bands of equal area, so a masked recolor blends only its
+region. Colors pushed out of sRGB by mixing one image's lightness with the
+other's chroma are clipped per channel.
+*/
+public final class PaletteBlend {
+    // Below this chroma a pixel has no hue worth keeping
+    private static final float MIN_CHROMA = 1e-4f;
+    
+    private static final int MEMO_BITS = 10;
+    
+    private PaletteBlend() {}
+    
+    /**
+     * @param source original image
+     * @param recolored recolored image of the same size
+     * @param mode how recolored pixels are laid over the source
+     * @param opacity 0 for the source, 1 for the full blend
+     * @return blended TYPE_INT_ARGB image, with the recolored image's alpha
+     */
+    public static BufferedImage blend(BufferedImage source, BufferedImage recolored, BlendMode mode, float opacity) {
+        BufferedImage out = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        blend(source, recolored, mode, opacity, RegionMask.all(source.getWidth(), source.getHeight()), out);
+        
+        return out;
+    }
+    
+    /**
+     * Blend only the pixels a mask selects; the rest of out is not touched.
+     *
+     * @param source original image
+     * @param recolored recolored image of the same size
+     * @param mode how recolored pixels are laid over the source
+     * @param opacity 0 for the source, 1 for the full blend
+     * @param mask pixels to blend
+     * @param out destination of the same size, able to hold any color; may
+     * be the recolored image
+     */
+    public static void blend(BufferedImage source, BufferedImage recolored, BlendMode mode, float opacity,
+            RegionMask mask, BufferedImage out) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        
+        if (recolored.getWidth() != width || recolored.getHeight() != height
+                || out.getWidth() != width || out.getHeight() != height
+                || mask.getWidth() != width || mask.getHeight() != height) {
+            throw new IllegalArgumentException("Images and mask must all be " + width + "x" + height);
+        }
+        
+        if (!(opacity >= 0f && opacity <= 1f)) {
+            throw new IllegalArgumentException("Opacity must be between 0 and 1: " + opacity);
+        }
+        
+        long startTime = System.currentTimeMillis();
+        
+        long total = mask.getCoverage();
+        int[] runs = mask.getRuns();
+        int bands = (int) Math.max(1, Math.min(Math.min(height, total), Runtime.getRuntime().availableProcessors() * 4));
+        
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int yStart = mask.rowAtCoverage(total * band / bands);
+            int yEnd = band == bands - 1 ? height : mask.rowAtCoverage(total * (band + 1) / bands);
+            
+            int[] base = BufferPool.shared().borrowInts(width);
+            int[] top = BufferPool.shared().borrowInts(width);
+            float[] l1 = new float[width], a1 = new float[width], b1 = new float[width];
+            float[] l2 = new float[width], a2 = new float[width], b2 = new float[width];
+            LabMemo memo = new LabMemo();
+            
+            for (int y = yStart; y < yEnd; y++) {
+                for (int r = mask.rowStart(y); r < mask.rowEnd(y); r += 2) {
+                    int x = runs[r];
+                    int n = runs[r + 1] - x;
+                    
+                    source.getRGB(x, y, n, 1, base, 0, n);
+                    recolored.getRGB(x, y, n, 1, top, 0, n);
+                    
+                    toLab(base, n, l1, a1, b1);
+                    memo.toLab(top, n, l2, a2, b2);
+                    
+                    switch (mode) {
+                        case MIX -> mix(l1, a1, b1, l2, a2, b2, n, opacity);
+                        case LUMINOSITY -> luminosity(a1, b1, a2, b2, n, opacity);
+                        case COLOR -> color(a1, b1, a2, b2, n, opacity);
+                    }
+                    
+                    toArgb(l1, a1, b1, n, top);
+                    out.setRGB(x, y, n, 1, top, 0, n);
+                }
+            }
+            
+            BufferPool.shared().release(base);
+            BufferPool.shared().release(top);
+        });
+        
+        long endTime = System.currentTimeMillis();
+        System.out.println("Blend (" + mode.getLabel() + ", " + Math.round(opacity * 100) + "%) TIME: "
+                + (endTime - startTime) + "ms");
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    // Results are written over the source channels
+    private static void mix(float[] l1, float[] a1, float[] b1, float[] l2, float[] a2, float[] b2, int n, float t) {
+        for (int i = 0; i < n; i++) {
+            l1[i] += (l2[i] - l1[i]) * t;
+            a1[i] += (a2[i] - a1[i]) * t;
+            b1[i] += (b2[i] - b1[i]) * t;
+        }
+    }
+    
+    private static void luminosity(float[] a1, float[] b1, float[] a2, float[] b2, int n, float t) {
+        for (int i = 0; i < n; i++) {
+            a1[i] += (a2[i] - a1[i]) * t;
+            b1[i] += (b2[i] - b1[i]) * t;
+        }
+    }
+    
+    // The recolored hue at the source chroma; gray recolored pixels have no
+    // hue and leave the source as it is
+    private static void color(float[] a1, float[] b1, float[] a2, float[] b2, int n, float t) {
+        for (int i = 0; i < n; i++) {
+            float c1 = (float) Math.sqrt(a1[i] * a1[i] + b1[i] * b1[i]);
+            float c2 = (float) Math.sqrt(a2[i] * a2[i] + b2[i] * b2[i]);
+            float k = c2 > MIN_CHROMA ? c1 / c2 : 0f;
+            float a = c2 > MIN_CHROMA ? a2[i] * k : a1[i];
+            float b = c2 > MIN_CHROMA ? b2[i] * k : b1[i];
+            
+            a1[i] += (a - a1[i]) * t;
+            b1[i] += (b - b1[i]) * t;
+        }
+    }
+    
+    // Same arithmetic as ColorTables.rgbToOklab, one channel array at a time
+    private static void toLab(int[] row, int n, float[] l, float[] a, float[] b) {
+        for (int i = 0; i < n; i++) {
+            int rgb = row[i];
+            l[i] = ColorTables.srgbToLinear((rgb >> 16) & 0xFF);
+            a[i] = ColorTables.srgbToLinear((rgb >> 8) & 0xFF);
+            b[i] = ColorTables.srgbToLinear(rgb & 0xFF);
+        }
+        
+        for (int i = 0; i < n; i++) {
+            float r = l[i], g = a[i], bl = b[i];
+            
+            float l_ = ColorTables.cbrt(0.4122214708f * r + 0.5363325363f * g + 0.0514459929f * bl);
+            float m_ = ColorTables.cbrt(0.2119034982f * r + 0.6806995451f * g + 0.1073969566f * bl);
+            float s_ = ColorTables.cbrt(0.0883024619f * r + 0.2817188376f * g + 0.6299787005f * bl);
+            
+            l[i] = 0.2104542553f * l_ + 0.7936177850f * m_ - 0.0040720468f * s_;
+            a[i] = 1.9779984951f * l_ - 2.4285922050f * m_ + 0.4505937099f * s_;
+            b[i] = 0.0259040371f * l_ + 0.7827717662f * m_ - 0.8086757660f * s_;
+        }
+    }
+    
+    // Keeps the alpha already in row
+    private static void toArgb(float[] l, float[] a, float[] b, int n, int[] row) {
+        for (int i = 0; i < n; i++) {
+            float l_ = l[i] + 0.3963377774f * a[i] + 0.2158037573f * b[i];
+            float m_ = l[i] - 0.1055613458f * a[i] - 0.0638541728f * b[i];
+            float s_ = l[i] - 0.0894841775f * a[i] - 1.2914855480f * b[i];
+            
+            float lm = l_ * l_ * l_;
+            float mm = m_ * m_ * m_;
+            float sm = s_ * s_ * s_;
+            
+            // Linear channels, reusing the arrays
+            l[i] = 4.0767416621f * lm - 3.3077115901f * mm + 0.2309699292f * sm;
+            a[i] = -1.2684380046f * lm + 2.6097574011f * mm - 0.3413193965f * sm;
+            b[i] = -0.0041960863f * lm - 0.7034186147f * mm + 1.7076147010f * sm;
+        }
+        
+        for (int i = 0; i < n; i++) {
+            row[i] = (row[i] & 0xFF000000)
+                    | (ColorTables.linearToSrgb8(l[i]) << 16)
+                    | (ColorTables.linearToSrgb8(a[i]) << 8)
+                    | ColorTables.linearToSrgb8(b[i]);
+        }
+    }
+    
+    // Direct-mapped table of RGB → OKLab, tagged with the full RGB value
+    private static final class LabMemo {
+        private final int[] keys = new int[1 << MEMO_BITS];
+        private final float[] lab = new float[3 << MEMO_BITS];
+        private final float[] scratch = new float[3];
+        
+        LabMemo() {
+            // No 24-bit color has this tag
+            Arrays.fill(keys, -1);
+        }
+        
+        void toLab(int[] row, int n, float[] l, float[] a, float[] b) {
+            for (int i = 0; i < n; i++) {
+                int rgb = row[i] & 0x00FFFFFF;
+                int slot = ((rgb * 0x9E3779B1) >>> (32 - MEMO_BITS));
+                
+                if (keys[slot] != rgb) {
+                    ColorTables.rgbToOklab(rgb, scratch);
+                    keys[slot] = rgb;
+                    lab[slot * 3] = scratch[0];
+                    lab[slot * 3 + 1] = scratch[1];
+                    lab[slot * 3 + 2] = scratch[2];
+                }
+                
+                l[i] = lab[slot * 3];
+                a[i] = lab[slot * 3 + 1];
+                b[i] = lab[slot * 3 + 2];
+            }
+        }
+    }
+}
@@ -0,0 +1,683 @@
+package Palette;
+
+import Data.ColorData;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+public class PaletteExtractor {
+    private static final int SAMPLE_TARGET = 1 << 18;
+    private static final int BINS = 1 << 15;
+    
+    private static final int KMEANS_ITERATIONS = 64;
+    private static final int KMEANS_BATCH = 4096;
+    private static final int KMEANS_REFINEMENTS = 2;
+    private static final long KMEANS_SEED = 0x2545F4914F6CDD1DL;
+    
+    // Wu moment tables are 33³ with a zero border for prefix sums
+    private static final int WU_SIDE = 33;
+    private static final int RED = 0, GREEN = 1, BLUE = 2;
+    
+    // Sampled 15-bit histogram: count, channel sums and sum of squares per bin
+    private final int[] count = new int[BINS];
+    private final long[] sumR = new long[BINS];
+    private final long[] sumG = new long[BINS];
+    private final long[] sumB = new long[BINS];
+    private final long[] sumSq = new long[BINS];
+    
+    // Occupied bins, with the OKLab of each bin's mean color
+    private int binCount;
+    private int[] binKey;
+    private float[] binL;
+    private float[] binA;
+    private float[] binB;
+    
+    /**
+     * Extract an initial palette from the image's own colors. Pixels are
+     * sampled on a regular grid and binned into a 15-bit histogram, so the
+     * cost of the clustering step does not depend on the image size. Fully
+     * transparent pixels are ignored.
+     *
+     * @param image source image
+     * @param colors maximum number of palette colors
+     * @param mode one of the full-color quantization modes
+     * @return OKLCh colors sorted by lightness; fewer than colors when the
+     * image has fewer distinct colors
+     * @throws IllegalArgumentException if mode is not a full-color mode or
+     * the image has no opaque pixels
+     */
+    public ColorData[] extract(BufferedImage image, int colors, QuantizationMode mode) {
+        if (!mode.isFullColor()) {
+            throw new IllegalArgumentException("Mode does not extract colors: " + mode);
+        }
+        
+        sample(image);
+        
+        if (binCount == 0) {
+            throw new IllegalArgumentException("Image has no opaque pixels");
+        }
+        
+        int k = Math.min(colors, binCount);
+        
+        float[][] centers = switch (mode) {
+            case MEDIAN_CUT -> medianCut(k);
+            case WU -> wu(k);
+            default -> kMeans(k);
+        };
+        
+        ColorData[] palette = new ColorData[centers.length];
+        
+        for (int i = 0; i < centers.length; i++) {
+            palette[i] = new ColorData(centers[i][0], centers[i][1], centers[i][2]).oklabToOklch();
+        }
+        
+        Arrays.sort(palette, Comparator.comparingDouble(ColorData::getX));
+        
+        return palette;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Sampling
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private void sample(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        
+        long total = (long) width * height;
+        int step = (int) Math.max(1, Math.ceil(Math.sqrt((double) total / SAMPLE_TARGET)));
+        int rows = (height + step - 1) / step;
+        int bands = Math.min(rows, Runtime.getRuntime().availableProcessors());
+        
+        // Each band fills its own partial histogram, merged once at the end
+        Partial merged = IntStream.range(0, bands).parallel().mapToObj(band -> {
+            Partial p = new Partial();
+            int[] row = new int[width];
+            
+            for (int ri = rows * band / bands; ri < rows * (band + 1) / bands; ri++) {
+                image.getRGB(0, ri * step, width, 1, row, 0, width);
+                
+                for (int x = 0; x < width; x += step) {
+                    p.add(row[x]);
+                }
+            }
+            
+            return p;
+        }).reduce(Partial::merge).orElseGet(Partial::new);
+        
+        System.arraycopy(merged.count, 0, count, 0, BINS);
+        System.arraycopy(merged.sumR, 0, sumR, 0, BINS);
+        System.arraycopy(merged.sumG, 0, sumG, 0, BINS);
+        System.arraycopy(merged.sumB, 0, sumB, 0, BINS);
+        System.arraycopy(merged.sumSq, 0, sumSq, 0, BINS);
+        
+        collectBins();
+    }
+    
+    private void collectBins() {
+        binCount = 0;
+        
+        for (int k = 0; k < BINS; k++) {
+            if (count[k] > 0) binCount++;
+        }
+        
+        binKey = new int[binCount];
+        binL = new float[binCount];
+        binA = new float[binCount];
+        binB = new float[binCount];
+        
+        for (int k = 0, i = 0; k < BINS; k++) {
+            if (count[k] > 0) binKey[i++] = k;
+        }
+        
+        IntStream.range(0, binCount).parallel().forEach(i -> {
+            int k = binKey[i];
+            float c = count[k] * 255f;
+            
+            ColorData lab = new ColorData(sumR[k] / c, sumG[k] / c, sumB[k] / c).rgbToOklab();
+            
+            binL[i] = lab.getX();
+            binA[i] = lab.getY();
+            binB[i] = lab.getZ();
+        });
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Median Cut (OKLab)
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private float[][] medianCut(int colors) {
+        int[] order = new int[binCount];
+        
+        for (int i = 0; i < binCount; i++) {
+            order[i] = i;
+        }
+        
+        List<Box> boxes = new ArrayList<>();
+        boxes.add(measure(order, 0, binCount));
+        
+        while (boxes.size() < colors) {
+            // Split the box with the largest population-weighted extent
+            Box box = null;
+            
+            for (Box candidate : boxes) {
+                if (candidate.score > 0 && (box == null || candidate.score > box.score)) {
+                    box = candidate;
+                }
+            }
+            
+            if (box == null) break;
+            
+            sortByAxis(order, box.start, box.end, box.axis);
+            
+            // Weighted median, keeping at least one bin on each side
+            long acc = 0;
+            int cut = box.start + 1;
+            
+            for (int j = box.start; j < box.end - 1; j++) {
+                acc += count[binKey[order[j]]];
+                cut = j + 1;
+                
+                if (acc * 2 >= box.weight) break;
+            }
+            
+            boxes.remove(box);
+            boxes.add(measure(order, box.start, cut));
+            boxes.add(measure(order, cut, box.end));
+        }
+        
+        float[][] centers = new float[boxes.size()][];
+        
+        for (int bi = 0; bi < boxes.size(); bi++) {
+            Box box = boxes.get(bi);
+            double l = 0, a = 0, b = 0;
+            
+            for (int j = box.start; j < box.end; j++) {
+                int i = order[j];
+                int c = count[binKey[i]];
+                
+                l += binL[i] * c;
+                a += binA[i] * c;
+                b += binB[i] * c;
+            }
+            
+            centers[bi] = new float[]{
+                (float) (l / box.weight), (float) (a / box.weight), (float) (b / box.weight)
+            };
+        }
+        
+        return centers;
+    }
+    
+    private Box measure(int[] order, int start, int end) {
+        Box box = new Box(start, end);
+        
+        float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+        float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+        
+        for (int j = start; j < end; j++) {
+            int i = order[j];
+            
+            for (int ax = 0; ax < 3; ax++) {
+                float v = coord(i, ax);
+                min[ax] = Math.min(min[ax], v);
+                max[ax] = Math.max(max[ax], v);
+            }
+            
+            box.weight += count[binKey[i]];
+        }
+        
+        if (end - start < 2) {
+            return box;
+        }
+        
+        for (int ax = 0; ax < 3; ax++) {
+            double score = (double) (max[ax] - min[ax]) * box.weight;
+            
+            if (score > box.score) {
+                box.score = score;
+                box.axis = ax;
+            }
+        }
+        
+        return box;
+    }
+    
+    private void sortByAxis(int[] order, int start, int end, int axis) {
+        long[] keys = new long[end - start];
+        
+        for (int j = start; j < end; j++) {
+            int bits = Float.floatToIntBits(coord(order[j], axis));
+            int sortable = bits ^ ((bits >> 31) & 0x7FFFFFFF);
+            
+            keys[j - start] = ((long) sortable << 32) | order[j];
+        }
+        
+        Arrays.sort(keys);
+        
+        for (int j = start; j < end; j++) {
+            order[j] = (int) keys[j - start];
+        }
+    }
+    
+    private float coord(int i, int axis) {
+        return axis == 0 ? binL[i] : axis == 1 ? binA[i] : binB[i];
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Wu's Quantizer (sRGB moments)
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private float[][] wu(int colors) {
+        int size = WU_SIDE * WU_SIDE * WU_SIDE;
+        
+        long[] wt = new long[size];
+        long[] mr = new long[size];
+        long[] mg = new long[size];
+        long[] mb = new long[size];
+        double[] m2 = new double[size];
+        
+        for (int k = 0; k < BINS; k++) {
+            if (count[k] == 0) continue;
+            
+            int idx = wuIndex(((k >> 10) & 31) + 1, ((k >> 5) & 31) + 1, (k & 31) + 1);
+            
+            wt[idx] = count[k];
+            mr[idx] = sumR[k];
+            mg[idx] = sumG[k];
+            mb[idx] = sumB[k];
+            m2[idx] = sumSq[k];
+        }
+        
+        cumulate(wt);
+        cumulate(mr);
+        cumulate(mg);
+        cumulate(mb);
+        cumulate(m2);
+        
+        long[][] m = { mr, mg, mb, wt };
+        
+        int[][] cubes = new int[colors][];
+        double[] variance = new double[colors];
+        
+        cubes[0] = new int[]{0, WU_SIDE - 1, 0, WU_SIDE - 1, 0, WU_SIDE - 1};
+        
+        int next = 0;
+        int found = 1;
+        
+        for (int i = 1; i < colors; i++) {
+            cubes[i] = new int[6];
+            
+            if (cut(cubes[next], cubes[i], m)) {
+                variance[next] = cells(cubes[next]) > 1 ? variance(cubes[next], m, m2) : 0;
+                variance[i] = cells(cubes[i]) > 1 ? variance(cubes[i], m, m2) : 0;
+                found = i + 1;
+            } else {
+                variance[next] = 0;
+                i--;
+            }
+            
+            next = 0;
+            double best = variance[0];
+            
+            for (int j = 1; j <= i; j++) {
+                if (variance[j] > best) {
+                    best = variance[j];
+                    next = j;
+                }
+            }
+            
+            if (best <= 0) break;
+        }
+        
+        List<float[]> centers = new ArrayList<>();
+        
+        for (int i = 0; i < found; i++) {
+            long w = volume(cubes[i], wt);
+            
+            if (w == 0) continue;
+            
+            float r = volume(cubes[i], mr) / (w * 255f);
+            float g = volume(cubes[i], mg) / (w * 255f);
+            float b = volume(cubes[i], mb) / (w * 255f);
+            
+            ColorData lab = new ColorData(r, g, b).rgbToOklab();
+            centers.add(new float[]{ lab.getX(), lab.getY(), lab.getZ() });
+        }
+        
+        return centers.toArray(new float[0][]);
+    }
+    
+    private static int wuIndex(int r, int g, int b) {
+        return (r * WU_SIDE + g) * WU_SIDE + b;
+    }
+    
+    private static void cumulate(long[] m) {
+        for (int r = 1; r < WU_SIDE; r++)
+            for (int g = 1; g < WU_SIDE; g++)
+                for (int b = 1; b < WU_SIDE; b++)
+                    m[wuIndex(r, g, b)] += m[wuIndex(r, g, b - 1)];
+        
+        for (int r = 1; r < WU_SIDE; r++)
+            for (int g = 1; g < WU_SIDE; g++)
+                for (int b = 1; b < WU_SIDE; b++)
+                    m[wuIndex(r, g, b)] += m[wuIndex(r, g - 1, b)];
+        
+        for (int r = 1; r < WU_SIDE; r++)
+            for (int g = 1; g < WU_SIDE; g++)
+                for (int b = 1; b < WU_SIDE; b++)
+                    m[wuIndex(r, g, b)] += m[wuIndex(r - 1, g, b)];
+    }
+    
+    private static void cumulate(double[] m) {
+        for (int r = 1; r < WU_SIDE; r++)
+            for (int g = 1; g < WU_SIDE; g++)
+                for (int b = 1; b < WU_SIDE; b++)
+                    m[wuIndex(r, g, b)] += m[wuIndex(r, g, b - 1)];
+        
+        for (int r = 1; r < WU_SIDE; r++)
+            for (int g = 1; g < WU_SIDE; g++)
+                for (int b = 1; b < WU_SIDE; b++)
+                    m[wuIndex(r, g, b)] += m[wuIndex(r, g - 1, b)];
+        
+        for (int r = 1; r < WU_SIDE; r++)
+            for (int g = 1; g < WU_SIDE; g++)
+                for (int b = 1; b < WU_SIDE; b++)
+                    m[wuIndex(r, g, b)] += m[wuIndex(r - 1, g, b)];
+    }
+    
+    // Cube layout: {r0, r1, g0, g1, b0, b1}, lower bounds exclusive
+    private static int cells(int[] c) {
+        return (c[1] - c[0]) * (c[3] - c[2]) * (c[5] - c[4]);
+    }
+    
+    private static long volume(int[] c, long[] m) {
+        return m[wuIndex(c[1], c[3], c[5])] - m[wuIndex(c[1], c[3], c[4])]
+             - m[wuIndex(c[1], c[2], c[5])] + m[wuIndex(c[1], c[2], c[4])]
+             - m[wuIndex(c[0], c[3], c[5])] + m[wuIndex(c[0], c[3], c[4])]
+             + m[wuIndex(c[0], c[2], c[5])] - m[wuIndex(c[0], c[2], c[4])];
+    }
+    
+    private static double volume(int[] c, double[] m) {
+        return m[wuIndex(c[1], c[3], c[5])] - m[wuIndex(c[1], c[3], c[4])]
+             - m[wuIndex(c[1], c[2], c[5])] + m[wuIndex(c[1], c[2], c[4])]
+             - m[wuIndex(c[0], c[3], c[5])] + m[wuIndex(c[0], c[3], c[4])]
+             + m[wuIndex(c[0], c[2], c[5])] - m[wuIndex(c[0], c[2], c[4])];
+    }
+    
+    private static long bottom(int[] c, int dir, long[] m) {
+        return switch (dir) {
+            case RED -> -m[wuIndex(c[0], c[3], c[5])] + m[wuIndex(c[0], c[3], c[4])]
+                        + m[wuIndex(c[0], c[2], c[5])] - m[wuIndex(c[0], c[2], c[4])];
+            case GREEN -> -m[wuIndex(c[1], c[2], c[5])] + m[wuIndex(c[1], c[2], c[4])]
+                          + m[wuIndex(c[0], c[2], c[5])] - m[wuIndex(c[0], c[2], c[4])];
+            default -> -m[wuIndex(c[1], c[3], c[4])] + m[wuIndex(c[1], c[2], c[4])]
+                       + m[wuIndex(c[0], c[3], c[4])] - m[wuIndex(c[0], c[2], c[4])];
+        };
+    }
+    
+    private static long top(int[] c, int dir, int pos, long[] m) {
+        return switch (dir) {
+            case RED -> m[wuIndex(pos, c[3], c[5])] - m[wuIndex(pos, c[3], c[4])]
+                        - m[wuIndex(pos, c[2], c[5])] + m[wuIndex(pos, c[2], c[4])];
+            case GREEN -> m[wuIndex(c[1], pos, c[5])] - m[wuIndex(c[1], pos, c[4])]
+                          - m[wuIndex(c[0], pos, c[5])] + m[wuIndex(c[0], pos, c[4])];
+            default -> m[wuIndex(c[1], c[3], pos)] - m[wuIndex(c[1], c[2], pos)]
+                       - m[wuIndex(c[0], c[3], pos)] + m[wuIndex(c[0], c[2], pos)];
+        };
+    }
+    
+    private static double variance(int[] c, long[][] m, double[] m2) {
+        double dr = volume(c, m[0]);
+        double dg = volume(c, m[1]);
+        double db = volume(c, m[2]);
+        double w = volume(c, m[3]);
+        
+        return volume(c, m2) - (dr * dr + dg * dg + db * db) / w;
+    }
+    
+    /**
+     * Find the cut position along dir maximizing the between-class variance.
+     * Returns {score, position}, position -1 when no valid cut exists.
+     */
+    private static double[] maximize(int[] c, int dir, int first, int last, long[][] m, long[] whole) {
+        long baseR = bottom(c, dir, m[0]);
+        long baseG = bottom(c, dir, m[1]);
+        long baseB = bottom(c, dir, m[2]);
+        long baseW = bottom(c, dir, m[3]);
+        
+        double max = 0;
+        int cut = -1;
+        
+        for (int i = first; i < last; i++) {
+            double halfR = baseR + top(c, dir, i, m[0]);
+            double halfG = baseG + top(c, dir, i, m[1]);
+            double halfB = baseB + top(c, dir, i, m[2]);
+            double halfW = baseW + top(c, dir, i, m[3]);
+            
+            if (halfW == 0) continue;
+            
+            double temp = (halfR * halfR + halfG * halfG + halfB * halfB) / halfW;
+            
+            halfR = whole[0] - halfR;
+            halfG = whole[1] - halfG;
+            halfB = whole[2] - halfB;
+            halfW = whole[3] - halfW;
+            
+            if (halfW == 0) continue;
+            
+            temp += (halfR * halfR + halfG * halfG + halfB * halfB) / halfW;
+            
+            if (temp > max) {
+                max = temp;
+                cut = i;
+            }
+        }
+        
+        return new double[]{ max, cut };
+    }
+    
+    private static boolean cut(int[] set1, int[] set2, long[][] m) {
+        long[] whole = { volume(set1, m[0]), volume(set1, m[1]), volume(set1, m[2]), volume(set1, m[3]) };
+        
+        double[] maxR = maximize(set1, RED, set1[0] + 1, set1[1], m, whole);
+        double[] maxG = maximize(set1, GREEN, set1[2] + 1, set1[3], m, whole);
+        double[] maxB = maximize(set1, BLUE, set1[4] + 1, set1[5], m, whole);
+        
+        int dir;
+        
+        if (maxR[0] >= maxG[0] && maxR[0] >= maxB[0]) {
+            dir = RED;
+            
+            if (maxR[1] < 0) return false;
+        } else if (maxG[0] >= maxR[0] && maxG[0] >= maxB[0]) {
+            dir = GREEN;
+        } else {
+            dir = BLUE;
+        }
+        
+        set2[1] = set1[1];
+        set2[3] = set1[3];
+        set2[5] = set1[5];
+        
+        switch (dir) {
+            case RED -> {
+                set2[0] = set1[1] = (int) maxR[1];
+                set2[2] = set1[2];
+                set2[4] = set1[4];
+            }
+            case GREEN -> {
+                set2[2] = set1[3] = (int) maxG[1];
+                set2[0] = set1[0];
+                set2[4] = set1[4];
+            }
+            default -> {
+                set2[4] = set1[5] = (int) maxB[1];
+                set2[0] = set1[0];
+                set2[2] = set1[2];
+            }
+        }
+        
+        return true;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Mini-batch K-Means (OKLab)
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private float[][] kMeans(int colors) {
+        // Seed with median cut so runs are deterministic and start well spread
+        float[][] centers = medianCut(colors);
+        int k = centers.length;
+        
+        long[] cumulative = new long[binCount];
+        long acc = 0;
+        
+        for (int i = 0; i < binCount; i++) {
+            acc += count[binKey[i]];
+            cumulative[i] = acc;
+        }
+        
+        long totalWeight = acc;
+        
+        SplittableRandom rnd = new SplittableRandom(KMEANS_SEED);
+        int[] batch = new int[KMEANS_BATCH];
+        int[] assigned = new int[KMEANS_BATCH];
+        long[] seen = new long[k];
+        
+        for (int iter = 0; iter < KMEANS_ITERATIONS; iter++) {
+            // Draw bins proportionally to their pixel count
+            for (int j = 0; j < KMEANS_BATCH; j++) {
+                int pos = Arrays.binarySearch(cumulative, rnd.nextLong(totalWeight) + 1);
+                batch[j] = pos >= 0 ? pos : -pos - 1;
+            }
+            
+            final float[][] current = centers;
+            
+            IntStream.range(0, KMEANS_BATCH).parallel().forEach(j -> {
+                assigned[j] = nearestCenter(current, batch[j]);
+            });
+            
+            // Per-center learning rate 1 / (samples seen so far)
+            for (int j = 0; j < KMEANS_BATCH; j++) {
+                float[] c = centers[assigned[j]];
+                int i = batch[j];
+                float eta = 1f / ++seen[assigned[j]];
+                
+                c[0] += eta * (binL[i] - c[0]);
+                c[1] += eta * (binA[i] - c[1]);
+                c[2] += eta * (binB[i] - c[2]);
+            }
+        }
+        
+        // Full weighted refinement over every bin
+        for (int pass = 0; pass < KMEANS_REFINEMENTS; pass++) {
+            final float[][] current = centers;
+            int bands = Runtime.getRuntime().availableProcessors();
+            
+            double[] sums = IntStream.range(0, bands).parallel().mapToObj(band -> {
+                double[] s = new double[k * 4];
+                
+                for (int i = binCount * band / bands; i < binCount * (band + 1) / bands; i++) {
+                    int c = nearestCenter(current, i);
+                    int w = count[binKey[i]];
+                    
+                    s[c * 4] += binL[i] * w;
+                    s[c * 4 + 1] += binA[i] * w;
+                    s[c * 4 + 2] += binB[i] * w;
+                    s[c * 4 + 3] += w;
+                }
+                
+                return s;
+            }).reduce((s1, s2) -> {
+                for (int j = 0; j < s1.length; j++) s1[j] += s2[j];
+                
+                return s1;
+            }).orElseGet(() -> new double[k * 4]);
+            
+            for (int c = 0; c < k; c++) {
+                double w = sums[c * 4 + 3];
+                
+                if (w == 0) continue;
+                
+                centers[c][0] = (float) (sums[c * 4] / w);
+                centers[c][1] = (float) (sums[c * 4 + 1] / w);
+                centers[c][2] = (float) (sums[c * 4 + 2] / w);
+            }
+        }
+        
+        return centers;
+    }
+    
+    private int nearestCenter(float[][] centers, int i) {
+        int best = 0;
+        float bestDist = Float.MAX_VALUE;
+        
+        for (int c = 0; c < centers.length; c++) {
+            float dL = centers[c][0] - binL[i];
+            float da = centers[c][1] - binA[i];
+            float db = centers[c][2] - binB[i];
+            float d = dL * dL + da * da + db * db;
+            
+            if (d < bestDist) {
+                bestDist = d;
+                best = c;
+            }
+        }
+        
+        return best;
+    }
+    
+    private static final class Box {
+        final int start;
+        final int end;
+        int axis;
+        long weight;
+        double score;
+        
+        Box(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+    
+    private static final class Partial {
+        final int[] count = new int[BINS];
+        final long[] sumR = new long[BINS];
+        final long[] sumG = new long[BINS];
+        final long[] sumB = new long[BINS];
+        final long[] sumSq = new long[BINS];
+        
+        void add(int px) {
+            if ((px >>> 24) == 0) return;
+            
+            int r = (px >> 16) & 0xff;
+            int g = (px >> 8) & 0xff;
+            int b = px & 0xff;
+            int k = ImageHistogram.rgbBin(r, g, b);
+            
+            count[k]++;
+            sumR[k] += r;
+            sumG[k] += g;
+            sumB[k] += b;
+            sumSq[k] += r * r + g * g + b * b;
+        }
+        
+        Partial merge(Partial other) {
+            for (int k = 0; k < BINS; k++) {
+                count[k] += other.count[k];
+                sumR[k] += other.sumR[k];
+                sumG[k] += other.sumG[k];
+                sumB[k] += other.sumB[k];
+                sumSq[k] += other.sumSq[k];
+            }
+            
+            return this;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package Palette;
+
+import Data.ColorData;
+
+import FileManager.BufferPool;
+import FileManager.SequenceWriter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.List;
+
+/*
+Palette animation: one quantized image shown under a palette that moves
+through a list of keyframe palettes. Every entry is interpolated in OKLab,
+where a straight line between two colors stays perceptually even and never
+takes the long way round the hue circle the way an OKLCh hue lerp can.
+
+The image is quantized once. Its levels become one byte plane, and a frame is
+nothing but that plane under a new color table, so the per-frame work is
+interpolating and gamut-mapping one color per level. The plane is shared by
+every frame, and PNG output compresses it a single time; the rest of a frame
+is its PLTE chunk. Transparent source pixels get one extra index after the
+sweep colors, transparent in every frame, as in SequenceRecolor.
+*/
+public class PaletteSweep {
+    private final int size;
+    
+    // OKLab triples of every keyframe, packed {L, a, b} per entry
+    private final float[][] keys;
+    
+    /**
+     * @param keyframes OKLCh palettes, at least two and all the same length,
+     * spread evenly over the sweep
+     */
+    public PaletteSweep(List<ColorData[]> keyframes) {
+        if (keyframes.size() < 2) {
+            throw new IllegalArgumentException("A sweep needs at least two keyframes");
+        }
+        
+        size = keyframes.get(0).length;
+        
+        if (size < 1 || size > 256) {
+            throw new IllegalArgumentException("Keyframes must have between 1 and 256 colors");
+        }
+        
+        keys = new float[keyframes.size()][];
+        
+        for (int k = 0; k < keys.length; k++) {
+            ColorData[] colors = keyframes.get(k);
+            
+            if (colors.length != size) {
+                throw new IllegalArgumentException("Keyframe " + k + " has " + colors.length + " colors, expected " + size);
+            }
+            
+            keys[k] = new float[size * 3];
+            
+            for (int i = 0; i < size; i++) {
+                ColorData lab = colors[i].oklchToOklab();
+                keys[k][i * 3] = lab.getX();
+                keys[k][i * 3 + 1] = lab.getY();
+                keys[k][i * 3 + 2] = lab.getZ();
+            }
+        }
+    }
+    
+    /**
+     * @param t position in the sweep, 0 at the first keyframe and 1 at the
+     * last; clamped
+     * @return OKLCh palette at t
+     */
+    public ColorData[] paletteAt(float t) {
+        float position = Math.max(0f, Math.min(1f, t)) * (keys.length - 1);
+        int k = Math.min((int) position, keys.length - 2);
+        float f = position - k;
+        
+        float[] a = keys[k];
+        float[] b = keys[k + 1];
+        ColorData[] palette = new ColorData[size];
+        
+        for (int i = 0; i < size; i++) {
+            int o = i * 3;
+            palette[i] = new ColorData(
+                    a[o] + (b[o] - a[o]) * f,
+                    a[o + 1] + (b[o + 1] - a[o + 1]) * f,
+                    a[o + 2] + (b[o + 2] - a[o + 2]) * f).oklabToOklch();
+        }
+        
+        return palette;
+    }
+    
+    /**
+     * @param t position in the sweep, see paletteAt()
+     * @return opaque ARGB lookup table at t, for IndexedImage.render()
+     */
+    public int[] lut(float t) {
+        return IndexedImage.lut(paletteAt(t));
+    }
+    
+    /**
+     * Write frames evenly spaced over the sweep, first and last keyframe
+     * included.
+     *
+     * @param image index plane with one level per sweep color
+     * @param alpha same-sized image whose transparent pixels stay
+     * transparent in every frame, or null for opaque frames
+     * @param frames number of frames, at least 2
+     * @param delay how long each frame is shown, in milliseconds
+     * @param out destination
+     * @return number of frames written
+     * @throws IOException if a frame cannot be written
+     */
+    public int render(IndexedImage image, BufferedImage alpha, int frames, int delay, SequenceWriter out)
+            throws IOException {
+        if (frames < 2) {
+            throw new IllegalArgumentException("A sweep needs at least two frames");
+        }
+        
+        if (image.getPaletteSize() > size) {
+            throw new IllegalArgumentException("Image has " + image.getPaletteSize() + " levels, sweep has " + size);
+        }
+        
+        long startTime = System.currentTimeMillis();
+        
+        int width = image.getWidth();
+        int height = image.getHeight();
+        short[] indices = image.getIndices();
+        byte[] plane = new byte[indices.length];
+        
+        for (int i = 0; i < plane.length; i++) {
+            plane[i] = (byte) indices[i];
+        }
+        
+        boolean transparent = alpha != null && markTransparent(alpha, plane, width, height);
+        
+        if (transparent && size == 256) {
+            throw new IllegalArgumentException("A sweep over a transparent image holds at most 255 colors");
+        }
+        
+        int entries = transparent ? size + 1 : size;
+        
+        // One raster for every frame; only the color model changes
+        WritableRaster raster = Raster.createInterleavedRaster(
+                new DataBufferByte(plane, plane.length), width, height, width, 1, new int[]{0}, null);
+        
+        byte[] r = new byte[entries];
+        byte[] g = new byte[entries];
+        byte[] b = new byte[entries];
+        
+        for (int frame = 0; frame < frames; frame++) {
+            int[] lut = lut(frame / (float) (frames - 1));
+            
+            for (int i = 0; i < size; i++) {
+                r[i] = (byte) (lut[i] >> 16);
+                g[i] = (byte) (lut[i] >> 8);
+                b[i] = (byte) lut[i];
+            }
+            
+            IndexColorModel colors = transparent
+                    ? new IndexColorModel(8, entries, r, g, b, size)
+                    : new IndexColorModel(8, entries, r, g, b);
+            out.write(frame, new BufferedImage(colors, raster, false, null), delay);
+        }
+        
+        long endTime = System.currentTimeMillis();
+        long elapsed = Math.max(1, endTime - startTime);
+        System.out.println("Palette sweep of " + frames + " frames TIME: " + elapsed + "ms ("
+                + String.format("%.1f", frames * 1000.0 / elapsed) + " fps)");
+        
+        return frames;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    // Point transparent pixels at the entry after the sweep colors; returns
+    // false if there are none
+    private boolean markTransparent(BufferedImage alpha, byte[] plane, int width, int height) {
+        if (alpha.getWidth() != width || alpha.getHeight() != height) {
+            throw new IllegalArgumentException("Alpha image is " + alpha.getWidth() + "x" + alpha.getHeight()
+                    + ", index plane is " + width + "x" + height);
+        }
+        
+        if (!alpha.getColorModel().hasAlpha()) return false;
+        
+        int[] row = BufferPool.shared().borrowInts(width);
+        boolean any = false;
+        
+        for (int y = 0; y < height; y++) {
+            alpha.getRGB(0, y, width, 1, row, 0, width);
+            
+            for (int x = 0; x < width; x++) {
+                if ((row[x] >>> 24) < SequenceRecolor.ALPHA_THRESHOLD) {
+                    plane[y * width + x] = (byte) size;
+                    any = true;
+                }
+            }
+        }
+        
+        BufferPool.shared().release(row);
+        
+        return any;
+    }
+}
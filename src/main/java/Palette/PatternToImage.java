@@ -1,64 +1,254 @@
 package Palette;
 
 import Data.ColorData;
+import Data.PaletteSnapshot;
+import FileManager.BufferPool;
+import FileManager.ImageBuffer;
 
-import java.awt.Color;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
 
 public class PatternToImage {
+    private long[] entryCounts = new long[0];
+    
     public BufferedImage applyPattern(BufferedImage image, ColorData[] originalPattern, ColorData[] newPattern) {
-        BufferedImage out = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        // Full-color sources may be indexed or custom types that cannot hold
+        // arbitrary new colors
+        BufferedImage out = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
         
-        ColorData[] og = new ColorData[originalPattern.length];
-        int[][] nw = new int[originalPattern.length][];
+        remap(image, originalPattern, packed(newPattern), out);
         
-        for (int i = 0; i < originalPattern.length; i++) {
-            // Keep it normalized and use simple conversion
-            // Simple clamping when outside gammut
-            og[i] = originalPattern[i].oklchToOklab().oklabToRgb(false); // Non-linear
-            
+        return out;
+    }
+    
+    /**
+     * Same as applyPattern with BufferedImages, between off-heap buffers.
+     * The output is resized to the source and reuses its memory when it is
+     * already large enough, so a batch can recolor every file into the same
+     * buffer.
+     *
+     * @param image quantized source pixels
+     * @param originalPattern original OKLCh palette
+     * @param newPattern new OKLCh colors, one per original color
+     * @param out destination; may be the source, as every row is read
+     * before it is written
+     */
+    public void applyPattern(ImageBuffer image, ColorData[] originalPattern, ColorData[] newPattern, ImageBuffer out) {
+        out.resize(image.getWidth(), image.getHeight());
+        
+        remap(image.getWidth(), image.getHeight(), originalPattern, packed(newPattern), image::getRow, out::setRow);
+    }
+    
+    /**
+     * Same as applyPattern with ColorData, but reads the new colors from an
+     * immutable snapshot, so it can run off the EDT while the palette is
+     * being edited.
+     *
+     * @param image quantized source image
+     * @param originalPattern original OKLCh palette
+     * @param snapshot new colors, one per original color
+     * @return recolored TYPE_INT_ARGB image
+     */
+    public BufferedImage applyPattern(BufferedImage image, ColorData[] originalPattern, PaletteSnapshot snapshot) {
+        return applyPattern(image, originalPattern, snapshot.toColorData());
+    }
+    
+    /**
+     * Recolor only the pixels a mask selects, reading and writing nothing
+     * else, so re-rendering a small region of a huge image costs only that
+     * region. Unselected pixels keep what out holds: pass the source itself
+     * to leave them untouched, or a previous render to update it in place.
+     * Entry counts cover the selected pixels only.
+     *
+     * @param image quantized source image
+     * @param originalPattern original OKLCh palette
+     * @param newPattern new OKLCh colors, one per original color
+     * @param mask pixels to recolor, the size of the image
+     * @param out destination the size of the image, able to hold any color;
+     * may be the source
+     */
+    public void applyPattern(BufferedImage image, ColorData[] originalPattern, ColorData[] newPattern,
+            RegionMask mask, BufferedImage out) {
+        if (mask.getWidth() != image.getWidth() || mask.getHeight() != image.getHeight()
+                || out.getWidth() != image.getWidth() || out.getHeight() != image.getHeight()) {
+            throw new IllegalArgumentException("Mask and output must be the size of the image");
+        }
+        
+        remapRuns(image, originalPattern, packed(newPattern), mask, out);
+    }
+    
+    /**
+     * Same as applyPattern, but pixels outside the mask are copied from the
+     * source unchanged.
+     *
+     * @param image quantized source image
+     * @param originalPattern original OKLCh palette
+     * @param newPattern new OKLCh colors, one per original color
+     * @param mask pixels to recolor, the size of the image
+     * @return recolored TYPE_INT_ARGB image
+     */
+    public BufferedImage applyPattern(BufferedImage image, ColorData[] originalPattern, ColorData[] newPattern,
+            RegionMask mask) {
+        BufferedImage out = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        
+        // Src copies pixels exactly, hidden color of transparent ones included
+        Graphics2D g = out.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        
+        applyPattern(image, originalPattern, newPattern, mask, out);
+        
+        return out;
+    }
+    
+    /**
+     * Count how many pixels of the image map to each original palette entry,
+     * without producing an output image.
+     *
+     * @param image quantized source image
+     * @param originalPattern original OKLCh palette
+     * @return pixel count per palette entry
+     */
+    public long[] countEntries(BufferedImage image, ColorData[] originalPattern) {
+        remap(image, originalPattern, null, null);
+        
+        return entryCounts;
+    }
+    
+    /**
+     * @return pixel count per palette entry from the last applyPattern or
+     * countEntries call
+     */
+    public long[] getEntryCounts() {
+        return entryCounts;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private static int[] packed(ColorData[] newPattern) {
+        int[] nw = new int[newPattern.length];
+        
+        for (int i = 0; i < newPattern.length; i++) {
             // Conversion with gammut fallback
-            nw[i] = newPattern[i].oklchToRgb().toRgb255();
+            int[] rgb = newPattern[i].oklchToRgb().toRgb255();
+            nw[i] = 0xFF000000 | (rgb[0] << 16) | (rgb[1] << 8) | rgb[2];
         }
         
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-                Color c = new Color(image.getRGB(x, y));
-                ColorData cd = new ColorData(c.getRed(), c.getGreen(), c.getBlue());
-                
-                boolean matched = false;
+        return nw;
+    }
+    
+    private void remap(BufferedImage image, ColorData[] originalPattern, int[] nw, BufferedImage out) {
+        int width = image.getWidth();
+        
+        remap(width, image.getHeight(), originalPattern, nw,
+                (y, row) -> image.getRGB(0, y, width, 1, row, 0, width),
+                out == null ? null : (y, row) -> out.setRGB(0, y, width, 1, row, 0, width));
+    }
+    
+    // Rows are read and written through callbacks so heap images and
+    // off-heap buffers share the same kernel; output is null to only count
+    private void remap(int width, int height, ColorData[] originalPattern, int[] nw,
+            RowAccess input, RowAccess output) {
+        int n = originalPattern.length;
+        NearestColorIndex index = index(originalPattern);
+        
+        int bands = Math.max(1, Math.min(height, Runtime.getRuntime().availableProcessors() * 4));
+        
+        // Each band counts into its own array, summed once at the end
+        entryCounts = IntStream.range(0, bands).parallel().mapToObj(band -> {
+            int yStart = (int) ((long) height * band / bands);
+            int yEnd = (int) ((long) height * (band + 1) / bands);
+            int[] row = BufferPool.shared().borrowInts(width);
+            long[] counts = new long[n];
+            
+            for (int y = yStart; y < yEnd; y++) {
+                input.accept(y, row);
                 
-                for (int i = 0; i < originalPattern.length; i++) {
-                    if (compareColors(cd, og[i])) {
-                        out.setRGB(x, y, new Color(nw[i][0], nw[i][1], nw[i][2]).getRGB());
-                        
-                        matched = true;
-                        
-                        break;
-                    }
-                }
+                remapRow(index, nw, row, width, counts);
                 
-                if (!matched) {
-                    throw new IllegalArgumentException(
-                            String.format(
-                                    "Pixel (%d,%d) with RGB=(%d,%d,%d) does not match any value in the default grayscale palette",
-                                    x, y, c.getRed(), c.getGreen(), c.getBlue()
-                            )
-                    );
+                if (output != null) output.accept(y, row);
+            }
+            
+            BufferPool.shared().release(row);
+            
+            return counts;
+        }).reduce((c1, c2) -> {
+            for (int i = 0; i < n; i++) c1[i] += c2[i];
+            
+            return c1;
+        }).orElseGet(() -> new long[n]);
+    }
+    
+    // Bands hold equal numbers of selected pixels rather than equal rows, so
+    // a mask crowded into one part of the image still spreads over every core
+    private void remapRuns(BufferedImage image, ColorData[] originalPattern, int[] nw, RegionMask mask,
+            BufferedImage out) {
+        int n = originalPattern.length;
+        int height = mask.getHeight();
+        long total = mask.getCoverage();
+        NearestColorIndex index = index(originalPattern);
+        int[] runs = mask.getRuns();
+        
+        int bands = (int) Math.max(1, Math.min(Math.min(height, total), Runtime.getRuntime().availableProcessors() * 4));
+        
+        entryCounts = IntStream.range(0, bands).parallel().mapToObj(band -> {
+            int yStart = mask.rowAtCoverage(total * band / bands);
+            int yEnd = band == bands - 1 ? height : mask.rowAtCoverage(total * (band + 1) / bands);
+            int[] row = BufferPool.shared().borrowInts(mask.getWidth());
+            long[] counts = new long[n];
+            
+            for (int y = yStart; y < yEnd; y++) {
+                for (int r = mask.rowStart(y); r < mask.rowEnd(y); r += 2) {
+                    int x = runs[r];
+                    int length = runs[r + 1] - x;
+                    
+                    image.getRGB(x, y, length, 1, row, 0, length);
+                    remapRow(index, nw, row, length, counts);
+                    out.setRGB(x, y, length, 1, row, 0, length);
                 }
             }
+            
+            BufferPool.shared().release(row);
+            
+            return counts;
+        }).reduce((c1, c2) -> {
+            for (int i = 0; i < n; i++) c1[i] += c2[i];
+            
+            return c1;
+        }).orElseGet(() -> new long[n]);
+    }
+    
+    // Source alpha is kept, so transparent areas stay transparent
+    private static void remapRow(NearestColorIndex index, int[] nw, int[] row, int length, long[] counts) {
+        for (int x = 0; x < length; x++) {
+            int idx = index.nearestRgb(row[x]);
+            counts[idx]++;
+            
+            if (nw != null) row[x] = (row[x] & 0xFF000000) | (nw[idx] & 0x00FFFFFF);
         }
-        
-        return out;
     }
-
-    private boolean compareColors(ColorData imgLab, ColorData palLab) {
-        float dL = Math.abs(imgLab.getX() - palLab.getX());
-        float da = Math.abs(imgLab.getY() - palLab.getY());
-        float db = Math.abs(imgLab.getZ() - palLab.getZ());
+    
+    // Shared with IncrementalRecolor
+    static NearestColorIndex index(ColorData[] originalPattern) {
+        // Original colors are matched in OKLab
+        ColorData[] og = new ColorData[originalPattern.length];
         
-        final float THRESH = 0.01f;
+        for (int i = 0; i < og.length; i++) {
+            og[i] = originalPattern[i].oklchToOklab();
+        }
         
-        return dL <= THRESH && da <= THRESH && db <= THRESH;
+        // Every pixel maps to its nearest original color, so full-color
+        // inputs work as well as exact grayscale levels
+        return new NearestColorIndex(og);
+    }
+    
+    @FunctionalInterface
+    private interface RowAccess {
+        void accept(int y, int[] row);
     }
-}
\ No newline at end of file
+}
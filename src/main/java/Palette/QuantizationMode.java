@@ -0,0 +1,43 @@
+package Palette;
+
+public enum QuantizationMode {
+    GRAYSCALE("Grayscale"),
+    EQUAL_POPULATION("Equal Population"),
+    OTSU("Otsu"),
+    LLOYD_MAX("Lloyd-Max"),
+    MEDIAN_CUT("Median Cut"),
+    WU("Wu"),
+    KMEANS("K-Means");
+    
+    private final String label;
+    
+    QuantizationMode(String label) {
+        this.label = label;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+    
+    /**
+     * @return true when the initial palette is extracted from the image's own
+     * colors instead of a grayscale ramp
+     */
+    public boolean isFullColor() {
+        return this == MEDIAN_CUT || this == WU || this == KMEANS;
+    }
+    
+    /**
+     * @return true when the gray levels are placed from the image's luminance
+     * histogram instead of being evenly spaced
+     */
+    public boolean isAdaptive() {
+        return this == EQUAL_POPULATION || this == OTSU || this == LLOYD_MAX;
+    }
+    
+    public QuantizationMode next() {
+        QuantizationMode[] all = values();
+        
+        return all[(ordinal() + 1) % all.length];
+    }
+}
@@ -0,0 +1,25 @@
+package Palette;
+
+import Data.ColorData;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A quantized image together with the OKLCh palette its levels map to.
+ */
+public final class QuantizedImage {
+    private final BufferedImage image;
+    private final ColorData[] palette;
+    
+    public QuantizedImage(BufferedImage image, ColorData[] palette) {
+        this.image = image;
+        this.palette = palette;
+    }
+    
+    public BufferedImage getImage() { return image; }
+    
+    /**
+     * @return one OKLCh color per quantization level
+     */
+    public ColorData[] getPalette() { return palette; }
+}
@@ -0,0 +1,276 @@
+package Palette;
+
+import FileManager.BufferPool;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+Selection of pixels as runs: for every row, the sorted, non-overlapping
+[start, end) spans that are selected. Recoloring walks the runs instead of
+testing a pixel mask, so pixels outside the selection are never read or
+written and a sparse selection costs in proportion to its area, plus one
+step per row. Rows are stored back to back, with one offset per row into the
+run array, the way a sparse matrix stores its rows.
+*/
+public final class RegionMask {
+    private final int width;
+    private final int height;
+    
+    // Runs of row y are pairs runs[rowStart[y]] .. runs[rowStart[y + 1]]
+    private final int[] rowStart;
+    private final int[] runs;
+    
+    // Selected pixels in the rows above y
+    private final long[] coveredAbove;
+    
+    private RegionMask(int width, int height, int[] rowStart, int[] runs) {
+        this.width = width;
+        this.height = height;
+        this.rowStart = rowStart;
+        this.runs = runs;
+        this.coveredAbove = new long[height + 1];
+        
+        for (int y = 0; y < height; y++) {
+            long covered = 0;
+            
+            for (int r = rowStart[y]; r < rowStart[y + 1]; r += 2) {
+                covered += runs[r + 1] - runs[r];
+            }
+            
+            coveredAbove[y + 1] = coveredAbove[y] + covered;
+        }
+    }
+    
+    /**
+     * @param width image width
+     * @param height image height
+     * @return mask selecting every pixel
+     */
+    public static RegionMask all(int width, int height) {
+        return rectangles(width, height, List.of(new Rectangle(0, 0, width, height)));
+    }
+    
+    /**
+     * @param width image width
+     * @param height image height
+     * @param regions rectangles to select, clipped to the image; they may
+     * overlap
+     * @return mask selecting the union of the rectangles
+     */
+    public static RegionMask rectangles(int width, int height, List<Rectangle> regions) {
+        Rectangle image = new Rectangle(0, 0, width, height);
+        Rectangle[] clipped = regions.stream()
+                .map(image::intersection)
+                .filter(r -> !r.isEmpty())
+                .sorted((a, b) -> Integer.compare(a.x, b.x))
+                .toArray(Rectangle[]::new);
+        
+        Builder builder = new Builder(width, height);
+        
+        for (int y = 0; y < height; y++) {
+            // Sorted by left edge, so overlapping spans merge in one pass
+            int start = -1, end = -1;
+            
+            for (Rectangle r : clipped) {
+                if (y < r.y || y >= r.y + r.height) continue;
+                
+                if (r.x > end) {
+                    if (end > start) builder.add(start, end);
+                    
+                    start = r.x;
+                }
+                
+                end = Math.max(end, r.x + r.width);
+            }
+            
+            if (end > start) builder.add(start, end);
+            
+            builder.endRow();
+        }
+        
+        return builder.build();
+    }
+    
+    /**
+     * @param image image with an alpha channel
+     * @param threshold minimum alpha, 1 to 255, of a selected pixel
+     * @return mask selecting the image's visible pixels
+     */
+    public static RegionMask fromAlpha(BufferedImage image, int threshold) {
+        return fromPixels(image, threshold, argb -> argb >>> 24);
+    }
+    
+    /**
+     * Select the light pixels of a separate mask image: white selects,
+     * black and transparent pass through.
+     *
+     * @param mask mask image, the size of the image it applies to
+     * @param threshold minimum luminance times alpha, 1 to 255, of a
+     * selected pixel
+     * @return mask selecting the light pixels
+     */
+    public static RegionMask fromImage(BufferedImage mask, int threshold) {
+        return fromPixels(mask, threshold, argb -> ImageHistogram.luminanceOf(
+                (argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF) * (argb >>> 24) / 255);
+    }
+    
+    /**
+     * @param other mask of the same size
+     * @return mask selecting the pixels selected by both
+     */
+    public RegionMask intersect(RegionMask other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("Masks must be the same size");
+        }
+        
+        Builder builder = new Builder(width, height);
+        
+        for (int y = 0; y < height; y++) {
+            int i = rowStart[y], iEnd = rowStart[y + 1];
+            int j = other.rowStart[y], jEnd = other.rowStart[y + 1];
+            
+            while (i < iEnd && j < jEnd) {
+                int start = Math.max(runs[i], other.runs[j]);
+                int end = Math.min(runs[i + 1], other.runs[j + 1]);
+                
+                if (start < end) builder.add(start, end);
+                
+                // Advance whichever run ends first
+                if (runs[i + 1] < other.runs[j + 1]) {
+                    i += 2;
+                } else {
+                    j += 2;
+                }
+            }
+            
+            builder.endRow();
+        }
+        
+        return builder.build();
+    }
+    
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    
+    /**
+     * @return number of selected pixels
+     */
+    public long getCoverage() { return coveredAbove[height]; }
+    
+    /**
+     * @param y row
+     * @return index in getRuns() of the row's first run start
+     */
+    public int rowStart(int y) { return rowStart[y]; }
+    
+    /**
+     * @param y row
+     * @return index in getRuns() just past the row's last run end
+     */
+    public int rowEnd(int y) { return rowStart[y + 1]; }
+    
+    /**
+     * @return run bounds, start and end (exclusive) pairs; not to be
+     * modified
+     */
+    public int[] getRuns() { return runs; }
+    
+    /**
+     * @param pixels number of selected pixels, 0 to getCoverage()
+     * @return first row with at least that many selected pixels above it,
+     * for splitting work into bands of equal area
+     */
+    public int rowAtCoverage(long pixels) {
+        int lo = 0, hi = height;
+        
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            
+            if (coveredAbove[mid] < pixels) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        
+        return lo;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private static RegionMask fromPixels(BufferedImage image, int threshold, PixelWeight weight) {
+        if (threshold < 1 || threshold > 255) {
+            throw new IllegalArgumentException("Threshold must be between 1 and 255");
+        }
+        
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = BufferPool.shared().borrowInts(width);
+        Builder builder = new Builder(width, height);
+        
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            
+            int start = -1;
+            
+            for (int x = 0; x < width; x++) {
+                boolean selected = weight.of(row[x]) >= threshold;
+                
+                if (selected && start < 0) {
+                    start = x;
+                } else if (!selected && start >= 0) {
+                    builder.add(start, x);
+                    start = -1;
+                }
+            }
+            
+            if (start >= 0) builder.add(start, width);
+            
+            builder.endRow();
+        }
+        
+        BufferPool.shared().release(row);
+        
+        return builder.build();
+    }
+    
+    @FunctionalInterface
+    private interface PixelWeight {
+        int of(int argb);
+    }
+    
+    private static final class Builder {
+        private final int width;
+        private final int height;
+        private final int[] rowStart;
+        private int[] runs = new int[64];
+        private int size = 0;
+        private int row = 0;
+        
+        Builder(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.rowStart = new int[height + 1];
+        }
+        
+        void add(int start, int end) {
+            if (size + 2 > runs.length) runs = Arrays.copyOf(runs, runs.length * 2);
+            
+            runs[size++] = start;
+            runs[size++] = end;
+        }
+        
+        void endRow() {
+            rowStart[++row] = size;
+        }
+        
+        RegionMask build() {
+            return new RegionMask(width, height, rowStart, Arrays.copyOf(runs, size));
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package Palette;
+
+import Data.ColorData;
+
+import FileManager.FrameSequence;
+import FileManager.SequenceWriter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+Recolors every frame of an animation or numbered sequence with one palette.
+
+Quantization is calibrated once, on frames sampled across the whole
+sequence: gray levels are placed on their combined luminance histogram, or
+the full-color palette is extracted from a mosaic of them. Every frame then
+goes through the same fixed thresholds, so a color lands on the same level in
+every frame and flat areas do not flicker the way per-frame quantization
+would make them.
+
+Frames are mapped straight to one level index per pixel, and the index plane
+is wrapped in an IndexColorModel holding the new colors, so recoloring costs
+nothing beyond quantizing and palette PNGs or GIFs encode from bytes. Workers
+take frames in turn, one per core, each decoding, mapping and encoding its
+own. GIF output is one stream, so finished frames wait in a small reorder
+window and are written in order; workers stop decoding ahead when the window
+is full.
+*/
+public class SequenceRecolor {
+    private static final int SAMPLE_FRAMES = 16;
+    private static final int SAMPLE_SIDE = 256;
+    
+    // Pixels below this alpha are transparent in indexed output
+    static final int ALPHA_THRESHOLD = 128;
+    
+    // One index is kept for transparent pixels
+    public static final int MAX_LEVELS = 255;
+    
+    private final int colorLevels;
+    private final boolean rangeQ;
+    private final QuantizationMode mode;
+    
+    private ColorData[] palette;
+    private int[] grayToLevel;
+    private NearestColorIndex colorIndex;
+    
+    /**
+     * @param colorLevels number of levels, 2 to MAX_LEVELS
+     * @param rangeQ stretch evenly spaced levels over the sequence's range
+     * @param mode quantization mode
+     */
+    public SequenceRecolor(int colorLevels, boolean rangeQ, QuantizationMode mode) {
+        if (colorLevels < 2 || colorLevels > MAX_LEVELS) {
+            throw new IllegalArgumentException("Levels must be between 2 and " + MAX_LEVELS);
+        }
+        
+        this.colorLevels = colorLevels;
+        this.rangeQ = rangeQ;
+        this.mode = mode;
+    }
+    
+    /**
+     * Fix the quantization for the whole sequence from up to SAMPLE_FRAMES
+     * frames spread evenly over it.
+     *
+     * @param sequence source frames
+     * @return OKLCh color of every level
+     * @throws IOException if a sampled frame cannot be decoded
+     */
+    public ColorData[] calibrate(FrameSequence sequence) throws IOException {
+        long startTime = System.currentTimeMillis();
+        
+        BufferedImage mosaic = sampleMosaic(sequence);
+        
+        if (mode.isFullColor()) {
+            palette = new PaletteExtractor().extract(mosaic, colorLevels, mode);
+            
+            ColorData[] lab = new ColorData[palette.length];
+            
+            for (int i = 0; i < lab.length; i++) {
+                lab[i] = palette[i].oklchToOklab();
+            }
+            
+            colorIndex = new NearestColorIndex(lab);
+            grayToLevel = null;
+        } else {
+            int[] histogram = ImageHistogram.compute(mosaic).getLuminance();
+            int[] bounds = switch (mode) {
+                case EQUAL_POPULATION -> LevelPlacement.equalPopulation(histogram, colorLevels);
+                case OTSU -> LevelPlacement.otsu(histogram, colorLevels);
+                case LLOYD_MAX -> LevelPlacement.lloydMax(histogram, colorLevels);
+                default -> evenBounds(histogram);
+            };
+            
+            // Evenly spaced levels keep the default ramp, as for still images
+            int[] grays = mode.isAdaptive()
+                    ? LevelPlacement.representatives(histogram, bounds)
+                    : evenRamp();
+            
+            grayToLevel = new int[ImageHistogram.LEVELS];
+            palette = new ColorData[colorLevels];
+            
+            for (int k = 0; k < colorLevels; k++) {
+                for (int v = bounds[k]; v < bounds[k + 1]; v++) {
+                    grayToLevel[v] = k;
+                }
+                
+                palette[k] = new ColorData(grays[k], grays[k], grays[k]).rgbToOklab().oklabToOklch();
+            }
+            
+            colorIndex = null;
+        }
+        
+        long endTime = System.currentTimeMillis();
+        System.out.println("Sequence calibration (" + mode.getLabel() + ") TIME: " + (endTime - startTime) + "ms");
+        
+        return palette;
+    }
+    
+    /**
+     * @return OKLCh color of every level, or null before calibrate()
+     */
+    public ColorData[] getPalette() {
+        return palette;
+    }
+    
+    /**
+     * Quantize one frame with the calibrated thresholds and show it with the
+     * given colors.
+     *
+     * @param frame TYPE_INT_ARGB frame
+     * @param colorModel model from colorModel()
+     * @return TYPE_BYTE_INDEXED frame
+     */
+    public BufferedImage indexFrame(BufferedImage frame, IndexColorModel colorModel) {
+        requireCalibrated();
+        
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        byte[] plane = new byte[width * height];
+        
+        for (int i = 0; i < plane.length; i++) {
+            plane[i] = (byte) level(pixels[i]);
+        }
+        
+        WritableRaster raster = Raster.createInterleavedRaster(
+                new DataBufferByte(plane, plane.length), width, height, width, 1, new int[]{0}, null);
+        
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+    
+    /**
+     * @param colors new OKLCh color of every level
+     * @return 8-bit palette of the colors, plus a transparent entry after
+     * them
+     */
+    public IndexColorModel colorModel(ColorData[] colors) {
+        requireCalibrated();
+        
+        // Extraction may find fewer colors than asked for in flat footage
+        int n = palette.length;
+        
+        if (colors.length != n) {
+            throw new IllegalArgumentException("Expected " + n + " colors, got " + colors.length);
+        }
+        
+        int[] lut = IndexedImage.lut(colors);
+        byte[] r = new byte[n + 1];
+        byte[] g = new byte[n + 1];
+        byte[] b = new byte[n + 1];
+        
+        for (int i = 0; i < n; i++) {
+            r[i] = (byte) (lut[i] >> 16);
+            g[i] = (byte) (lut[i] >> 8);
+            b[i] = (byte) lut[i];
+        }
+        
+        return new IndexColorModel(8, n + 1, r, g, b, n);
+    }
+    
+    /**
+     * Recolor every frame and write it out.
+     *
+     * @param sequence source frames
+     * @param colors new OKLCh color of every level
+     * @param out destination
+     * @return number of frames written
+     * @throws IOException if a frame cannot be read or written
+     */
+    public int recolor(FrameSequence sequence, ColorData[] colors, SequenceWriter out) throws IOException {
+        requireCalibrated();
+        
+        long startTime = System.currentTimeMillis();
+        
+        IndexColorModel colorModel = colorModel(colors);
+        int frames = sequence.size();
+        int threads = Math.max(1, Math.min(frames, Runtime.getRuntime().availableProcessors()));
+        
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        InOrder inOrder = out.isOrdered() ? new InOrder(out, threads * 2) : null;
+        
+        Callable<Void> worker = () -> {
+            try {
+                while (true) {
+                    int index;
+                    BufferedImage frame;
+                    
+                    if (sequence.isRandomAccess()) {
+                        index = next.getAndIncrement();
+                        
+                        if (index >= frames) break;
+                        
+                        frame = sequence.read(index);
+                    } else {
+                        synchronized (sequence) {
+                            index = next.getAndIncrement();
+                            
+                            if (index >= frames) break;
+                            
+                            frame = sequence.read(index);
+                        }
+                    }
+                    
+                    BufferedImage indexed = indexFrame(frame, colorModel);
+                    
+                    if (inOrder != null) {
+                        inOrder.put(index, indexed, sequence.getDelay(index));
+                    } else {
+                        out.write(index, indexed, sequence.getDelay(index));
+                    }
+                }
+            } catch (Throwable e) {
+                // Stop the other workers, including any waiting on this frame
+                failure.compareAndSet(null, e);
+                next.set(frames);
+                
+                if (inOrder != null) inOrder.abort();
+                
+                throw e;
+            }
+            
+            return null;
+        };
+        
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        
+        try {
+            List<Future<Void>> running = new ArrayList<>(threads);
+            
+            for (int t = 0; t < threads; t++) {
+                running.add(pool.submit(worker));
+            }
+            
+            for (Future<Void> f : running) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    // The first failure is kept; later ones are the aborts
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        Throwable e = failure.get();
+        
+        if (e instanceof IOException io) throw io;
+        if (e instanceof RuntimeException re) throw re;
+        if (e instanceof Error error) throw error;
+        if (e != null) throw new IOException("Sequence recolor interrupted", e);
+        
+        long endTime = System.currentTimeMillis();
+        long elapsed = Math.max(1, endTime - startTime);
+        System.out.println("Sequence of " + frames + " frames TIME: " + elapsed + "ms ("
+                + String.format("%.1f", frames * 1000.0 / elapsed) + " fps)");
+        
+        return frames;
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private int level(int argb) {
+        if ((argb >>> 24) < ALPHA_THRESHOLD) return palette.length;
+        
+        if (colorIndex != null) return colorIndex.nearestRgb(argb);
+        
+        return grayToLevel[ImageHistogram.luminanceOf((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF)];
+    }
+    
+    private void requireCalibrated() {
+        if (palette == null) {
+            throw new IllegalStateException("Call calibrate() first");
+        }
+    }
+    
+    // Every step-th pixel of the sampled frames, stacked vertically
+    private BufferedImage sampleMosaic(FrameSequence sequence) throws IOException {
+        int frames = sequence.size();
+        int samples = Math.min(SAMPLE_FRAMES, frames);
+        int step = Math.max(1, (Math.max(sequence.getWidth(), sequence.getHeight()) + SAMPLE_SIDE - 1) / SAMPLE_SIDE);
+        int w = (sequence.getWidth() + step - 1) / step;
+        int h = (sequence.getHeight() + step - 1) / step;
+        
+        BufferedImage mosaic = new BufferedImage(w, h * samples, BufferedImage.TYPE_INT_ARGB);
+        int[] out = ((DataBufferInt) mosaic.getRaster().getDataBuffer()).getData();
+        
+        for (int s = 0; s < samples; s++) {
+            int index = samples == 1 ? 0 : (int) ((long) s * (frames - 1) / (samples - 1));
+            BufferedImage frame = sequence.read(index);
+            int[] pixels = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+            int frameWidth = frame.getWidth();
+            
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    out[(s * h + y) * w + x] = pixels[y * step * frameWidth + x * step];
+                }
+            }
+        }
+        
+        return mosaic;
+    }
+    
+    private int[] evenBounds(int[] histogram) {
+        int lo = 0, hi = ImageHistogram.LEVELS - 1;
+        
+        if (rangeQ) {
+            while (lo < hi && histogram[lo] == 0) lo++;
+            while (hi > lo && histogram[hi] == 0) hi--;
+        }
+        
+        int[] bounds = new int[colorLevels + 1];
+        
+        for (int k = 1; k < colorLevels; k++) {
+            bounds[k] = lo + (int) ((long) k * (hi - lo + 1) / colorLevels);
+        }
+        
+        bounds[colorLevels] = ImageHistogram.LEVELS;
+        
+        // A range narrower than the level count still keeps every bound
+        // inside the 256 gray values
+        return LevelPlacement.enforceIncreasing(bounds);
+    }
+    
+    private int[] evenRamp() {
+        int[] grays = new int[colorLevels];
+        float delta = 255f / (colorLevels - 1);
+        
+        for (int i = 0; i < colorLevels; i++) {
+            grays[i] = Math.round(i * delta);
+        }
+        
+        return grays;
+    }
+    
+    // Writes frames in index order, holding at most window finished frames
+    private static final class InOrder {
+        private final SequenceWriter out;
+        private final BufferedImage[] frames;
+        private final int[] delays;
+        private int next = 0;
+        private boolean aborted = false;
+        
+        InOrder(SequenceWriter out, int window) {
+            this.out = out;
+            this.frames = new BufferedImage[window];
+            this.delays = new int[window];
+        }
+        
+        synchronized void put(int index, BufferedImage frame, int delay) throws IOException, InterruptedException {
+            while (index >= next + frames.length && !aborted) {
+                wait();
+            }
+            
+            if (aborted) throw new IOException("Sequence recolor aborted");
+            
+            frames[index % frames.length] = frame;
+            delays[index % frames.length] = delay;
+            
+            while (frames[next % frames.length] != null) {
+                int slot = next % frames.length;
+                
+                out.write(next, frames[slot], delays[slot]);
+                frames[slot] = null;
+                next++;
+            }
+            
+            notifyAll();
+        }
+        
+        synchronized void abort() {
+            aborted = true;
+            notifyAll();
+        }
+    }
+}
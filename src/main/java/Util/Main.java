@@ -12,11 +12,41 @@ User inputs:
     Save png file to the same folder as the original file;
 */
 
+import FileManager.BufferPool;
 import Windows.DropDownWindow;
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class Main {
+    private static final int DAEMON_QUEUE_PER_THREAD = 16;
+    
     public static void main(String[] args) {
+        Path daemonSocket = null;
+        
+        for (String arg : args) {
+            // Log buffer pool hits and misses after every batch
+            if (arg.equals("--pool-stats")) System.setProperty(BufferPool.STATS_PROPERTY, "true");
+            
+            // Serve render jobs over a Unix socket instead of opening the UI
+            if (arg.equals("--daemon")) daemonSocket = RenderDaemon.defaultSocketPath();
+            if (arg.startsWith("--daemon=")) daemonSocket = Paths.get(arg.substring("--daemon=".length()));
+        }
+        
+        if (daemonSocket != null) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            
+            try (RenderDaemon daemon = new RenderDaemon(daemonSocket, threads, threads * DAEMON_QUEUE_PER_THREAD)) {
+                daemon.serve();
+            } catch (IOException e) {
+                System.err.println("Render daemon failed: " + e.getMessage());
+                System.exit(1);
+            }
+            
+            return;
+        }
+        
         SwingUtilities.invokeLater(() -> {
             DropDownWindow dropDownWindow = new DropDownWindow();
         });
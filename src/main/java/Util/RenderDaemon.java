@@ -0,0 +1,486 @@
+package Util;
+
+import Data.ColorData;
+import Data.NamedPalette;
+
+import FileManager.BufferPool;
+import FileManager.PaletteIO;
+
+import Palette.BlendMode;
+import Palette.Operations;
+import Palette.QuantizationMode;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Render daemon: keeps one JVM, with its loaded classes, JIT-compiled code and
+shared caches, serving render jobs over a Unix domain socket. A client sends
+one request per line and may pipeline as many as it likes on one connection;
+every render is answered once it finishes, so answers can come back out of
+order and carry the request's id. A client may shut down its sending side
+after the last request; the connection stays open until every render it
+asked for has answered.
+
+Requests are a command followed by tab-separated key=value fields:
+
+    render  id=7  in=/a/b.png  out=/a/b_4.png  levels=4  mode=OTSU
+            range=false  colors=#1B1B3A,#693668,#A74482,#F84AA7
+    render  id=8  in=/a/c.jpg  out=/a/c_8.png  levels=8  palette=/a/dusk.gpl
+            roi=0,0,640,480;1200,800,256,256  mask=/a/c_mask.png
+            blend=LUMINOSITY  opacity=0.6
+    sequence  id=9  in=/a/shot_0001.png  out=/a/recolored  levels=6
+    sweep  id=10  in=/a/b.png  out=/a/b.gif  levels=5  frames=90  delay=40
+           palettes=/a/dawn.gpl,/a/dusk.gpl
+    ping | stats | shutdown
+
+"sequence" takes an animated GIF or any frame of a numbered PNG sequence and
+writes a GIF when "out" ends in ".gif", or a folder of PNG frames otherwise.
+A sequence occupies one worker slot while its frames use every core.
+
+"sweep" quantizes one image and animates its palette through keyframes: every
+palette of the listed files in order, or "keys" as hex lists separated by
+";". Frames go to a GIF or a folder of PNGs, as for "sequence".
+
+"colors" and "palette" recolor the first levels of the quantized image;
+without them the quantized image is saved. "roi" (x,y,width,height
+rectangles separated by ";") and "mask" (an image whose white pixels are
+selected, or "alpha" for the source's visible pixels) limit the recolor to a
+region, and the rest stays quantized. "blend" (MIX, LUMINOSITY or COLOR)
+lays the new colors over the source as a grade, at "opacity" (default 1).
+Answers are tab-separated too:
+
+    ok     id  milliseconds  output
+    error  id  message
+    busy   id
+
+Renders run on a fixed pool of one worker per core behind a bounded queue.
+When the queue is full the job is refused with "busy" straight away instead
+of piling up memory, and the client decides when to retry.
+*/
+public final class RenderDaemon implements AutoCloseable {
+    private static final int MAX_LINE = 64 * 1024;
+    
+    private final Path socketPath;
+    private final ServerSocketChannel server;
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "render-connection");
+        thread.setDaemon(true);
+        
+        return thread;
+    });
+    
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    
+    private volatile boolean running = true;
+    
+    /**
+     * Bind the daemon's socket. A socket file left behind by a daemon that
+     * is no longer running is replaced.
+     *
+     * @param socketPath path of the Unix domain socket
+     * @param threads number of concurrent renders
+     * @param queueCapacity renders waiting for a worker before jobs are
+     * refused
+     * @throws IOException if the socket cannot be bound or another daemon is
+     * listening on it
+     */
+    public RenderDaemon(Path socketPath, int threads, int queueCapacity) throws IOException {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Threads and queue capacity must be at least 1");
+        }
+        
+        this.socketPath = socketPath;
+        
+        if (socketPath.getParent() != null) Files.createDirectories(socketPath.getParent());
+        
+        removeStaleSocket(socketPath);
+        
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socketPath));
+        
+        workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "render-worker");
+                    thread.setDaemon(true);
+                    
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+    
+    /**
+     * @return socket in the user's home directory
+     */
+    public static Path defaultSocketPath() {
+        return Paths.get(System.getProperty("user.home"), ".colorpalette", "render.sock");
+    }
+    
+    /**
+     * Accept connections until a shutdown request arrives or the daemon is
+     * closed. The caller closes the daemon afterwards.
+     */
+    public void serve() {
+        System.out.println("Render daemon listening on " + socketPath + " with "
+                + workers.getMaximumPoolSize() + " workers");
+        
+        while (running) {
+            try {
+                SocketChannel client = server.accept();
+                connections.execute(() -> handle(client));
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                System.err.println("Render daemon accept failed: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Stop accepting jobs, let queued renders finish and remove the socket.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        workers.shutdown();
+        
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        connections.shutdownNow();
+        Files.deleteIfExists(socketPath);
+        
+        System.out.println("Render daemon stopped: " + stats());
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private void handle(SocketChannel client) {
+        Connection connection = new Connection(client);
+        
+        try {
+            String line;
+            
+            while ((line = connection.readLine()) != null) {
+                if (!line.isBlank() && !dispatch(line, connection)) break;
+            }
+        } catch (IOException e) {
+            // Client went away; its running renders still finish
+        } finally {
+            // Renders still in flight answer first, and the last one closes
+            connection.endOfInput();
+        }
+    }
+    
+    // Returns false when the daemon is shutting down
+    private boolean dispatch(String line, Connection connection) throws IOException {
+        String[] parts = line.split("\t");
+        String command = parts[0].strip();
+        
+        switch (command) {
+            case "ping" -> connection.send("pong");
+            case "stats" -> connection.send("stats\t" + stats());
+            case "shutdown" -> {
+                connection.send("bye");
+                running = false;
+                
+                // Unblocks accept(); serve() returns and its caller closes
+                server.close();
+                
+                return false;
+            }
+            case "render", "sequence", "sweep" -> submit(command, parts, connection);
+            default -> connection.send("error\t-\tUnknown command: " + command);
+        }
+        
+        return true;
+    }
+    
+    private void submit(String command, String[] parts, Connection connection) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        
+        for (int i = 1; i < parts.length; i++) {
+            int eq = parts[i].indexOf('=');
+            
+            if (eq > 0) fields.put(parts[i].substring(0, eq).strip(), parts[i].substring(eq + 1).strip());
+        }
+        
+        String id = fields.getOrDefault("id", "-");
+        
+        connection.begin();
+        
+        try {
+            workers.execute(() -> render(command, id, fields, connection));
+        } catch (RejectedExecutionException e) {
+            connection.finish();
+            refused.incrementAndGet();
+            connection.send("busy\t" + id);
+        }
+    }
+    
+    private void render(String command, String id, Map<String, String> fields, Connection connection) {
+        long startTime = System.currentTimeMillis();
+        
+        // Errors still propagate to the pool, but the client gets an answer
+        String answer = "error\t" + id + "\tInternal error";
+        
+        try {
+            String in = required(fields, "in");
+            String out = required(fields, "out");
+            int levels = Integer.parseInt(fields.getOrDefault("levels", "4"));
+            
+            if (levels < 2 || levels > 256) {
+                throw new IllegalArgumentException("Levels must be between 2 and 256: " + levels);
+            }
+            
+            QuantizationMode mode = QuantizationMode.valueOf(fields.getOrDefault("mode", "GRAYSCALE"));
+            boolean range = Boolean.parseBoolean(fields.getOrDefault("range", "false"));
+            
+            switch (command) {
+                case "sequence" -> new Operations().renderSequence(in, out, levels, range, mode, colors(fields));
+                case "sweep" -> new Operations().renderSweep(in, out, levels, range, mode, keyframes(fields),
+                        Integer.parseInt(fields.getOrDefault("frames", "60")),
+                        Integer.parseInt(fields.getOrDefault("delay", "40")));
+                default -> new Operations().renderFile(in, out, levels, range, mode, colors(fields),
+                        regions(fields), fields.get("mask"),
+                        fields.containsKey("blend") ? BlendMode.valueOf(fields.get("blend")) : null,
+                        Float.parseFloat(fields.getOrDefault("opacity", "1")));
+            }
+            
+            completed.incrementAndGet();
+            answer = "ok\t" + id + "\t" + (System.currentTimeMillis() - startTime) + "\t" + out;
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            answer = "error\t" + id + "\t" + String.valueOf(e.getMessage()).replace('\t', ' ').replace('\n', ' ');
+        } finally {
+            try {
+                connection.send(answer);
+            } catch (IOException e) {
+                // Client went away before its answer
+            }
+            
+            connection.finish();
+        }
+    }
+    
+    private static ColorData[] colors(Map<String, String> fields) throws IOException {
+        if (fields.containsKey("palette")) {
+            return PaletteIO.readFirst(fields.get("palette")).toColorData();
+        }
+        
+        String list = fields.get("colors");
+        
+        if (list == null || list.isEmpty()) return null;
+        
+        return hexColors(list);
+    }
+    
+    private static List<Rectangle> regions(Map<String, String> fields) {
+        String list = fields.get("roi");
+        
+        if (list == null || list.isEmpty()) return null;
+        
+        List<Rectangle> regions = new ArrayList<>();
+        
+        for (String roi : list.split(";")) {
+            String[] v = roi.split(",");
+            
+            if (v.length != 4) {
+                throw new IllegalArgumentException("Region must be x,y,width,height: " + roi);
+            }
+            
+            regions.add(new Rectangle(Integer.parseInt(v[0].strip()), Integer.parseInt(v[1].strip()),
+                    Integer.parseInt(v[2].strip()), Integer.parseInt(v[3].strip())));
+        }
+        
+        return regions;
+    }
+    
+    private static List<ColorData[]> keyframes(Map<String, String> fields) throws IOException {
+        List<ColorData[]> keyframes = new ArrayList<>();
+        
+        if (fields.containsKey("palettes")) {
+            for (String path : fields.get("palettes").split(",")) {
+                for (NamedPalette palette : PaletteIO.readAll(path.strip())) {
+                    keyframes.add(palette.toColorData());
+                }
+            }
+        } else {
+            for (String list : required(fields, "keys").split(";")) {
+                keyframes.add(hexColors(list));
+            }
+        }
+        
+        return keyframes;
+    }
+    
+    private static ColorData[] hexColors(String list) {
+        String[] hexes = list.split(",");
+        ColorData[] colors = new ColorData[hexes.length];
+        
+        for (int i = 0; i < hexes.length; i++) {
+            String h = hexes[i].strip();
+            h = h.startsWith("#") ? h.substring(1) : h;
+            
+            if (h.length() != 6) {
+                throw new IllegalArgumentException("Hex must be 6 digits: " + hexes[i]);
+            }
+            
+            int rgb = Integer.parseInt(h, 16);
+            colors[i] = new ColorData((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF).rgbToOklab().oklabToOklch();
+        }
+        
+        return colors;
+    }
+    
+    private static String required(Map<String, String> fields, String key) {
+        String value = fields.get(key);
+        
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing " + key + "=");
+        }
+        
+        return value;
+    }
+    
+    private String stats() {
+        return "completed=" + completed.get()
+                + "\tfailed=" + failed.get()
+                + "\tbusy=" + refused.get()
+                + "\tactive=" + workers.getActiveCount()
+                + "\tqueued=" + workers.getQueue().size()
+                + "\tpool=" + BufferPool.shared();
+    }
+    
+    private static void removeStaleSocket(Path socketPath) throws IOException {
+        if (!Files.exists(socketPath)) return;
+        
+        boolean listening;
+        
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socketPath)).close();
+            listening = true;
+        } catch (IOException e) {
+            listening = false;
+        }
+        
+        if (listening) {
+            throw new IOException("A render daemon is already listening on " + socketPath);
+        }
+        
+        Files.delete(socketPath);
+    }
+    
+    // Reads run on the connection's thread while renders answer from the
+    // workers; a socket channel allows one reader and one writer at a time.
+    // The channel closes once input has ended and no render is pending.
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(8192);
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean inputEnded;
+        private byte[] line = new byte[256];
+        
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            in.flip();
+        }
+        
+        String readLine() throws IOException {
+            int length = 0;
+            
+            while (true) {
+                if (!in.hasRemaining()) {
+                    in.clear();
+                    int n = channel.read(in);
+                    in.flip();
+                    
+                    if (n < 0) {
+                        return length > 0 ? decode(length) : null;
+                    }
+                }
+                
+                while (in.hasRemaining()) {
+                    byte b = in.get();
+                    
+                    if (b == '\n') return decode(length);
+                    
+                    if (length == line.length) {
+                        if (length >= MAX_LINE) throw new IOException("Request line too long");
+                        
+                        line = Arrays.copyOf(line, length * 2);
+                    }
+                    
+                    line[length++] = b;
+                }
+            }
+        }
+        
+        synchronized void send(String answer) throws IOException {
+            ByteBuffer out = ByteBuffer.wrap((answer + "\n").getBytes(StandardCharsets.UTF_8));
+            
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+        
+        void begin() {
+            pending.incrementAndGet();
+        }
+        
+        void finish() {
+            if (pending.decrementAndGet() == 0 && inputEnded) closeQuietly();
+        }
+        
+        void endOfInput() {
+            inputEnded = true;
+            
+            if (pending.get() == 0) closeQuietly();
+        }
+        
+        private void closeQuietly() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing is left to answer
+            }
+        }
+        
+        private String decode(int length) {
+            int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+            
+            return new String(line, 0, end, StandardCharsets.UTF_8);
+        }
+    }
+}
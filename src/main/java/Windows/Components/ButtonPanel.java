@@ -1,39 +1,43 @@
 package Windows.Components;
 
 import javax.swing.*;
-import javax.swing.border.Border;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.util.ArrayList;
-import java.util.List;
-import javax.swing.border.StrokeBorder;
-
-import net.miginfocom.swing.MigLayout;
+import java.util.Arrays;
 
+/*
+Swatches are painted by this one component instead of one JButton each, so
+even 4096 colors cost no layout work. Cell edges are spread over the panel
+size with integer division, which keeps the grid gapless at any size, and
+every change repaints only the cells it affects.
+*/
 public class ButtonPanel extends JPanel {
     public Color bg_color = Color.BLACK;
     
-    private final List<JButton> buttons = new ArrayList<>();
-    
     private int selectedIndex = 0;
+    private int hoverIndex = -1;
     private final int count;
     private final int cols;
     private final int rows;
     
+    // Colors currently shown, and the colors the swatches return to on reset
+    private final Color[] colors;
     private final Color[] initialColors;
+    private final String[] tooltips;
     
     private final int borderThickness = 3;
     private final float[] dashPattern = new float[] {5f, 5f};
-    private final Border defaultBorder = BorderFactory.createEmptyBorder();
     
     private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
     
     public ButtonPanel(Color[] bgColors) {
         this.count = bgColors.length;
+        this.colors = bgColors.clone();
         this.initialColors = bgColors.clone();
+        this.tooltips = new String[count];
         
         setBackground(bg_color);
         
@@ -42,77 +46,37 @@ public class ButtonPanel extends JPanel {
         this.cols = (int) Math.ceil(Math.sqrt(count));
         this.rows = (int) Math.ceil((double) count / cols);
         
-        setLayout(new MigLayout("wrap " + cols + ", insets 0, gap 0"));
-        
-        for (int i = 0; i < count; i++) {
-            JButton btn = createButton(i);
-            buttons.add(btn);
-            add(btn, "grow, push");
-        }
-    }
-    
-    private JButton createButton(int idx) {
-        JButton btn = new JButton();
-        btn.setFocusPainted(false);
-        btn.setBackground(initialColors[idx]);
-        
-        if (idx == selectedIndex) {
-            Color bg = btn.getBackground();
-            Color inverse = new Color(255 - bg.getRed(), 255 - bg.getGreen(), 255 - bg.getBlue());
-            btn.setBorder(BorderFactory.createLineBorder(inverse, borderThickness));
-        } else {
-            btn.setBorder(defaultBorder);
-        }
-        
-        btn.setPreferredSize(new Dimension(10, 10));
-        configureListeners(btn, idx);
+        setPreferredSize(new Dimension(cols * 10, rows * 10));
+        setOpaque(true);
+        ToolTipManager.sharedInstance().registerComponent(this);
         
-        return btn;
+        configureListeners();
     }
     
-    private void configureListeners(JButton btn, int idx) {
-        btn.addMouseListener(new MouseAdapter() {
+    private void configureListeners() {
+        MouseAdapter mouse = new MouseAdapter() {
             @Override
-            public void mouseEntered(MouseEvent e) {
-                Color bg = btn.getBackground();
-                
-                Color inverse = new Color(255 - bg.getRed(), 255 - bg.getGreen(), 255 - bg.getBlue());
-                BasicStroke bs = new BasicStroke(borderThickness, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1.0f, dashPattern, 0f);
-                Border dashedInverse = new StrokeBorder(bs, inverse);
-                
-                btn.setBorder(dashedInverse);
+            public void mouseMoved(MouseEvent e) {
+                setHover(indexAt(e.getX(), e.getY()));
             }
             
             @Override
             public void mouseExited(MouseEvent e) {
-                if (idx == selectedIndex) {
-                    Color bg = btn.getBackground();
-                    Color inverse = new Color(255 - bg.getRed(), 255 - bg.getGreen(), 255 - bg.getBlue());
-                    btn.setBorder(BorderFactory.createLineBorder(inverse, borderThickness));
-                } else {
-                    btn.setBorder(defaultBorder);
-                }
+                setHover(-1);
             }
-        });
-
-        btn.addActionListener(e -> {
-            if (idx == selectedIndex) return;
-            
-            int old = selectedIndex;
             
-            if (old >= 0) {
-                JButton prev = buttons.get(old);
-                prev.setBackground(initialColors[old]);
-                prev.setBorder(defaultBorder);
+            @Override
+            public void mousePressed(MouseEvent e) {
+                int idx = indexAt(e.getX(), e.getY());
+                
+                if (idx >= 0) {
+                    moveSelection(idx);
+                }
             }
-            
-            selectedIndex = idx;
-            Color bg = btn.getBackground();
-            Color inverse = new Color(255 - bg.getRed(), 255 - bg.getGreen(), 255 - bg.getBlue());
-            btn.setBorder(BorderFactory.createLineBorder(inverse, borderThickness));
-            
-            pcs.firePropertyChange("selectedIndex", old, idx);
-        });
+        };
+        
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
     }
     
     @Override
@@ -126,64 +90,87 @@ public class ButtonPanel extends JPanel {
     
     public void setButtonBackground(int index, Color color) {
         if (index >= 0 && index < count) {
-            buttons.get(index).setBackground(color);
-            buttons.get(index).repaint();
+            colors[index] = color;
+            repaintCell(index);
         }
     }
     
     public void setAllButtonsBackground(Color color) {
-        buttons.forEach(b -> b.setBackground(color));
+        Arrays.fill(colors, color);
         repaint();
     }
     
     public void resetAllButtons() {
         selectedIndex = -1;
         
-        for (int i = 0; i < count; i++) {
-            JButton btn = buttons.get(i);
-            btn.setBackground(initialColors[i]);
-            btn.setBorder(defaultBorder);
-        }
+        System.arraycopy(initialColors, 0, colors, 0, count);
         
         repaint();
     }
     
     public int getButtonCount() { return count; }
     
+    /**
+     * Shows, as each swatch's tooltip, the share of the image covered by that
+     * palette entry.
+     *
+     * @param pixelCounts number of pixels mapped to each entry
+     */
+    public void setCoverage(long[] pixelCounts) {
+        if (pixelCounts == null || pixelCounts.length != count)
+            throw new IllegalArgumentException("pixelCounts must have length " + count);
+        
+        long total = 0;
+        
+        for (long c : pixelCounts) total += c;
+        
+        for (int i = 0; i < count; i++) {
+            double share = total == 0 ? 0 : 100.0 * pixelCounts[i] / total;
+            tooltips[i] = String.format("%.2f%% (%d px)", share, pixelCounts[i]);
+        }
+    }
+    
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        int idx = indexAt(e.getX(), e.getY());
+        
+        return idx >= 0 ? tooltips[idx] : null;
+    }
+    
     public void updateColor(Color newColor, int idx) {
         initialColors[idx] = newColor;
-        buttons.get(idx).setBackground(newColor);
+        setButtonBackground(idx, newColor);
     }
     
     public void updateColors(Color[] newColors) {
         if (newColors == null || newColors.length != count)
             throw new IllegalArgumentException("newColors must have length " + count);
         
-        System.arraycopy(newColors, 0, initialColors, 0, count);
-        
-        for (int i = 0; i < count; i++)
-            buttons.get(i).setBackground(initialColors[i]);
-        
-        revalidate(); repaint();
+        for (int i = 0; i < count; i++) {
+            initialColors[i] = newColors[i];
+            
+            // Unchanged swatches are left alone
+            if (!newColors[i].equals(colors[i])) {
+                colors[i] = newColors[i];
+                repaintCell(i);
+            }
+        }
     }
     
     private void moveSelection(int next) {
         if (next == selectedIndex) {
             return;
         }
-
+        
         int old = selectedIndex;
-        buttons.get(old).setBorder(defaultBorder);
-
         selectedIndex = next;
         
-        Color bg = buttons.get(selectedIndex).getBackground();
-        Color inverse = new Color(255 - bg.getRed(), 255 - bg.getGreen(), 255 - bg.getBlue());
-        buttons.get(selectedIndex).setBorder(BorderFactory.createLineBorder(inverse, borderThickness));
+        if (old >= 0) repaintCell(old);
+        repaintCell(next);
         
         pcs.firePropertyChange("selectedIndex", old, selectedIndex);
     }
-
+    
     public void moveLeft() {
         int col = selectedIndex % cols;
         
@@ -191,7 +178,7 @@ public class ButtonPanel extends JPanel {
             moveSelection(selectedIndex - 1);
         }
     }
-
+    
     public void moveRight() {
         int col = selectedIndex % cols;
         int row = selectedIndex / cols;
@@ -200,11 +187,11 @@ public class ButtonPanel extends JPanel {
                 ? (count - 1) % cols
                 : cols - 1);
         
-        if (col < maxColInRow) {
+        if (col < maxColInRow && selectedIndex + 1 < count) {
             moveSelection(selectedIndex + 1);
         }
     }
-
+    
     public void moveUp() {
         int row = selectedIndex / cols;
         
@@ -218,7 +205,7 @@ public class ButtonPanel extends JPanel {
             moveSelection(target);
         }
     }
-
+    
     public void moveDown() {
         int row = selectedIndex / cols;
         
@@ -232,4 +219,104 @@ public class ButtonPanel extends JPanel {
             moveSelection(target);
         }
     }
-}
\ No newline at end of file
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Painting
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        
+        Graphics2D g2 = (Graphics2D) g;
+        Rectangle clip = g.getClipBounds();
+        
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        
+        // Only the cells inside the dirty region are visited
+        int colStart = Math.max(0, colAt(clip.x));
+        int colEnd = Math.min(cols - 1, colAt(clip.x + clip.width - 1));
+        int rowStart = Math.max(0, rowAt(clip.y));
+        int rowEnd = Math.min(rows - 1, rowAt(clip.y + clip.height - 1));
+        
+        for (int row = rowStart; row <= rowEnd; row++) {
+            for (int col = colStart; col <= colEnd; col++) {
+                int idx = row * cols + col;
+                
+                if (idx >= count) break;
+                
+                Rectangle r = cellBounds(idx);
+                
+                g2.setColor(colors[idx]);
+                g2.fillRect(r.x, r.y, r.width, r.height);
+                
+                if (idx == selectedIndex || idx == hoverIndex) {
+                    paintOutline(g2, r, colors[idx], idx != selectedIndex);
+                }
+            }
+        }
+    }
+    
+    private void paintOutline(Graphics2D g2, Rectangle r, Color bg, boolean dashed) {
+        // Thin swatches of large palettes get a thinner outline
+        int t = Math.max(1, Math.min(borderThickness, Math.min(r.width, r.height) / 4));
+        
+        Color inverse = new Color(255 - bg.getRed(), 255 - bg.getGreen(), 255 - bg.getBlue());
+        Stroke old = g2.getStroke();
+        
+        g2.setColor(inverse);
+        g2.setStroke(dashed
+                ? new BasicStroke(t, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 1.0f, dashPattern, 0f)
+                : new BasicStroke(t));
+        g2.drawRect(r.x + t / 2, r.y + t / 2, r.width - t, r.height - t);
+        g2.setStroke(old);
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private void setHover(int idx) {
+        if (idx == hoverIndex) return;
+        
+        int old = hoverIndex;
+        hoverIndex = idx;
+        
+        if (old >= 0) repaintCell(old);
+        if (idx >= 0) repaintCell(idx);
+    }
+    
+    private void repaintCell(int idx) {
+        Rectangle r = cellBounds(idx);
+        repaint(r.x, r.y, r.width, r.height);
+    }
+    
+    private Rectangle cellBounds(int idx) {
+        int col = idx % cols;
+        int row = idx / cols;
+        
+        int x0 = (int) ((long) getWidth() * col / cols);
+        int x1 = (int) ((long) getWidth() * (col + 1) / cols);
+        int y0 = (int) ((long) getHeight() * row / rows);
+        int y1 = (int) ((long) getHeight() * (row + 1) / rows);
+        
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+    
+    // Exact inverse of cellBounds: the last cell starting at or before x
+    private int colAt(int x) {
+        return getWidth() == 0 ? 0 : (int) (((x + 1L) * cols - 1) / getWidth());
+    }
+    
+    private int rowAt(int y) {
+        return getHeight() == 0 ? 0 : (int) (((y + 1L) * rows - 1) / getHeight());
+    }
+    
+    private int indexAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= getWidth() || y >= getHeight()) return -1;
+        
+        int idx = rowAt(y) * cols + colAt(x);
+        
+        return idx < count ? idx : -1;
+    }
+}
@@ -0,0 +1,296 @@
+package Windows.Components;
+
+import Data.ColorBatch;
+import Data.GamutBoundary;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.stream.IntStream;
+
+/*
+Two-dimensional OKLCh picker. CHROMA_LIGHTNESS shows chroma (x) against
+lightness (y) for the current hue; HUE_CHROMA shows a ring with hue as the
+angle and chroma as the radius for the current lightness. The plane is only
+re-rendered when the channel it depends on changes, in parallel tiles straight
+into the image's pixel array, and the gamut boundary comes from the shared
+GamutBoundary cache.
+*/
+public class ColorPlanePanel extends JComponent {
+    public enum Mode { CHROMA_LIGHTNESS, HUE_CHROMA }
+    
+    // New value is float[]{L, C, H}
+    public static final String PROP_COLOR = "color";
+    public static final String PROP_ADJUSTING = "adjusting";
+    
+    private static final int TILE = 64;
+    private static final int RING_SAMPLES = 720;
+    private static final int OUTSIDE = 0xFF1A1A1A;
+    
+    private final float maxChroma;
+    
+    private float l, c, h;
+    private Mode mode = Mode.CHROMA_LIGHTNESS;
+    
+    private BufferedImage plane;
+    private boolean dirty = true;
+    
+    private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+    
+    /**
+     * @param maxChroma chroma at the right edge, or at the rim of the ring
+     */
+    public ColorPlanePanel(float maxChroma) {
+        this.maxChroma = maxChroma;
+        
+        setPreferredSize(new Dimension(200, 200));
+        setOpaque(true);
+        setBackground(Color.BLACK);
+        setCursor(Cursor.getPredefinedCursor(Cursor.CROSSHAIR_CURSOR));
+        
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                pcs.firePropertyChange(PROP_ADJUSTING, false, true);
+                pick(e.getX(), e.getY());
+            }
+            
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                pick(e.getX(), e.getY());
+            }
+            
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                pcs.firePropertyChange(PROP_ADJUSTING, true, false);
+            }
+        };
+        
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+    }
+    
+    /**
+     * Move the marker to a color, re-rendering the plane only if the channel
+     * it is drawn for changed.
+     */
+    public void setColor(float l, float c, float h) {
+        if (mode == Mode.CHROMA_LIGHTNESS ? h != this.h : l != this.l) {
+            dirty = true;
+        }
+        
+        this.l = l;
+        this.c = c;
+        this.h = h;
+        
+        repaint();
+    }
+    
+    public void setMode(Mode mode) {
+        if (mode == this.mode) return;
+        
+        this.mode = mode;
+        dirty = true;
+        repaint();
+    }
+    
+    public Mode getMode() { return mode; }
+    
+    @Override
+    public void addPropertyChangeListener(PropertyChangeListener l) { pcs.addPropertyChangeListener(l); }
+    @Override
+    public void addPropertyChangeListener(String prop, PropertyChangeListener l) { pcs.addPropertyChangeListener(prop, l); }
+    @Override
+    public void removePropertyChangeListener(PropertyChangeListener l) { pcs.removePropertyChangeListener(l); }
+    @Override
+    public void removePropertyChangeListener(String prop, PropertyChangeListener l) { pcs.removePropertyChangeListener(prop, l); }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Painting
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        int w = getWidth(), hgt = getHeight();
+        
+        if (w <= 0 || hgt <= 0) return;
+        
+        if (plane == null || plane.getWidth() != w || plane.getHeight() != hgt) {
+            plane = new BufferedImage(w, hgt, BufferedImage.TYPE_INT_RGB);
+            dirty = true;
+        }
+        
+        if (dirty) {
+            render();
+            dirty = false;
+        }
+        
+        g.drawImage(plane, 0, 0, null);
+        
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        
+        paintBoundary(g2, w, hgt);
+        paintMarker(g2, w, hgt);
+        
+        g2.dispose();
+    }
+    
+    private void render() {
+        int w = plane.getWidth(), hgt = plane.getHeight();
+        int[] pixels = ((DataBufferInt) plane.getRaster().getDataBuffer()).getData();
+        
+        int tilesX = (w + TILE - 1) / TILE;
+        int tilesY = (hgt + TILE - 1) / TILE;
+        
+        // Values the whole render reads, fixed before the tiles start
+        Mode m = mode;
+        float fl = l;
+        int bg = getBackground().getRGB();
+        float hRad = (float) Math.toRadians(h);
+        float cos = (float) Math.cos(hRad), sin = (float) Math.sin(hRad);
+        
+        float[] boundary = m == Mode.CHROMA_LIGHTNESS
+                ? GamutBoundary.forHue(h, hgt + 1)
+                : GamutBoundary.forLightness(l, RING_SAMPLES);
+        
+        IntStream.range(0, tilesX * tilesY).parallel().forEach(tile -> {
+            int x0 = (tile % tilesX) * TILE, y0 = (tile / tilesX) * TILE;
+            int x1 = Math.min(w, x0 + TILE), y1 = Math.min(hgt, y0 + TILE);
+            
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    pixels[y * w + x] = m == Mode.CHROMA_LIGHTNESS
+                            ? planePixel(x, y, w, hgt, cos, sin, boundary)
+                            : ringPixel(x, y, w, hgt, fl, boundary, bg);
+                }
+            }
+        });
+    }
+    
+    private int planePixel(int x, int y, int w, int hgt, float cos, float sin, float[] boundary) {
+        float pc = (x + 0.5f) / w * maxChroma;
+        int row = hgt - y;
+        
+        // The cached boundary rejects most outside pixels without any math
+        if (pc > boundary[row]) return OUTSIDE;
+        
+        float pl = (float) row / hgt;
+        int argb = ColorBatch.labToArgb(pl, pc * cos, pc * sin);
+        
+        return argb == 0 ? OUTSIDE : argb;
+    }
+    
+    private int ringPixel(int x, int y, int w, int hgt, float pl, float[] boundary, int bg) {
+        float radius = ringRadius(w, hgt);
+        float dx = x + 0.5f - w * 0.5f, dy = hgt * 0.5f - (y + 0.5f);
+        
+        float dist = (float) Math.sqrt(dx * dx + dy * dy);
+        float pc = dist / radius * maxChroma;
+        
+        if (pc > maxChroma) return bg;
+        
+        float hueDeg = (float) Math.toDegrees(Math.atan2(dy, dx));
+        
+        if (hueDeg < 0f) hueDeg += 360f;
+        
+        int sample = Math.round(hueDeg / 360f * RING_SAMPLES) % RING_SAMPLES;
+        
+        if (pc > boundary[sample]) return OUTSIDE;
+        
+        float r = pc / (dist + 1e-6f);
+        int argb = ColorBatch.labToArgb(pl, dx * r, dy * r);
+        
+        return argb == 0 ? OUTSIDE : argb;
+    }
+    
+    private void paintBoundary(Graphics2D g2, int w, int hgt) {
+        Path2D path = new Path2D.Float();
+        
+        if (mode == Mode.CHROMA_LIGHTNESS) {
+            float[] boundary = GamutBoundary.forHue(h, hgt + 1);
+            
+            for (int row = 0; row <= hgt; row++) {
+                float x = boundary[row] / maxChroma * w;
+                
+                if (row == 0) path.moveTo(x, hgt - row);
+                else path.lineTo(x, hgt - row);
+            }
+        } else {
+            float[] boundary = GamutBoundary.forLightness(l, RING_SAMPLES);
+            float radius = ringRadius(w, hgt);
+            
+            for (int i = 0; i <= RING_SAMPLES; i++) {
+                double a = 2 * Math.PI * i / RING_SAMPLES;
+                double r = boundary[i % RING_SAMPLES] / maxChroma * radius;
+                double x = w * 0.5 + r * Math.cos(a), y = hgt * 0.5 - r * Math.sin(a);
+                
+                if (i == 0) path.moveTo(x, y);
+                else path.lineTo(x, y);
+            }
+        }
+        
+        g2.setColor(new Color(255, 255, 255, 90));
+        g2.draw(path);
+    }
+    
+    private void paintMarker(Graphics2D g2, int w, int hgt) {
+        Point p = markerPosition(w, hgt);
+        
+        g2.setColor(Color.BLACK);
+        g2.drawOval(p.x - 6, p.y - 6, 12, 12);
+        g2.setColor(Color.WHITE);
+        g2.drawOval(p.x - 5, p.y - 5, 10, 10);
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private Point markerPosition(int w, int hgt) {
+        float cc = Math.min(c, maxChroma) / maxChroma;
+        
+        if (mode == Mode.CHROMA_LIGHTNESS) {
+            return new Point(Math.round(cc * w), Math.round((1f - l) * hgt));
+        }
+        
+        double a = Math.toRadians(h);
+        double r = cc * ringRadius(w, hgt);
+        
+        return new Point((int) Math.round(w * 0.5 + r * Math.cos(a)), (int) Math.round(hgt * 0.5 - r * Math.sin(a)));
+    }
+    
+    private float ringRadius(int w, int hgt) {
+        return Math.max(1f, Math.min(w, hgt) * 0.5f - 2f);
+    }
+    
+    private void pick(int x, int y) {
+        int w = getWidth(), hgt = getHeight();
+        
+        if (w <= 0 || hgt <= 0) return;
+        
+        float[] old = {l, c, h};
+        float nl = l, nc, nh = h;
+        
+        if (mode == Mode.CHROMA_LIGHTNESS) {
+            nc = Math.max(0f, Math.min(1f, (float) x / w)) * maxChroma;
+            nl = Math.max(0f, Math.min(1f, 1f - (float) y / hgt));
+        } else {
+            float dx = x - w * 0.5f, dy = hgt * 0.5f - y;
+            
+            nc = Math.min(1f, (float) Math.hypot(dx, dy) / ringRadius(w, hgt)) * maxChroma;
+            
+            float deg = (float) Math.toDegrees(Math.atan2(dy, dx));
+            nh = deg < 0f ? deg + 360f : deg;
+        }
+        
+        setColor(nl, nc, nh);
+        pcs.firePropertyChange(PROP_COLOR, old, new float[]{nl, nc, nh});
+    }
+}
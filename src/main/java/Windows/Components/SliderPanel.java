@@ -1,11 +1,20 @@
 package Windows.Components;
 
 import Data.ChannelRange;
+import Data.ColorBatch;
 
 import javax.swing.*;
+import javax.swing.plaf.basic.BasicSliderUI;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.miginfocom.swing.MigLayout;
 
@@ -14,12 +23,49 @@ public class SliderPanel extends JPanel {
     public static final String PROP_Y = "y";
     public static final String PROP_Z = "z";
 
+    // Fired true when a slider drag starts and false once it ends, after the
+    // final value
+    public static final String PROP_ADJUSTING = "adjusting";
+
+    // At most one value event per channel and display frame
+    private static final int FRAME_MS = 16;
+
+    // Gradient tracks: samples per track, cached tracks, and the resolution
+    // at which the two fixed channels are matched against the cache
+    private static final int TRACK_SAMPLES = 256;
+    private static final int TRACK_CACHE_SIZE = 512;
+    private static final int TRACK_KEY_STEPS = 1024;
+
+    // One shared daemon worker; stale requests give up on their own
+    private static final ExecutorService TRACK_WORKER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "slider-tracks");
+        t.setDaemon(true);
+
+        return t;
+    });
+
     private final ChannelPanel panelX;
     private final ChannelPanel panelY;
     private final ChannelPanel panelZ;
 
     private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
 
+    private boolean tracksEnabled = false;
+    private boolean tracksQueued = false;
+    private final AtomicLong trackGeneration = new AtomicLong();
+    private final Map<Long, int[]> trackCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                    return size() > TRACK_CACHE_SIZE;
+                }
+            });
+
+    // Runs while changes keep arriving and stops on the first idle frame
+    private final Timer pump = new Timer(FRAME_MS, e -> {
+        if (!flushPending()) ((Timer) e.getSource()).stop();
+    });
+
     public SliderPanel(float[] initValues, ChannelRange[] ranges) {
         super(new MigLayout("insets 10, fill", "[grow,fill]", ""));
         if (initValues.length != 3 || ranges.length != 3) {
@@ -44,12 +90,122 @@ public class SliderPanel extends JPanel {
     public void setY(float v) { panelY.setValueSilently(v); }
     public void setZ(float v) { panelZ.setValueSilently(v); }
 
+    /**
+     * @return true while any of the sliders is being dragged
+     */
+    public boolean isAdjusting() {
+        return panelX.dragging || panelY.dragging || panelZ.dragging;
+    }
+
+    /**
+     * Deliver any value change still waiting for the next frame. Call before
+     * the listeners' target changes, e.g. when another color is selected.
+     */
+    public void flush() {
+        flushPending();
+    }
+
     public void setLabels(String lx, String ly, String lz) {
         panelX.setLabel(lx);
         panelY.setLabel(ly);
         panelZ.setLabel(lz);
     }
 
+    /**
+     * Paint each slider's track with the colors it would produce, treating
+     * the three channels as OKLCh. Chroma that does not fit in sRGB is
+     * hatched.
+     *
+     * @param enabled whether to show the gradient tracks
+     */
+    public void setOklchTracks(boolean enabled) {
+        tracksEnabled = enabled;
+
+        for (ChannelPanel p : new ChannelPanel[]{panelX, panelY, panelZ}) {
+            p.track.setVisible(enabled);
+        }
+
+        refreshTracks();
+    }
+
+    private boolean flushPending() {
+        // Bitwise or, so every channel is flushed
+        return panelX.flush() | panelY.flush() | panelZ.flush();
+    }
+
+    // Several values often change in one go, so the refresh runs once after
+    // the current event
+    private void refreshTracks() {
+        if (!tracksEnabled || tracksQueued) return;
+
+        tracksQueued = true;
+
+        SwingUtilities.invokeLater(() -> {
+            tracksQueued = false;
+            updateTracks();
+        });
+    }
+
+    private void updateTracks() {
+        ChannelPanel[] panels = {panelX, panelY, panelZ};
+        float[] fixed = new float[3];
+
+        for (int k = 0; k < 3; k++) {
+            fixed[k] = panels[k].quantized();
+        }
+
+        long generation = trackGeneration.incrementAndGet();
+        long[] keys = new long[3];
+        boolean missing = false;
+
+        // Cached tracks are applied right away, the rest are computed by the
+        // worker
+        for (int k = 0; k < 3; k++) {
+            keys[k] = trackKey(k, panels);
+            int[] cached = trackCache.get(keys[k]);
+
+            if (cached != null) {
+                panels[k].track.setRamp(cached);
+            } else {
+                missing = true;
+            }
+        }
+
+        if (!missing) return;
+
+        TRACK_WORKER.execute(() -> {
+            for (int k = 0; k < 3; k++) {
+                if (trackCache.containsKey(keys[k])) continue;
+
+                ChannelPanel p = panels[k];
+                int[] ramp = new int[TRACK_SAMPLES];
+
+                boolean done = ColorBatch.channelRamp(k, fixed[0], fixed[1], fixed[2],
+                        p.range.getMin(), p.range.getMax(), ramp,
+                        () -> trackGeneration.get() != generation);
+
+                if (!done) return;
+
+                trackCache.put(keys[k], ramp);
+
+                SwingUtilities.invokeLater(() -> {
+                    if (trackGeneration.get() == generation) p.track.setRamp(ramp);
+                });
+            }
+        });
+    }
+
+    // A track depends on its channel and on the other two channels' values
+    private static long trackKey(int channel, ChannelPanel[] panels) {
+        long key = channel;
+
+        for (int k = 0; k < 3; k++) {
+            key = key * (TRACK_KEY_STEPS + 1) + (k == channel ? 0 : panels[k].step());
+        }
+
+        return key;
+    }
+
     @Override
     public void addPropertyChangeListener(PropertyChangeListener l) { pcs.addPropertyChangeListener(l); }
     @Override
@@ -63,12 +219,17 @@ public class SliderPanel extends JPanel {
         private final JLabel label;
         private final JSlider slider;
         private final JSpinner spinner;
+        private final GradientTrack track;
         private final String propertyName;
         private final ChannelRange range;
         private final int SLIDER_RES = 1_000_000;
 
         private float value;
-        private boolean adjusting = false, silent = false;
+        private boolean adjusting = false, silent = false, dragging = false;
+
+        // Value before the first change not yet delivered
+        private boolean pending = false;
+        private float pendingOld;
 
         ChannelPanel(String lblText, float initial, String propName, ChannelRange range) {
             super(new MigLayout("insets 0, gap 5", "[][grow,fill][50!]"));
@@ -97,15 +258,21 @@ public class SliderPanel extends JPanel {
             slider.addChangeListener(e -> {
                 if (adjusting || silent) return;
                 
+                boolean drag = slider.getValueIsAdjusting();
+                
+                if (drag && !dragging) setDragging(true);
+                
                 adjusting = true;
                 
                 float old = value;
                 
                 value = sliderToReal(slider.getValue());
                 spinner.setValue((double) value);
-                pcs.firePropertyChange(propertyName, old, value);
+                post(old);
                 
                 adjusting = false;
+                
+                if (!drag && dragging) setDragging(false);
             });
 
             spinner.addChangeListener(e -> {
@@ -117,15 +284,19 @@ public class SliderPanel extends JPanel {
                 
                 value = clamp(((Number) spinner.getValue()).floatValue());
                 slider.setValue(realToSlider(value));
-                pcs.firePropertyChange(propertyName, old, value);
+                post(old);
                 
                 adjusting = false;
             });
             
+            track = new GradientTrack(slider);
+            track.setVisible(false);
+
             setBackground(Color.BLACK);
             add(label);
             add(slider, "growx");
             add(spinner);
+            add(track, "cell 1 1, growx, h 6!, hidemode 3");
         }
 
         int realToSlider(float v) {
@@ -146,14 +317,148 @@ public class SliderPanel extends JPanel {
 
         float getValue() { return value; }
 
+        // Value snapped to the track cache resolution
+        int step() {
+            return Math.round((value - range.getMin()) / (range.getMax() - range.getMin()) * TRACK_KEY_STEPS);
+        }
+
+        float quantized() {
+            return range.getMin() + step() * (range.getMax() - range.getMin()) / TRACK_KEY_STEPS;
+        }
+
         void setValueSilently(float v) {
+            // A programmatic value supersedes anything not yet delivered
+            pending = false;
             silent = true;
             value = clamp(v);
             slider.setValue(realToSlider(value));
             spinner.setValue((double) value);
             silent = false;
+
+            refreshTracks();
         }
 
         void setLabel(String txt) { label.setText(txt); }
+
+        // The first change of a burst goes out at once, later ones wait for
+        // the pump
+        private void post(float old) {
+            if (!pending) {
+                pending = true;
+                pendingOld = old;
+            }
+
+            if (!pump.isRunning()) {
+                flush();
+                pump.start();
+            }
+        }
+
+        boolean flush() {
+            if (!pending) return false;
+
+            pending = false;
+            pcs.firePropertyChange(propertyName, pendingOld, value);
+            refreshTracks();
+
+            return true;
+        }
+
+        private void setDragging(boolean d) {
+            // The final value of a drag is delivered before the drag ends
+            if (!d) flush();
+
+            dragging = d;
+            pcs.firePropertyChange(PROP_ADJUSTING, !d, d);
+        }
+    }
+
+    private static final class GradientTrack extends JComponent {
+        private static final Color HATCH = new Color(0, 0, 0, 140);
+
+        private final JSlider slider;
+        private final BufferedImage ramp = new BufferedImage(TRACK_SAMPLES, 1, BufferedImage.TYPE_INT_RGB);
+        private final boolean[] outside = new boolean[TRACK_SAMPLES];
+        private boolean ready = false;
+
+        GradientTrack(JSlider slider) {
+            this.slider = slider;
+        }
+
+        void setRamp(int[] argb) {
+            ramp.setRGB(0, 0, TRACK_SAMPLES, 1, argb, 0, TRACK_SAMPLES);
+
+            for (int i = 0; i < TRACK_SAMPLES; i++) {
+                outside[i] = (argb[i] >>> 24) != 0xFF;
+            }
+
+            ready = true;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            if (!ready) return;
+
+            // Line the gradient up with the slider's own track
+            int x0 = 0, x1 = getWidth();
+
+            if (slider.getUI() instanceof BasicSliderUI ui && slider.getWidth() == getWidth()) {
+                x0 = firstX(ui, slider.getMinimum() + 1) - 1;
+                x1 = firstX(ui, slider.getMaximum());
+            }
+
+            int w = Math.max(1, x1 - x0);
+            int h = getHeight();
+
+            Graphics2D g2 = (Graphics2D) g.create();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(ramp, x0, 0, w, h, null);
+
+            // Hatch each run of out-of-gamut samples
+            g2.setColor(HATCH);
+
+            for (int i = 0; i < TRACK_SAMPLES; ) {
+                if (!outside[i]) {
+                    i++;
+                    continue;
+                }
+
+                int start = i;
+
+                while (i < TRACK_SAMPLES && outside[i]) i++;
+
+                int rx0 = x0 + (int) ((long) w * start / TRACK_SAMPLES);
+                int rx1 = x0 + (int) ((long) w * i / TRACK_SAMPLES);
+
+                Graphics2D run = (Graphics2D) g2.create(rx0, 0, Math.max(1, rx1 - rx0), h);
+
+                for (int d = -h; d < rx1 - rx0; d += 4) {
+                    run.drawLine(d, h, d + h, 0);
+                }
+
+                run.dispose();
+            }
+
+            g2.dispose();
+        }
+
+        // First x whose slider value reaches the target; the mapping only
+        // grows from left to right
+        private int firstX(BasicSliderUI ui, int target) {
+            int lo = 0, hi = slider.getWidth();
+
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+
+                if (ui.valueForXPosition(mid) >= target) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+
+            return lo;
+        }
     }
-}
\ No newline at end of file
+}
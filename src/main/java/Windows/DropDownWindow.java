@@ -1,6 +1,8 @@
 package Windows;
 
+import FileManager.BufferPool;
 import Palette.Operations;
+import Palette.QuantizationMode;
 
 import javax.swing.*;
 import java.awt.*;
@@ -17,9 +19,11 @@ public class DropDownWindow {
     private JSlider slider;
     private JTextField valueField;
     private JButton dynamicButton;
+    private JButton modeButton;
     
     boolean loading = false;
     boolean rangeQ = false;
+    private QuantizationMode mode = QuantizationMode.GRAYSCALE;
     private int colorLevels = 8;
     private final int minLevels = 2, maxLevels = 256;
     
@@ -71,13 +75,14 @@ public class DropDownWindow {
                     slider.setEnabled(false);
                     valueField.setEnabled(false);
                     ableOrDisableButton(dynamicButton);
+                    ableOrDisableButton(modeButton);
                     
                     frame.repaint();
                     
                     new Thread(() -> {
                         int filesProcessed = 1;
                         for (File file : files) {
-                            op.processFile(file.getPath(), colorLevels, rangeQ);
+                            op.processFile(file.getPath(), colorLevels, rangeQ, mode);
                             filesProcessed++;
                             
                             final int finalFilesProcessed = filesProcessed;
@@ -86,6 +91,8 @@ public class DropDownWindow {
                             });
                         }
                         
+                        if (BufferPool.isStatsEnabled()) System.out.println("POOL: " + BufferPool.shared());
+                        
                         SwingUtilities.invokeLater(() -> {
                             dropLabel.setText("Images Colors Changed");
                             
@@ -95,6 +102,7 @@ public class DropDownWindow {
                                 slider.setEnabled(true);
                                 valueField.setEnabled(true);
                                 ableOrDisableButton(dynamicButton);
+                                ableOrDisableButton(modeButton);
                             });
                             
                             resetTimer.setRepeats(false);
@@ -191,12 +199,23 @@ public class DropDownWindow {
             }
         });
         
+        // Mode button, cycles through the quantization modes
+        modeButton = new JButton(mode.getLabel());
+        setButtonsVisuals(modeButton);
+        modeButton.addActionListener(e -> {
+            if (!loading) {
+                mode = mode.next();
+                modeButton.setText(mode.getLabel());
+            }
+        });
+        
         //Bottom panel
         JPanel controlPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 5, 5));
         controlPanel.setBackground(Color.BLACK);
         controlPanel.setBorder(BorderFactory.createLineBorder(Color.WHITE));
         controlPanel.add(colorLevelPanel);
         controlPanel.add(dynamicButton);
+        controlPanel.add(modeButton);
         
         frame.add(controlPanel, BorderLayout.SOUTH);
         frame.add(dropLabel, BorderLayout.CENTER);
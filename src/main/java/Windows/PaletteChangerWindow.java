@@ -2,16 +2,25 @@ package Windows;
 
 import Data.ChannelRange;
 import Data.ColorData;
+import Data.NamedPalette;
 import Data.Palette;
+import Data.PaletteSnapshot;
 
+import FileManager.PaletteFormat;
+import FileManager.PaletteIO;
+import FileManager.PaletteLibrary;
+
+import Palette.IncrementalRecolor;
 import Palette.PatternToImage;
 
 import Windows.Components.ButtonPanel;
+import Windows.Components.ColorPlanePanel;
 import Windows.Components.HexInputPanel;
 import Windows.Components.SliderPanel;
 import Windows.Components.TopButtonPanel;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.ActionEvent;
@@ -19,7 +28,10 @@ import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import net.miginfocom.swing.MigLayout;
@@ -36,10 +48,14 @@ public class PaletteChangerWindow extends JDialog {
     private final BufferedImage image;
     private final String filePath;
     
+    // Keeps the last render, so Next only repaints the swatches that changed
+    private final IncrementalRecolor recolor;
+    
     private TopButtonPanel topPanel;
     private ButtonPanel buttonPanel;
     private SliderPanel sliderPanel;
     private HexInputPanel hexPanel;
+    private ColorPlanePanel planePanel;
     
     private int currentIndex = 0;
     
@@ -65,6 +81,13 @@ public class PaletteChangerWindow extends JDialog {
         }
     };
     
+    private final Action galleryAction = new AbstractAction("Gallery") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            onGallery();
+        }
+    };
+    
     private final Action randomAction = new AbstractAction("Single") {
         @Override
         public void actionPerformed(ActionEvent e) {
@@ -100,6 +123,62 @@ public class PaletteChangerWindow extends JDialog {
         }
     };
 
+    private final Action planeAction = new AbstractAction("C×L") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            planePanel.setMode(ColorPlanePanel.Mode.CHROMA_LIGHTNESS);
+        }
+    };
+
+    private final Action ringAction = new AbstractAction("Ring") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            planePanel.setMode(ColorPlanePanel.Mode.HUE_CHROMA);
+        }
+    };
+
+    private final Action undoAction = new AbstractAction("Undo") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            onUndo();
+        }
+    };
+    
+    private final Action redoAction = new AbstractAction("Redo") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            onRedo();
+        }
+    };
+    
+    private final Action importAction = new AbstractAction("Import") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            onImport();
+        }
+    };
+    
+    private final Action exportAction = new AbstractAction("Export") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            onExport();
+        }
+    };
+    
+    private final Action saveAction = new AbstractAction("Save") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            onSave();
+        }
+    };
+    
+    private final Action similarAction = new AbstractAction("Similar") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            onSimilar();
+        }
+    };
+    
     private final Action returnAction = new AbstractAction("Return") {
         @Override
         public void actionPerformed(ActionEvent e) {
@@ -117,12 +196,14 @@ public class PaletteChangerWindow extends JDialog {
         ranges[2] = new ChannelRange(0.0f, 360.0f, 1.0f);
 
         this.palette = new Palette(initialData, ranges, 4);
+        this.recolor = new IncrementalRecolor(image, palette.getOriginal());
         
         initFrame();
         initComponents();
         initLayout();
         initListeners();
         loadColorIntoControls(0);
+        updateHistoryActions();
         setupKeyBindings();
         setResizable(false);
         setVisible(true);
@@ -130,7 +211,7 @@ public class PaletteChangerWindow extends JDialog {
 
     private void initFrame() {
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
-        setSize(750, 500);
+        setSize(750, 720);
         setLocationRelativeTo(null);
         getContentPane().setBackground(BG_COLOR);
         setLayout(new MigLayout("insets 0, gap 0, fill", "[grow]", "[grow 0][grow 1]"));
@@ -138,24 +219,31 @@ public class PaletteChangerWindow extends JDialog {
     
     private void initComponents() {
         buttonPanel = new ButtonPanel(palette.toAwtColors());
+        buttonPanel.setCoverage(new PatternToImage().countEntries(image, palette.getOriginal()));
         ColorData first = palette.getData()[0];
         
         float[] init = { first.getX(), first.getY(), first.getZ() };
         
         sliderPanel = new SliderPanel(init, ranges);
         sliderPanel.setLabels("L", "C", "H");
+        sliderPanel.setOklchTracks(true);
         
         // get initial hex from the first color
         String initialHex = palette.rgbToHex(0);
         hexPanel = new HexInputPanel(initialHex);
+        
+        planePanel = new ColorPlanePanel(ranges[1].getMax());
     }
     
     private void initLayout() {
         Map<String, Action[]> groups = new LinkedHashMap<>();
 
-        groups.put("Generation", new Action[]{genAction, lerpAction, invertAction});
+        groups.put("Generation", new Action[]{genAction, lerpAction, invertAction, galleryAction});
         groups.put("Random", new Action[]{randomAction, randomAllAction});
         groups.put("Reset", new Action[]{resetAction, resetAllAction});
+        groups.put("History", new Action[]{undoAction, redoAction});
+        groups.put("Picker", new Action[]{planeAction, ringAction});
+        groups.put("File", new Action[]{importAction, exportAction, saveAction, similarAction});
         groups.put("Navigation", new Action[]{nextAction, returnAction});
 
         topPanel = new TopButtonPanel(groups);
@@ -178,12 +266,13 @@ public class PaletteChangerWindow extends JDialog {
         JPanel rightPanel = new JPanel(new MigLayout(
                 "insets 0, gap 4, fill",
                 "[grow]",
-                "[pref][grow]"
+                "[pref][pref][grow]"
         ));
         rightPanel.setBackground(getContentPane().getBackground());
         
         rightPanel.add(hexPanel, "cell 0 0, growx, wrap");
-        rightPanel.add(sliderPanel, "cell 0 1, grow");
+        rightPanel.add(sliderPanel, "cell 0 1, growx");
+        rightPanel.add(planePanel, "cell 0 2, grow, push");
         control.add(rightPanel, "cell 1 0, grow");
         
         add(control, "cell 0 1, grow");
@@ -191,6 +280,8 @@ public class PaletteChangerWindow extends JDialog {
     
     private void initListeners() {
         buttonPanel.addPropertyChangeListener("selectedIndex", evt -> {
+            // Pending slider values still belong to the previous color
+            sliderPanel.flush();
             currentIndex = (Integer) evt.getNewValue();
             
             loadColorIntoControls(currentIndex);
@@ -198,16 +289,40 @@ public class PaletteChangerWindow extends JDialog {
         });
         
         PropertyChangeListener sliderListener = evt -> {
-            ColorData cd = palette.getData()[currentIndex];
-            
-            cd.setX(sliderPanel.getPanelX());
-            cd.setY(sliderPanel.getPanelY());
-            cd.setZ(sliderPanel.getPanelZ());
+            palette.set(currentIndex, sliderPanel.getPanelX(), sliderPanel.getPanelY(), sliderPanel.getPanelZ());
+            planePanel.setColor(sliderPanel.getPanelX(), sliderPanel.getPanelY(), sliderPanel.getPanelZ());
             
             updateButtonColor(currentIndex);
             changeHexValue(currentIndex);
+            updateHistoryActions();
         };
         
+        // A whole drag is one undo step
+        PropertyChangeListener adjustingListener = evt -> {
+            if ((Boolean) evt.getNewValue()) {
+                palette.beginEdit();
+            } else {
+                palette.endEdit();
+                updateHistoryActions();
+            }
+        };
+        
+        sliderPanel.addPropertyChangeListener(SliderPanel.PROP_ADJUSTING, adjustingListener);
+        planePanel.addPropertyChangeListener(ColorPlanePanel.PROP_ADJUSTING, adjustingListener);
+        
+        planePanel.addPropertyChangeListener(ColorPlanePanel.PROP_COLOR, evt -> {
+            float[] lch = (float[]) evt.getNewValue();
+            palette.set(currentIndex, lch[0], lch[1], lch[2]);
+            
+            sliderPanel.setX(lch[0]);
+            sliderPanel.setY(lch[1]);
+            sliderPanel.setZ(lch[2]);
+            
+            updateButtonColor(currentIndex);
+            changeHexValue(currentIndex);
+            updateHistoryActions();
+        });
+        
         sliderPanel.addPropertyChangeListener(SliderPanel.PROP_X, sliderListener);
         sliderPanel.addPropertyChangeListener(SliderPanel.PROP_Y, sliderListener);
         sliderPanel.addPropertyChangeListener(SliderPanel.PROP_Z, sliderListener);
@@ -218,6 +333,7 @@ public class PaletteChangerWindow extends JDialog {
             
             updateButtonColor(currentIndex);
             loadColorIntoControls(currentIndex);
+            updateHistoryActions();
         });
         
         hexPanel.getCopyButton().addActionListener(e -> {
@@ -229,36 +345,84 @@ public class PaletteChangerWindow extends JDialog {
     }
     
     private void onNext() {
-        long startTime = System.currentTimeMillis();
-        System.out.println("Applying Palette to Image");
+        // The snapshot stays consistent even if the palette is edited while
+        // the render runs
+        sliderPanel.flush();
+        PaletteSnapshot snapshot = palette.snapshot();
+        nextAction.setEnabled(false);
         
-        PatternToImage pti = new PatternToImage();
-        BufferedImage output = pti.applyPattern(image, palette.getOriginal(), palette.getData());
+        new SwingWorker<BufferedImage, Void>() {
+            @Override
+            protected BufferedImage doInBackground() {
+                long startTime = System.currentTimeMillis();
+                System.out.println("Applying Palette to Image (version " + snapshot.getVersion() + ")");
         
-        long endTime = System.currentTimeMillis();
-        System.out.println("TIME: " + (endTime - startTime) + "ms");
+                BufferedImage output = recolor.apply(snapshot);
         
-        ImageViewer iv = new ImageViewer(output, filePath);
+                long endTime = System.currentTimeMillis();
+                System.out.println("TIME: " + (endTime - startTime) + "ms (" + recolor.getLastChanged() + " colors changed)");
+                
+                return output;
+            }
+            
+            @Override
+            protected void done() {
+                nextAction.setEnabled(true);
+                
+                try {
+                    ImageViewer iv = new ImageViewer(get(), filePath);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }.execute();
     }
     
     private void onGenerate() {
         palette.generate();
         updateAll();
+        showSeed();
     }
     
     private void onGenerateInterpolated() {
         palette.generateInterpolated();
         updateAll();
+        showSeed();
+    }
+    
+    private void onGallery() {
+        PaletteGalleryWindow gallery = new PaletteGalleryWindow(
+                image, palette.getOriginal(), ranges, palette.getModeQuantity()
+        );
+        
+        if (gallery.getSelected() == null) {
+            return;
+        }
+        
+        // Regenerate from the candidate's seed rather than copying its colors,
+        // so the palette's last seed reproduces what was picked
+        long seed = gallery.getSelectedSeed();
+        
+        switch (gallery.getSelectedKind()) {
+            case SIMPLE -> palette.generate(seed);
+            case INTERPOLATED -> palette.generateInterpolated(seed);
+            case RANDOM -> palette.randomAll(seed);
+        }
+        
+        updateAll();
+        showSeed();
     }
     
     private void onRandom() {
         palette.randomSingle(currentIndex);
         update();
+        showSeed();
     }
     
     private void onFullRandom() {
         palette.randomAll();
         updateAll();
+        showSeed();
     }
     
     private void onReset() {
@@ -276,6 +440,124 @@ public class PaletteChangerWindow extends JDialog {
         updateAll();
     }
     
+    private void onUndo() {
+        sliderPanel.flush();
+        
+        if (palette.undo()) {
+            updateAll();
+        }
+    }
+    
+    private void onRedo() {
+        sliderPanel.flush();
+        
+        if (palette.redo()) {
+            updateAll();
+        }
+    }
+    
+    private void onImport() {
+        JFileChooser chooser = paletteChooser();
+        
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        
+        String path = chooser.getSelectedFile().getPath();
+        
+        try {
+            loadColors(PaletteIO.readFirst(path));
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Could not import palette: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void onExport() {
+        JFileChooser chooser = paletteChooser();
+        
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        
+        String path = chooser.getSelectedFile().getPath();
+        String name = chooser.getSelectedFile().getName();
+        
+        // Use the chosen filter's extension when the name has none
+        if (name.lastIndexOf('.') < 0 && chooser.getFileFilter() instanceof FileNameExtensionFilter filter) {
+            path += "." + filter.getExtensions()[0];
+        } else if (name.lastIndexOf('.') > 0) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        
+        sliderPanel.flush();
+        
+        try {
+            PaletteIO.write(path, List.of(NamedPalette.of(name, palette.snapshot())));
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Could not export palette: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void onSave() {
+        sliderPanel.flush();
+        
+        String name = new File(filePath).getName();
+        
+        if (name.lastIndexOf('.') > 0) {
+            name = name.substring(0, name.lastIndexOf('.'));
+        }
+        
+        try (PaletteLibrary library = PaletteLibrary.open(PaletteLibrary.defaultPath())) {
+            library.append(NamedPalette.of(name, palette.snapshot()));
+        } catch (IOException | IllegalStateException e) {
+            JOptionPane.showMessageDialog(this, "Could not save palette: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void onSimilar() {
+        sliderPanel.flush();
+        
+        try (PaletteLibrary library = PaletteLibrary.open(PaletteLibrary.defaultPath())) {
+            PaletteLibraryWindow window = new PaletteLibraryWindow(library, NamedPalette.of(null, palette.snapshot()));
+            
+            if (window.getSelected() != null) {
+                loadColors(window.getSelected());
+            }
+        } catch (IOException | IllegalStateException e) {
+            JOptionPane.showMessageDialog(this, "Could not open palette library: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    // Colors beyond the palette size are dropped; missing ones keep their
+    // current value
+    private void loadColors(NamedPalette source) {
+        sliderPanel.flush();
+        float[] colors = new float[palette.getData().length * 3];
+        palette.snapshot().copyTo(colors, 0);
+        
+        int n = Math.min(source.size(), palette.getData().length);
+        float[] read = new float[source.size() * 3];
+        source.copyTo(read, 0);
+        System.arraycopy(read, 0, colors, 0, n * 3);
+        
+        palette.load(colors, 0);
+        updateAll();
+    }
+    
+    private JFileChooser paletteChooser() {
+        JFileChooser chooser = new JFileChooser(new File(filePath).getParentFile());
+        chooser.setAcceptAllFileFilterUsed(false);
+        
+        for (PaletteFormat format : PaletteFormat.values()) {
+            chooser.addChoosableFileFilter(new FileNameExtensionFilter(
+                    format.getLabel() + " (*." + format.getExtension() + ")", format.getExtension()));
+        }
+        
+        chooser.setFileFilter(chooser.getChoosableFileFilters()[0]);
+        
+        return chooser;
+    }
+    
     private void onReturn() {
         dispose();
     }
@@ -284,12 +566,23 @@ public class PaletteChangerWindow extends JDialog {
         updateButtonColor(currentIndex);
         loadColorIntoControls(currentIndex);
         changeHexValue(currentIndex);
+        updateHistoryActions();
     }
     
     private void updateAll() {
         buttonPanel.updateColors(palette.toAwtColors());
         loadColorIntoControls(currentIndex);
         changeHexValue(currentIndex);
+        updateHistoryActions();
+    }
+    
+    private void updateHistoryActions() {
+        undoAction.setEnabled(palette.canUndo());
+        redoAction.setEnabled(palette.canRedo());
+    }
+    
+    private void showSeed() {
+        setTitle(String.format("Choose palette colors — seed %016X", palette.getLastSeed()));
     }
     
     private void changeHexValue(int idx) {
@@ -302,6 +595,7 @@ public class PaletteChangerWindow extends JDialog {
         sliderPanel.setX(cd.getX());
         sliderPanel.setY(cd.getY());
         sliderPanel.setZ(cd.getZ());
+        planePanel.setColor(cd.getX(), cd.getY(), cd.getZ());
     }
 
     private void updateButtonColor(int idx) {
@@ -334,11 +628,7 @@ public class PaletteChangerWindow extends JDialog {
             @Override
             public void actionPerformed(ActionEvent e) {
                 if (clipboardColor != null) {
-                    ColorData target = palette.getData()[currentIndex];
-                    
-                    target.setX(clipboardColor.getX());
-                    target.setY(clipboardColor.getY());
-                    target.setZ(clipboardColor.getZ());
+                    palette.set(currentIndex, clipboardColor.getX(), clipboardColor.getY(), clipboardColor.getZ());
                     
                     updateAll();
                 }
@@ -375,6 +665,13 @@ public class PaletteChangerWindow extends JDialog {
             }
         });
         
+        // Undo / redo bindings
+        im.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        am.put("undo", undoAction);
+        im.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+        am.put("redo", redoAction);
+        im.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo");
+        
         // ←
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_LEFT, 0), "prevColor");
         am.put("prevColor", new AbstractAction() {
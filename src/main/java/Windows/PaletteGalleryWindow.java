@@ -0,0 +1,273 @@
+package Windows;
+
+import Data.ChannelRange;
+import Data.ColorData;
+import Data.PaletteBatch;
+
+import Palette.IndexedImage;
+
+import Windows.Components.TopButtonPanel;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import net.miginfocom.swing.MigLayout;
+
+public class PaletteGalleryWindow extends JDialog {
+    private static final Color BG_COLOR = Color.BLACK;
+    private static final Color FG_COLOR = Color.WHITE;
+    private static final int PROXY_SIDE = 256;
+    private static final int THUMB_GAP = 4;
+    
+    private final IndexedImage proxy;
+    private final ChannelRange[] ranges;
+    private final int modeQuantity;
+    private final int paletteSize;
+    
+    private PaletteBatch.Kind kind = PaletteBatch.Kind.INTERPOLATED;
+    private int gridSide = 4;
+    
+    private final JPanel grid = new JPanel();
+    private ColorData[] selected = null;
+    private long selectedSeed;
+    private PaletteBatch.Kind selectedKind;
+    
+    private final Action simpleAction = new AbstractAction("Simple") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            kind = PaletteBatch.Kind.SIMPLE;
+            reroll();
+        }
+    };
+    
+    private final Action lerpAction = new AbstractAction("Lerp") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            kind = PaletteBatch.Kind.INTERPOLATED;
+            reroll();
+        }
+    };
+    
+    private final Action randomAction = new AbstractAction("Random") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            kind = PaletteBatch.Kind.RANDOM;
+            reroll();
+        }
+    };
+    
+    private final Action grid16Action = gridAction(4);
+    private final Action grid36Action = gridAction(6);
+    private final Action grid64Action = gridAction(8);
+    
+    private final Action rerollAction = new AbstractAction("Reroll") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            reroll();
+        }
+    };
+    
+    private final Action returnAction = new AbstractAction("Return") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            dispose();
+        }
+    };
+    
+    /**
+     * Opens a modal grid of candidate palettes applied to a downsampled proxy
+     * of the quantized image. All thumbnails share one index plane; each
+     * candidate only needs its own lookup table.
+     *
+     * @param image quantized image
+     * @param original original OKLCh palette of the image
+     * @param ranges channel ranges for L, C and H
+     * @param modeQuantity maximum number of hue segments
+     */
+    public PaletteGalleryWindow(BufferedImage image, ColorData[] original, ChannelRange[] ranges, int modeQuantity) {
+        super((Frame) null, "Palette gallery", true);
+        this.ranges = ranges;
+        this.modeQuantity = modeQuantity;
+        this.paletteSize = original.length;
+        this.proxy = IndexedImage.fromImage(image, original, PROXY_SIDE);
+        
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setSize(900, 750);
+        setLocationRelativeTo(null);
+        getContentPane().setBackground(BG_COLOR);
+        setLayout(new MigLayout("insets 0, gap 0, fill", "[grow]", "[grow 0][grow 1]"));
+        
+        Map<String, Action[]> groups = new LinkedHashMap<>();
+        
+        groups.put("Generation", new Action[]{simpleAction, lerpAction, randomAction});
+        groups.put("Grid", new Action[]{grid16Action, grid36Action, grid64Action});
+        groups.put("Navigation", new Action[]{rerollAction, returnAction});
+        
+        add(new TopButtonPanel(groups), "cell 0 0, growx");
+        
+        grid.setBackground(BG_COLOR);
+        add(grid, "cell 0 1, grow");
+        
+        reroll();
+        
+        setVisible(true);
+    }
+    
+    /**
+     * @return the chosen OKLCh palette, or null if the window was closed
+     * without picking one
+     */
+    public ColorData[] getSelected() {
+        return selected;
+    }
+    
+    /**
+     * @return seed of the chosen candidate, only meaningful when getSelected()
+     * is not null
+     */
+    public long getSelectedSeed() {
+        return selectedSeed;
+    }
+    
+    /**
+     * @return generator of the chosen candidate, or null if none was picked
+     */
+    public PaletteBatch.Kind getSelectedKind() {
+        return selectedKind;
+    }
+    
+    private Action gridAction(int side) {
+        return new AbstractAction(String.valueOf(side * side)) {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                gridSide = side;
+                reroll();
+            }
+        };
+    }
+    
+    private void reroll() {
+        int count = gridSide * gridSide;
+        long seed = ThreadLocalRandom.current().nextLong();
+        PaletteBatch.Kind currentKind = kind;
+        
+        // The shown thumbnails stay clickable until the new ones replace
+        // them, so each one keeps the batch it was rendered from
+        PaletteBatch next = new PaletteBatch(count, paletteSize, ranges, modeQuantity);
+        
+        setActionsEnabled(false);
+        
+        new SwingWorker<BufferedImage[], Void>() {
+            @Override
+            protected BufferedImage[] doInBackground() {
+                long startTime = System.currentTimeMillis();
+                
+                next.generate(currentKind, seed);
+                
+                // Thumbnails render concurrently, one lookup table each
+                BufferedImage[] thumbs = new BufferedImage[count];
+                
+                IntStream.range(0, count).parallel().forEach(i -> {
+                    int[] lut = IndexedImage.lut(next.getColors(), next.offsetOf(i), paletteSize);
+                    thumbs[i] = proxy.render(lut);
+                });
+                
+                long endTime = System.currentTimeMillis();
+                System.out.println("Gallery TIME: " + (endTime - startTime) + "ms");
+                
+                return thumbs;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    showThumbnails(next, get());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                
+                setActionsEnabled(true);
+            }
+        }.execute();
+    }
+    
+    private void showThumbnails(PaletteBatch batch, BufferedImage[] thumbs) {
+        grid.removeAll();
+        grid.setLayout(new MigLayout(
+                "wrap " + gridSide + ", insets " + THUMB_GAP + ", gap " + THUMB_GAP + ", fill"
+        ));
+        
+        for (int i = 0; i < thumbs.length; i++) {
+            grid.add(new Thumbnail(thumbs[i], batch, i), "grow, push");
+        }
+        
+        grid.revalidate();
+        grid.repaint();
+    }
+    
+    private void setActionsEnabled(boolean enabled) {
+        for (Action a : new Action[]{simpleAction, lerpAction, randomAction,
+                grid16Action, grid36Action, grid64Action, rerollAction}) {
+            a.setEnabled(enabled);
+        }
+    }
+    
+    private final class Thumbnail extends JComponent {
+        private final BufferedImage image;
+        private boolean hover = false;
+        
+        Thumbnail(BufferedImage image, PaletteBatch batch, int candidate) {
+            this.image = image;
+            setPreferredSize(new Dimension(10, 10));
+            setToolTipText(String.format("Seed %016X", batch.getSeed(candidate)));
+            setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+            
+            addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    hover = true;
+                    repaint();
+                }
+                
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    hover = false;
+                    repaint();
+                }
+                
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    selected = batch.toColorData(candidate);
+                    selectedSeed = batch.getSeed(candidate);
+                    selectedKind = batch.getKind();
+                    dispose();
+                }
+            });
+        }
+        
+        @Override
+        protected void paintComponent(Graphics g) {
+            double scale = Math.min((double) getWidth() / image.getWidth(), (double) getHeight() / image.getHeight());
+            
+            int w = (int) (image.getWidth() * scale);
+            int h = (int) (image.getHeight() * scale);
+            int x = (getWidth() - w) / 2;
+            int y = (getHeight() - h) / 2;
+            
+            g.drawImage(image, x, y, w, h, null);
+            
+            if (hover) {
+                g.setColor(FG_COLOR);
+                g.drawRect(x, y, w - 1, h - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package Windows;
+
+import Data.NamedPalette;
+
+import FileManager.PaletteLibrary;
+
+import Windows.Components.TopButtonPanel;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.miginfocom.swing.MigLayout;
+
+public class PaletteLibraryWindow extends JDialog {
+    private static final Color BG_COLOR = Color.BLACK;
+    private static final Color FG_COLOR = Color.WHITE;
+    private static final int ROW_HEIGHT = 36;
+    private static final int ROW_GAP = 4;
+    private static final int LABEL_WIDTH = 220;
+    
+    private final PaletteLibrary library;
+    private final NamedPalette query;
+    private int resultCount = 10;
+    
+    private final JPanel list = new JPanel();
+    private NamedPalette selected = null;
+    
+    private final Action results10Action = resultsAction(10);
+    private final Action results25Action = resultsAction(25);
+    private final Action results50Action = resultsAction(50);
+    
+    private final Action returnAction = new AbstractAction("Return") {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            dispose();
+        }
+    };
+    
+    /**
+     * Opens a modal list of the library palettes closest to a query, each
+     * shown as a strip of swatches with its name and distance.
+     *
+     * @param library open palette library, not closed by this window
+     * @param query palette to match
+     */
+    public PaletteLibraryWindow(PaletteLibrary library, NamedPalette query) {
+        super((Frame) null, "Similar palettes", true);
+        this.library = library;
+        this.query = query;
+        
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setSize(750, 600);
+        setLocationRelativeTo(null);
+        getContentPane().setBackground(BG_COLOR);
+        setLayout(new MigLayout("insets 0, gap 0, fill", "[grow]", "[grow 0][grow 1]"));
+        
+        Map<String, Action[]> groups = new LinkedHashMap<>();
+        
+        groups.put("Results", new Action[]{results10Action, results25Action, results50Action});
+        groups.put("Navigation", new Action[]{returnAction});
+        
+        add(new TopButtonPanel(groups), "cell 0 0, growx");
+        
+        list.setBackground(BG_COLOR);
+        list.setLayout(new MigLayout("wrap 1, insets " + ROW_GAP + ", gap " + ROW_GAP + ", fillx"));
+        
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setBorder(BorderFactory.createEmptyBorder());
+        scroll.getViewport().setBackground(BG_COLOR);
+        scroll.getVerticalScrollBar().setUnitIncrement(ROW_HEIGHT);
+        add(scroll, "cell 0 1, grow");
+        
+        search();
+        
+        setVisible(true);
+    }
+    
+    /**
+     * @return the chosen palette, or null if the window was closed without
+     * picking one
+     */
+    public NamedPalette getSelected() {
+        return selected;
+    }
+    
+    private Action resultsAction(int count) {
+        return new AbstractAction(String.valueOf(count)) {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                resultCount = count;
+                search();
+            }
+        };
+    }
+    
+    private void search() {
+        int k = resultCount;
+        
+        setActionsEnabled(false);
+        
+        new SwingWorker<List<Row>, Void>() {
+            @Override
+            protected List<Row> doInBackground() {
+                long startTime = System.currentTimeMillis();
+                
+                List<Row> rows = new ArrayList<>(k);
+                
+                for (PaletteLibrary.Match match : library.nearest(query, k)) {
+                    rows.add(new Row(library.get(match.getId()), match.getDistance()));
+                }
+                
+                long endTime = System.currentTimeMillis();
+                System.out.println("Library search of " + library.size() + " TIME: " + (endTime - startTime) + "ms");
+                
+                return rows;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    showRows(get());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                
+                setActionsEnabled(true);
+            }
+        }.execute();
+    }
+    
+    private void showRows(List<Row> rows) {
+        list.removeAll();
+        
+        if (rows.isEmpty()) {
+            JLabel empty = new JLabel("The library is empty");
+            empty.setForeground(FG_COLOR);
+            list.add(empty, "growx");
+        }
+        
+        for (Row row : rows) {
+            list.add(row, "growx, h " + ROW_HEIGHT + "!");
+        }
+        
+        list.revalidate();
+        list.repaint();
+    }
+    
+    private void setActionsEnabled(boolean enabled) {
+        for (Action a : new Action[]{results10Action, results25Action, results50Action}) {
+            a.setEnabled(enabled);
+        }
+    }
+    
+    private final class Row extends JComponent {
+        private final NamedPalette palette;
+        private final Color[] colors;
+        private final String label;
+        private boolean hover = false;
+        
+        Row(NamedPalette palette, float distance) {
+            this.palette = palette;
+            this.colors = new Color[palette.size()];
+            this.label = String.format("%s  (%.3f)", palette.getName() != null ? palette.getName() : "Untitled", distance);
+            
+            for (int i = 0; i < colors.length; i++) {
+                colors[i] = new Color(palette.getRgb(i));
+            }
+            
+            setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+            
+            addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseEntered(MouseEvent e) {
+                    hover = true;
+                    repaint();
+                }
+                
+                @Override
+                public void mouseExited(MouseEvent e) {
+                    hover = false;
+                    repaint();
+                }
+                
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    selected = Row.this.palette;
+                    dispose();
+                }
+            });
+        }
+        
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(FG_COLOR);
+            FontMetrics fm = g.getFontMetrics();
+            g.drawString(label, ROW_GAP, (getHeight() + fm.getAscent() - fm.getDescent()) / 2);
+            
+            int x0 = LABEL_WIDTH;
+            int width = getWidth() - x0;
+            
+            for (int i = 0; i < colors.length; i++) {
+                int x = x0 + i * width / colors.length;
+                int next = x0 + (i + 1) * width / colors.length;
+                
+                g.setColor(colors[i]);
+                g.fillRect(x, 0, next - x, getHeight());
+            }
+            
+            if (hover) {
+                g.setColor(FG_COLOR);
+                g.drawRect(0, 0, getWidth() - 1, getHeight() - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package Data;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the error bounds documented on ColorTables against the exact
+ * ColorData path. ColorData keeps its companding private, so the encoders
+ * are checked against the same formulas in double precision.
+ */
+class ColorTablesTest {
+    // Linear samples for the encoders, dense enough to land between every
+    // pair of table entries many times
+    private static final int LINEAR_SAMPLES = 1 << 20;
+    
+    @Test
+    void srgbToLinearIsExactToFloatPrecision() {
+        for (int v = 0; v < 256; v++) {
+            double exact = decode(v / 255.0);
+            
+            assertEquals(exact, ColorTables.srgbToLinear(v), Math.ulp((float) exact), "v=" + v);
+        }
+    }
+    
+    @Test
+    void srgbToLinear16IsWithinHalfAStep() {
+        for (int v = 0; v < 256; v++) {
+            double exact = decode(v / 255.0) * 65535.0;
+            
+            assertEquals(exact, ColorTables.srgbToLinear16(v), 0.5, "v=" + v);
+        }
+    }
+    
+    @Test
+    void linearToSrgbIsWithin2e5() {
+        for (int i = 0; i <= LINEAR_SAMPLES; i++) {
+            float lin = (float) i / LINEAR_SAMPLES;
+            
+            assertEquals(exactEncode(lin), ColorTables.linearToSrgb(lin), 2e-5, "lin=" + lin);
+        }
+    }
+    
+    @Test
+    void linearToSrgbClampsInput() {
+        assertEquals(0f, ColorTables.linearToSrgb(-0.5f));
+        assertEquals(0f, ColorTables.linearToSrgb(Float.NaN));
+        assertEquals(1f, ColorTables.linearToSrgb(1.5f));
+        assertEquals(0, ColorTables.linearToSrgb8(-0.5f));
+        assertEquals(0, ColorTables.linearToSrgb8(Float.NaN));
+        assertEquals(255, ColorTables.linearToSrgb8(1.5f));
+    }
+    
+    @Test
+    void linearToSrgb8MissesOnlyNearRoundingTies() {
+        for (int i = 0; i <= LINEAR_SAMPLES; i++) {
+            float lin = (float) i / LINEAR_SAMPLES;
+            float exact = exactEncode(lin) * 255f;
+            int table = ColorTables.linearToSrgb8(lin);
+            
+            if (table == Math.round(exact)) continue;
+            
+            double fromTie = Math.abs(exact - Math.floor(exact) - 0.5);
+            
+            assertEquals(Math.round(exact), table, 1, "lin=" + lin);
+            assertTrue(fromTie < 0.03, "lin=" + lin + " is " + fromTie + " steps from a tie");
+        }
+    }
+    
+    @Test
+    void cbrtIsWithin2e7Relative() {
+        // Every power of two from 2^-126 to 2^127, at several mantissas
+        for (int e = -126; e <= 127; e++) {
+            for (float m = 1f; m < 2f; m += 1f / 64) {
+                float x = Math.scalb(m, e);
+                double exact = Math.cbrt(x);
+                
+                assertEquals(exact, ColorTables.cbrt(x), Math.abs(exact) * 2e-7, "x=" + x);
+                assertEquals(-exact, ColorTables.cbrt(-x), Math.abs(exact) * 2e-7, "x=" + -x);
+            }
+        }
+        
+        assertEquals(0f, ColorTables.cbrt(0f));
+        assertTrue(Float.isNaN(ColorTables.cbrt(Float.NaN)));
+        assertEquals(Float.POSITIVE_INFINITY, ColorTables.cbrt(Float.POSITIVE_INFINITY));
+    }
+    
+    @Test
+    void rgbToOklabIsWithin1e6OverEveryColor() {
+        float[] lab = new float[3];
+        float worst = 0f;
+        int worstRgb = 0;
+        
+        for (int rgb = 0; rgb < 1 << 24; rgb++) {
+            ColorTables.rgbToOklab(rgb, lab);
+            ColorData exact = new ColorData((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF).rgbToOklab();
+            
+            float error = Math.max(Math.abs(lab[0] - exact.getX()),
+                    Math.max(Math.abs(lab[1] - exact.getY()), Math.abs(lab[2] - exact.getZ())));
+            
+            if (error > worst) {
+                worst = error;
+                worstRgb = rgb;
+            }
+        }
+        
+        assertTrue(worst < 1e-6f, "Error " + worst + " at #" + Integer.toHexString(worstRgb));
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    // The formula ColorData.invCompand implements, in double precision
+    private static double decode(double c) {
+        return c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+    
+    // The formula ColorData.compand implements, in double precision
+    private static float exactEncode(float lin) {
+        return (float) (lin < 0.0031308 ? 12.92 * lin : 1.055 * Math.pow(lin, 1.0 / 2.4) - 0.055);
+    }
+}
@@ -0,0 +1,138 @@
+package FileManager;
+
+import Data.ColorData;
+import Data.NamedPalette;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Writes palettes in every format and reads them back. The sRGB formats
+ * must return the colors the palette shows on screen, and the names where
+ * the format stores them.
+ */
+class PaletteFormatTest {
+    private static final int A = 0x1B1B3A, B = 0x693668;
+    
+    @Test
+    void everyFormatRoundTripsSrgbColors() throws IOException {
+        int[] primaries = {0xFF0000, 0x00FF00, 0x0000FF, 0xFFFFFF, 0x000000, 0x00FFFF, 0xFF00FF, 0xFFFF00};
+        int[] repeats = {A, A, B, B};
+        int[] grays = new int[256];
+        
+        for (int v = 0; v < 256; v++) {
+            grays[v] = (v << 16) | (v << 8) | v;
+        }
+        
+        // Two identical palettes in a row must stay two palettes
+        List<NamedPalette> palettes = List.of(
+                NamedPalette.ofRgb("Primaries", primaries, primaries.length),
+                NamedPalette.ofRgb("Repeats", repeats, repeats.length),
+                NamedPalette.ofRgb("Repeats", repeats, repeats.length),
+                NamedPalette.ofRgb("Grays", grays, grays.length),
+                NamedPalette.ofRgb("Random", randomRgb(4096), 4096));
+        
+        for (PaletteFormat format : PaletteFormat.values()) {
+            List<NamedPalette> read = roundTrip(format, palettes);
+            
+            assertEquals(palettes.size(), read.size(), format + " palette count");
+            
+            for (int p = 0; p < palettes.size(); p++) {
+                assertSameRgb(format, palettes.get(p), read.get(p));
+                
+                if (keepsNames(format)) {
+                    assertEquals(palettes.get(p).getName(), read.get(p).getName(), format + " name");
+                }
+            }
+        }
+    }
+    
+    @Test
+    void exportsMatchTheOnScreenConversion() throws IOException {
+        // Includes colors outside the sRGB gamut, which take the chroma fallback
+        Random random = new Random(43);
+        float[] packed = new float[3 * 2048];
+        
+        for (int i = 0; i < packed.length; i += 3) {
+            packed[i] = random.nextFloat();
+            packed[i + 1] = random.nextFloat() * 0.4f;
+            packed[i + 2] = random.nextFloat() * 360f;
+        }
+        
+        NamedPalette palette = new NamedPalette("Wide", packed);
+        
+        for (int i = 0; i < palette.size(); i++) {
+            int[] rgb = new ColorData(palette.getL(i), palette.getC(i), palette.getH(i)).oklchToRgb().toRgb255();
+            
+            assertEquals(0xFF000000 | (rgb[0] << 16) | (rgb[1] << 8) | rgb[2], palette.getRgb(i), "color " + i);
+        }
+        
+        for (PaletteFormat format : PaletteFormat.values()) {
+            assertSameRgb(format, palette, roundTrip(format, List.of(palette)).get(0));
+        }
+    }
+    
+    @Test
+    void jsonKeepsExactOklch() throws IOException {
+        float[] packed = {0.62f, 0.11f, 254.3f, 0.123456789f, 0.3999999f, 359.99997f, 0f, 0f, 0f, 1f, 0.5f, 0.001f};
+        NamedPalette palette = new NamedPalette(null, packed);
+        
+        NamedPalette read = roundTrip(PaletteFormat.JSON, List.of(palette)).get(0);
+        
+        assertEquals(palette.size(), read.size());
+        
+        for (int i = 0; i < palette.size(); i++) {
+            assertEquals(palette.getL(i), read.getL(i), "L " + i);
+            assertEquals(palette.getC(i), read.getC(i), "C " + i);
+            assertEquals(palette.getH(i), read.getH(i), "H " + i);
+        }
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    private static List<NamedPalette> roundTrip(PaletteFormat format, List<NamedPalette> palettes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        
+        try (PaletteWriter writer = format.writer(bytes)) {
+            for (NamedPalette palette : palettes) {
+                writer.write(palette);
+            }
+        }
+        
+        try (PaletteReader reader = format.reader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return reader.readAll();
+        }
+    }
+    
+    private static void assertSameRgb(PaletteFormat format, NamedPalette expected, NamedPalette actual) {
+        assertEquals(expected.size(), actual.size(), format + " color count");
+        
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(Integer.toHexString(expected.getRgb(i)), Integer.toHexString(actual.getRgb(i)),
+                    format + " color " + i);
+        }
+    }
+    
+    private static boolean keepsNames(PaletteFormat format) {
+        return format == PaletteFormat.GPL || format == PaletteFormat.ASE || format == PaletteFormat.JSON;
+    }
+    
+    private static int[] randomRgb(int count) {
+        Random random = new Random(7);
+        int[] rgb = new int[count];
+        
+        for (int i = 0; i < count; i++) {
+            rgb[i] = random.nextInt(1 << 24);
+        }
+        
+        return rgb;
+    }
+}
@@ -0,0 +1,105 @@
+package FileManager;
+
+import Data.NamedPalette;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Reopens libraries whose data file lost appends the index still lists, as
+ * a crash between the two unforced writes can leave them.
+ */
+class PaletteLibraryTest {
+    @Test
+    void indexAheadOfDataIsRebuilt() throws IOException {
+        Path dir = Files.createTempDirectory("library");
+        Path dataPath = dir.resolve("palettes.cpl");
+        
+        try {
+            long[] ends = fill(dataPath, 3);
+            
+            // The third record never reached the disk
+            truncate(dataPath, ends[1]);
+            
+            try (PaletteLibrary library = PaletteLibrary.open(dataPath.toString())) {
+                assertEquals(2, library.size());
+                assertEquals("Palette 1", library.get(1).getName());
+            }
+            
+            // Reopening finds the rebuilt index in step with the data
+            try (PaletteLibrary library = PaletteLibrary.open(dataPath.toString())) {
+                assertEquals(2, library.size());
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+    
+    @Test
+    void tornRecordBehindTheIndexIsCutOff() throws IOException {
+        Path dir = Files.createTempDirectory("library");
+        Path dataPath = dir.resolve("palettes.cpl");
+        
+        try {
+            long[] ends = fill(dataPath, 3);
+            
+            // Half of the third record, so the last entry runs past the end
+            truncate(dataPath, (ends[1] + ends[2]) / 2);
+            
+            try (PaletteLibrary library = PaletteLibrary.open(dataPath.toString())) {
+                assertEquals(2, library.size());
+                assertEquals(ends[1], Files.size(dataPath));
+                assertEquals(2, library.append(palette(2)));
+                assertEquals("Palette 2", library.get(2).getName());
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    // Returns the data file size after each append
+    private static long[] fill(Path dataPath, int n) throws IOException {
+        long[] ends = new long[n];
+        
+        try (PaletteLibrary library = PaletteLibrary.open(dataPath.toString())) {
+            for (int i = 0; i < n; i++) {
+                library.append(palette(i));
+                ends[i] = Files.size(dataPath);
+            }
+        }
+        
+        return ends;
+    }
+    
+    private static NamedPalette palette(int i) {
+        int[] rgb = {0x1B1B3A + i, 0x693668, 0xA74482, 0xF84AA7 - i};
+        
+        return NamedPalette.ofRgb("Palette " + i, rgb, rgb.length);
+    }
+    
+    private static void truncate(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+    
+    private static void deleteAll(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
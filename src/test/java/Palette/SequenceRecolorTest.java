@@ -0,0 +1,95 @@
+package Palette;
+
+import Data.ColorData;
+
+import FileManager.FrameSequence;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Renders short PNG sequences whose grays span a narrow range, with more
+ * levels than the range holds gray values.
+ */
+class SequenceRecolorTest {
+    @Test
+    void narrowRangeWithManyLevelsRenders() throws IOException {
+        Path dir = Files.createTempDirectory("sequence");
+        
+        try {
+            // 56 gray values, 200..255, for 64 levels
+            String first = writeFrames(dir, 3, 200, 255);
+            
+            for (QuantizationMode mode : new QuantizationMode[]{
+                    QuantizationMode.GRAYSCALE, QuantizationMode.EQUAL_POPULATION,
+                    QuantizationMode.OTSU, QuantizationMode.LLOYD_MAX}) {
+                for (boolean rangeQ : new boolean[]{true, false}) {
+                    Path out = dir.resolve("out_" + mode + "_" + rangeQ);
+                    int frames = new Operations().renderSequence(first, out.toString(), 64, rangeQ, mode, null);
+                    
+                    assertEquals(3, frames, mode + " rangeQ=" + rangeQ);
+                }
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+    
+    @Test
+    void evenLevelsStayDistinctInANarrowRange() throws IOException {
+        Path dir = Files.createTempDirectory("sequence");
+        
+        try (FrameSequence sequence = FrameSequence.open(writeFrames(dir, 3, 200, 255))) {
+            ColorData[] palette = new SequenceRecolor(64, true, QuantizationMode.GRAYSCALE).calibrate(sequence);
+            
+            assertEquals(64, palette.length);
+            
+            for (int k = 1; k < palette.length; k++) {
+                assertTrue(palette[k].getX() > palette[k - 1].getX(), "level " + k + " is not lighter");
+            }
+        } finally {
+            deleteAll(dir);
+        }
+    }
+    
+    // ────────────────────────────────────────────────────────────────────────────
+    // Private Helpers
+    // ────────────────────────────────────────────────────────────────────────────
+    
+    // Horizontal gray ramps from lo to hi, returns the first frame's path
+    private static String writeFrames(Path dir, int count, int lo, int hi) throws IOException {
+        for (int f = 1; f <= count; f++) {
+            BufferedImage frame = new BufferedImage(64, 16, BufferedImage.TYPE_INT_RGB);
+            
+            for (int x = 0; x < frame.getWidth(); x++) {
+                int v = lo + (x + f) * (hi - lo) / (frame.getWidth() + count);
+                
+                for (int y = 0; y < frame.getHeight(); y++) {
+                    frame.setRGB(x, y, (v << 16) | (v << 8) | v);
+                }
+            }
+            
+            ImageIO.write(frame, "png", new File(dir.toFile(), String.format("shot_%04d.png", f)));
+        }
+        
+        return dir.resolve("shot_0001.png").toString();
+    }
+    
+    private static void deleteAll(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}